@@ -0,0 +1,79 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.file.FileIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FileIO 的整文件读取和追加写入
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileIOBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int fileSize;
+
+    private File readFile;
+    private File appendFile;
+    private FileIO reader;
+    private FileIO appender;
+    private final String line = "2025-01-01 00:00:00 INFO websocket connected\n";
+
+    @Setup
+    public void setup() throws IOException {
+        readFile = File.createTempFile("yuyuko-read", ".txt");
+        StringBuilder sb = new StringBuilder(fileSize);
+        while (sb.length() < fileSize) {
+            sb.append(line);
+        }
+        reader = new FileIO(readFile.getPath());
+        reader.write(sb.toString());
+    }
+
+    @Setup(Level.Iteration)
+    public void setupAppend() throws IOException {
+        appendFile = File.createTempFile("yuyuko-append", ".txt");
+        appender = new FileIO(appendFile.getPath());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownAppend() {
+        appender.delete();
+    }
+
+    @TearDown
+    public void tearDown() {
+        reader.delete();
+    }
+
+    @Benchmark
+    public String read() throws IOException {
+        return reader.read();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        appender.append(line);
+    }
+}
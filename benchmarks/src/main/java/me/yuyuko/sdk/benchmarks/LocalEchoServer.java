@@ -0,0 +1,167 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * 进程内的最小 WebSocket 回显服务器，只用于基准测试，避免网络抖动影响结果。
+ * 每个连接一个线程，收到的文本/二进制帧原样发回，收到关闭帧时回一个关闭帧后断开。
+ * @author castorice (遐蝶)
+ */
+final class LocalEchoServer implements Closeable {
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+
+    LocalEchoServer() throws IOException {
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptLoop, "local-echo-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * @return 形如 ws://127.0.0.1:port/ 的地址
+     */
+    String uri() {
+        return "ws://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort() + "/";
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Thread worker = new Thread(() -> serve(socket), "local-echo-" + socket.getPort());
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            OutputStream out = s.getOutputStream();
+            handshake(in, out);
+            byte[] payload = new byte[256];
+            while (true) {
+                int b0 = in.readUnsignedByte();
+                int b1 = in.readUnsignedByte();
+                int opcode = b0 & 0x0F;
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = in.readLong();
+                }
+                byte[] mask = new byte[4];
+                if ((b1 & 0x80) != 0) {
+                    in.readFully(mask);
+                }
+                if (length > Integer.MAX_VALUE - 8) {
+                    return;
+                }
+                int len = (int) length;
+                if (payload.length < len) {
+                    payload = new byte[Math.max(len, payload.length * 2)];
+                }
+                in.readFully(payload, 0, len);
+                for (int i = 0; i < len; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+                if (opcode == 0x8) {
+                    writeFrame(out, 0x88, payload, Math.min(len, 2));
+                    return;
+                } else if (opcode == 0x9) {
+                    writeFrame(out, 0x8A, payload, len);
+                } else if (opcode != 0xA) {
+                    // 保留 FIN 位和操作码，分片消息也能原样回显
+                    writeFrame(out, b0 & 0x8F, payload, len);
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        }
+    }
+
+    private static void handshake(InputStream in, OutputStream out) throws IOException {
+        String key = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            throw new IOException("missing Sec-WebSocket-Key");
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') line.write(c);
+        }
+        if (c == -1) throw new IOException("connection closed during handshake");
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String accept(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeFrame(OutputStream out, int head, byte[] payload, int len) throws IOException {
+        byte[] header;
+        if (len < 126) {
+            header = new byte[] { (byte) head, (byte) len };
+        } else if (len <= 0xFFFF) {
+            header = new byte[] { (byte) head, 126, (byte) (len >>> 8), (byte) len };
+        } else {
+            header = new byte[10];
+            header[0] = (byte) head;
+            header[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                header[9 - i] = (byte) ((long) len >>> (8 * i));
+            }
+        }
+        out.write(header);
+        out.write(payload, 0, len);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,79 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.memory.LongMemoryCache;
+import me.yuyuko.sdk.io.memory.MemoryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * long 键的缓存与装箱的 MemoryCache 对比，键是稀疏的 id，每次查找都要从 long 开始
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongMemoryCacheBenchmark {
+
+    @Param({"65536", "1048576"})
+    public int keys;
+
+    private MemoryCache<Long, String> boxed;
+    private LongMemoryCache<String> primitive;
+    private long[] ids;
+
+    @Setup
+    public void setup() {
+        boxed = new MemoryCache<>();
+        primitive = new LongMemoryCache<>();
+        ids = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            ids[i] = 1_000_000_007L * i + 12345;
+            boxed.put(ids[i], "value-" + i);
+            primitive.put(ids[i], "value-" + i);
+        }
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(keys)];
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String boxedGet() {
+        return boxed.get(randomId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String primitiveGet() {
+        return primitive.get(randomId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void boxedPut() {
+        boxed.put(randomId(), "v");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void primitivePut() {
+        primitive.put(randomId(), "v");
+    }
+}
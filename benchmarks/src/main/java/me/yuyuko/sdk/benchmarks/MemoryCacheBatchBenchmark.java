@@ -0,0 +1,108 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.memory.MemoryCache;
+import me.yuyuko.sdk.time.TimeDelta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 有上限、会过期的 MemoryCache 上，getAll / putAll 与逐个 get / put 的对比，每次调用处理一批键
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryCacheBatchBenchmark {
+    private static final int KEYS = 65536;
+
+    @Param({"16", "64", "256", "1024"})
+    public int batchSize;
+
+    private MemoryCache<Integer, String> cache;
+    private Integer[] keyPool;
+
+    @Setup
+    public void setup() {
+        cache = MemoryCache.<Integer, String>builder()
+            .maximumSize(KEYS)
+            .expireAfterWrite(new TimeDelta().minutes(10))
+            .build();
+        keyPool = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keyPool[i] = i;
+            cache.put(keyPool[i], "value-" + i);
+        }
+    }
+
+    /**
+     * 每个线程各自的一批随机键
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        List<Integer> keys;
+        Map<Integer, String> entries;
+
+        @Setup(Level.Iteration)
+        public void setup(MemoryCacheBatchBenchmark benchmark) {
+            keys = new ArrayList<>(benchmark.batchSize);
+            entries = new LinkedHashMap<>();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (entries.size() < benchmark.batchSize) {
+                Integer key = benchmark.keyPool[random.nextInt(KEYS)];
+                if (entries.put(key, "v") == null) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void loopGet(Batch batch, Blackhole bh) {
+        for (Integer key : batch.keys) {
+            bh.consume(cache.get(key));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<Integer, String> batchGet(Batch batch) {
+        return cache.getAll(batch.keys);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void loopPut(Batch batch) {
+        for (Map.Entry<Integer, String> entry : batch.entries.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void batchPut(Batch batch) {
+        cache.putAll(batch.entries);
+    }
+}
@@ -0,0 +1,80 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.memory.MemoryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MemoryCache 在多线程竞争下的读写吞吐
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryCacheBenchmark {
+
+    @Param({"1024", "65536"})
+    public int keys;
+
+    private MemoryCache<Integer, String> cache;
+    private Integer[] keyPool;
+
+    @Setup
+    public void setup() {
+        cache = new MemoryCache<>();
+        keyPool = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            keyPool[i] = i;
+            cache.put(keyPool[i], "value-" + i);
+        }
+    }
+
+    private Integer randomKey() {
+        return keyPool[ThreadLocalRandom.current().nextInt(keys)];
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getOnly() {
+        return cache.get(randomKey());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void putOnly() {
+        Integer key = randomKey();
+        cache.put(key, "v");
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public String readWriteGet() {
+        return cache.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void readWritePut() {
+        cache.put(randomKey(), "v");
+    }
+}
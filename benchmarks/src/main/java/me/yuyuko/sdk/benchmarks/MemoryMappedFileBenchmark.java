@@ -0,0 +1,116 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.memory.MemoryMappedFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MemoryMappedFile 的顺序和随机访问，每次调用处理 4 KiB，分数是每微秒处理的字节数
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryMappedFileBenchmark {
+    private static final int SIZE = 64 * 1024 * 1024;
+    private static final int BLOCK = 4096;
+
+    private File file;
+    private MemoryMappedFile mapped;
+    private int cursor;
+    private final byte[] block = new byte[BLOCK];
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("yuyuko-mmap", ".bin");
+        mapped = new MemoryMappedFile(file.getPath(), SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mapped.close();
+        file.delete();
+    }
+
+    private int nextBlock() {
+        int start = cursor;
+        cursor = (cursor + BLOCK) % SIZE;
+        return start;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int sequentialRead() {
+        int start = nextBlock();
+        int sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            sum += mapped.read(start + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public byte[] sequentialReadBulk() {
+        mapped.read(nextBlock(), block);
+        return block;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public long sequentialReadLong() {
+        int start = nextBlock();
+        long sum = 0;
+        for (int i = 0; i < BLOCK; i += Long.BYTES) {
+            sum += mapped.getLong(start + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public void sequentialWrite() {
+        int start = nextBlock();
+        for (int i = 0; i < BLOCK; i++) {
+            mapped.write(start + i, (byte) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int randomRead() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            sum += mapped.read(random.nextInt(SIZE));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public void randomWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BLOCK; i++) {
+            mapped.write(random.nextInt(SIZE), (byte) i);
+        }
+    }
+}
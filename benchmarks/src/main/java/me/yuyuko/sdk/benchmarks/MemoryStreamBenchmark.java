@@ -0,0 +1,52 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.io.memory.MemoryStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MemoryStream 写入若干块后取出字节数组
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryStreamBenchmark {
+
+    @Param({"64", "4096"})
+    public int chunkSize;
+
+    @Param({"16", "256"})
+    public int chunks;
+
+    private byte[] chunk;
+
+    @Setup
+    public void setup() {
+        chunk = new byte[chunkSize];
+    }
+
+    @Benchmark
+    public byte[] writeThenToByteArray() throws IOException {
+        MemoryStream stream = new MemoryStream();
+        for (int i = 0; i < chunks; i++) {
+            stream.write(chunk);
+        }
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.exceptions.FormatException;
+import me.yuyuko.sdk.utils.CompiledTemplate;
+import me.yuyuko.sdk.utils.StringUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StringUtil.fString：简单键、属性表达式、格式说明，以及手写拼接作为参照
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringUtilBenchmark {
+
+    public static class User {
+        public final String name;
+        private final int age;
+
+        public User(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public int getAge() {
+            return age;
+        }
+    }
+
+    private Map<String, Object> values;
+    private CompiledTemplate compiledSimple;
+    private final StringBuilder sb = new StringBuilder(128);
+
+    @Setup
+    public void setup() throws FormatException {
+        values = new HashMap<>();
+        values.put("name", "幽幽子");
+        values.put("count", 42);
+        values.put("latency", 12.3456);
+        values.put("user", new User("妖梦", 60));
+        compiledSimple = StringUtil.compile("user {name} sent {count} messages");
+    }
+
+    @Benchmark
+    public String simpleKeys() throws FormatException {
+        return StringUtil.fString("user {name} sent {count} messages", values);
+    }
+
+    @Benchmark
+    public String simpleKeysCompiled() throws FormatException {
+        return compiledSimple.render(values);
+    }
+
+    @Benchmark
+    public StringBuilder simpleKeysIntoBuilder() throws FormatException {
+        sb.setLength(0);
+        compiledSimple.renderTo(values, sb);
+        return sb;
+    }
+
+    @Benchmark
+    public String propertyExpressions() throws FormatException {
+        return StringUtil.fString("{user.name} is {user.getAge()} years old", values);
+    }
+
+    @Benchmark
+    public String formatSpecs() throws FormatException {
+        return StringUtil.fString("latency={latency:>10.3f} count={count:05d}", values);
+    }
+
+    @Benchmark
+    public String handWrittenConcat() {
+        return "user " + values.get("name") + " sent " + values.get("count") + " messages";
+    }
+}
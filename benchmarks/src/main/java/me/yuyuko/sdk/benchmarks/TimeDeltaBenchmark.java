@@ -0,0 +1,63 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.time.TimeDelta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TimeDelta 的链式构造、算术、比较和单位换算
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeDeltaBenchmark {
+
+    private TimeDelta a;
+    private TimeDelta b;
+    private long seconds = 45;
+
+    @Setup
+    public void setup() {
+        a = new TimeDelta().hours(1).minutes(30);
+        b = new TimeDelta().seconds(90).milliseconds(250);
+    }
+
+    @Benchmark
+    public TimeDelta builder() {
+        return new TimeDelta().days(1).hours(5).minutes(30).seconds(seconds);
+    }
+
+    @Benchmark
+    public TimeDelta plusMinus() {
+        return a.plus(b).minus(b);
+    }
+
+    @Benchmark
+    public TimeDelta multiplyDivide() {
+        return a.multiply(3).divide(7);
+    }
+
+    @Benchmark
+    public int compare() {
+        return a.compareTo(b);
+    }
+
+    @Benchmark
+    public long toMicros() {
+        return a.toTimeUnit(TimeUnit.MICROSECONDS);
+    }
+}
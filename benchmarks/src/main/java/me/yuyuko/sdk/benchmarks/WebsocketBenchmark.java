@@ -0,0 +1,78 @@
+package me.yuyuko.sdk.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.exceptions.network.websocket.WebsocketConnectionException;
+import me.yuyuko.sdk.io.network.websocket.Websocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Websocket 对进程内回显服务器的一次发送加一次接收（往返延迟）
+ * @author castorice (遐蝶)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WebsocketBenchmark {
+
+    @Param({"32", "4096"})
+    public int payloadSize;
+
+    private LocalEchoServer server;
+    private Websocket ws;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException, WebsocketConnectionException {
+        server = new LocalEchoServer();
+        ws = new Websocket(server.uri());
+        ws.connect();
+        StringBuilder sb = new StringBuilder(payloadSize);
+        while (sb.length() < payloadSize) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        text = sb.toString();
+        binary = new byte[payloadSize];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ws.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Object textRoundTrip() throws WebsocketConnectionException, InterruptedException {
+        ws.send(text, true);
+        return ws.recv(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Object binaryRoundTrip() throws WebsocketConnectionException, InterruptedException {
+        ws.send(ByteBuffer.wrap(binary), true);
+        return ws.recv(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Object asyncRoundTrip() throws WebsocketConnectionException {
+        ws.sendAsync(text, true);
+        return ws.recvAsync(5, TimeUnit.SECONDS).join();
+    }
+}
@@ -0,0 +1,15 @@
+package me.yuyuko.sdk.exceptions.memory;
+
+import me.yuyuko.sdk.exceptions.base.SdkException;
+
+/**
+ * 当缓存的加载函数失败的时候被抛出，原因是加载函数抛出的异常
+ * @see me.yuyuko.sdk.io.memory.MemoryCache#get(Object, me.yuyuko.sdk.io.memory.CacheLoader)
+*/
+public class CacheLoadException extends SdkException {
+
+    public CacheLoadException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,25 @@
+package me.yuyuko.sdk.exceptions.time;
+
+import me.yuyuko.sdk.exceptions.base.SdkException;
+
+/**
+ * 当时间间隔字符串无法解析的时候被抛出
+ * @see me.yuyuko.sdk.time.TimeDelta#parse(CharSequence)
+*/
+public class TimeDeltaParseException extends SdkException {
+    private final int errorIndex;
+
+    public TimeDeltaParseException(String message, int errorIndex)
+    {
+        super(message);
+        this.errorIndex = errorIndex;
+    }
+
+    /**
+     * @return 出错的位置（相对于输入的开头）
+     */
+    public int getErrorIndex()
+    {
+        return errorIndex;
+    }
+}
@@ -0,0 +1,14 @@
+package me.yuyuko.sdk.interfaces.io.memory;
+
+/*
+ * 如果你想实现自己的内存缓存，请实现这个接口
+*/
+public interface IMemoryCache<KT, VT> {
+    void put(KT key, VT value);
+    VT get(KT key);
+    boolean containsKey(KT key);
+    void remove(KT key);
+    void clear();
+    int size();
+    boolean isEmpty();
+}
@@ -0,0 +1,32 @@
+package me.yuyuko.sdk.interfaces.time;
+
+import me.yuyuko.sdk.time.TimeDelta;
+
+/*
+ * 时间来源。需要计时的组件通过它读取时间，测试时可以换成手动推进的时钟
+*/
+public interface IClock {
+    /**
+     * 单调时间，只用于计算时间差，语义与 System.nanoTime() 相同
+     */
+    long nanoTime();
+
+    /**
+     * 墙上时间，语义与 System.currentTimeMillis() 相同
+     */
+    long currentTimeMillis();
+
+    /**
+     * @return 从 startNanos（本时钟 nanoTime() 的返回值）到现在经过的纳秒数
+     */
+    default long elapsedNanos(long startNanos) {
+        return nanoTime() - startNanos;
+    }
+
+    /**
+     * @return 从 startNanos（本时钟 nanoTime() 的返回值）到现在经过的时间
+     */
+    default TimeDelta elapsedSince(long startNanos) {
+        return new TimeDelta().nanos(elapsedNanos(startNanos));
+    }
+}
@@ -0,0 +1,27 @@
+package me.yuyuko.sdk.interfaces.time;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * 如果你想实现自己的限流器，请实现这个接口
+*/
+public interface IRateLimiter {
+    /**
+     * 立即尝试获取 permits 个许可，不等待
+     * @return 获取成功返回true
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * 获取 permits 个许可，许可不足时不阻塞线程，等到有许可时完成返回的 future
+     */
+    CompletableFuture<Void> acquireAsync(int permits);
+
+    default boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    default CompletableFuture<Void> acquireAsync() {
+        return acquireAsync(1);
+    }
+}
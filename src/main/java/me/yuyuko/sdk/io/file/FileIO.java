@@ -1,7 +1,9 @@
 package me.yuyuko.sdk.io.file;
 
 import java.io.File;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -54,6 +56,40 @@ public class FileIO {
         }
     }
 
+    /**
+     * 打开一个追加写入的带缓冲 Writer，文件不存在时会被创建。
+     * 在 close() 之前一直持有写锁，适合一次性写入大量内容，必须在打开它的线程中关闭。
+     * <pre>
+     * try (Writer out = fileIO.appender()) {
+     *     StringUtil.renderAll(template, rows, RenderSink.of(out));
+     * }
+     * </pre>
+     */
+    public Writer appender() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Writer writer = Files.newBufferedWriter(file.toPath(), charset,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return new FilterWriter(writer) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) return;
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        FileIO.this.lock.writeLock().unlock();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            lock.writeLock().unlock();
+            throw e;
+        }
+    }
+
     public boolean exists() {
         return file.exists();
     }
@@ -0,0 +1,91 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步加载的缓存，由 {@link MemoryCache.Builder#buildAsync(CacheLoader)} 创建。
+ * <p>
+ * 未命中时在 executor 上调用加载函数，同一个键同时只有一次加载，所有等待者拿到同一个结果的副本；
+ * 命中时返回已完成的 future，超过 refreshAfterWrite 的值会在后台刷新。加载失败的键不会被缓存。
+ * <pre>
+ * AsyncLoadingCache&lt;Long, User&gt; users = MemoryCache.&lt;Long, User&gt;builder()
+ *     .maximumSize(10_000)
+ *     .expireAfterWrite(new TimeDelta().minutes(10))
+ *     .refreshAfterWrite(new TimeDelta().minutes(1))
+ *     .buildAsync(id -&gt; userService.find(id));
+ * users.get(42L).thenAccept(user -&gt; ...);
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+public final class AsyncLoadingCache<KT, VT> {
+    private final MemoryCache<KT, VT> cache;
+    private final CacheLoader<? super KT, VT> loader;
+
+    AsyncLoadingCache(MemoryCache<KT, VT> cache, CacheLoader<? super KT, VT> loader) {
+        this.cache = cache;
+        this.loader = loader;
+    }
+
+    /**
+     * @param key 键
+     * @return 值的 future，loader 返回 null 时以 null 完成，loader 失败时异常完成
+     */
+    public CompletableFuture<VT> get(KT key) {
+        return cache.getAsync(key, loader, cache.executor());
+    }
+
+    /**
+     * 读取多个键，未命中的键各自加载
+     *
+     * @param keys 要读取的键
+     * @return 按 keys 的顺序排列的结果，不存在的键不包含在内
+     */
+    public CompletableFuture<Map<KT, VT>> getAll(Iterable<? extends KT> keys) {
+        Map<KT, CompletableFuture<VT>> futures = new LinkedHashMap<>();
+        for (KT key : keys) {
+            if (!futures.containsKey(key)) {
+                futures.put(key, get(key));
+            }
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<KT, VT> result = new LinkedHashMap<>();
+            for (Map.Entry<KT, CompletableFuture<VT>> entry : futures.entrySet()) {
+                VT value = entry.getValue().join();
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 读取多个键，所有未命中的键合并成一次 {@link BulkLoader#loadAll} 调用
+     *
+     * @param keys 要读取的键
+     * @param bulkLoader 批量加载函数，在 executor 上执行
+     * @return 按 keys 的顺序排列的结果，不存在的键不包含在内
+     */
+    public CompletableFuture<Map<KT, VT>> getAll(Iterable<? extends KT> keys, BulkLoader<KT, VT> bulkLoader) {
+        return cache.getAllAsync(keys, bulkLoader, cache.executor());
+    }
+
+    /**
+     * @param key 键
+     * @param value 值
+     */
+    public void put(KT key, VT value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * @return 底层的同步缓存，可以直接读写、删除或清理
+     */
+    public MemoryCache<KT, VT> synchronous() {
+        return cache;
+    }
+}
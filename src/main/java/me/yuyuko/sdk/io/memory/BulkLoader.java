@@ -0,0 +1,21 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一次加载多个未命中的键，把批量读取合并成一次后端调用
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+@FunctionalInterface
+public interface BulkLoader<KT, VT> {
+
+    /**
+     * @param keys 需要加载的键，不可修改
+     * @return 加载到的值，缺少的键视为不存在；多返回的键也会被缓存
+     * @throws Exception 加载失败
+     */
+    Map<KT, VT> loadAll(Set<KT> keys) throws Exception;
+}
@@ -0,0 +1,44 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 把值序列化成字节，供 {@link OffHeapMemoryCache} 存放在堆外，或者由 {@link MemoryCache#saveSnapshot} 写入快照。编解码必须是线程安全的。
+ * @author castorice (遐蝶)
+ * @param <VT> 值的类型
+ */
+public interface CacheCodec<VT> {
+
+    byte[] encode(VT value) throws IOException;
+
+    VT decode(byte[] data) throws IOException;
+
+    /**
+     * @param type 值的类型
+     * @return 使用默认 ObjectMapper 的 JSON 编解码
+     */
+    static <VT> CacheCodec<VT> jackson(Class<VT> type) {
+        return jackson(new ObjectMapper(), type);
+    }
+
+    /**
+     * @param mapper 配置好的 ObjectMapper
+     * @param type 值的类型
+     * @return JSON 编解码
+     */
+    static <VT> CacheCodec<VT> jackson(ObjectMapper mapper, Class<VT> type) {
+        return new JacksonCacheCodec<>(mapper.writerFor(type), mapper.readerFor(type));
+    }
+
+    /**
+     * @param mapper 配置好的 ObjectMapper
+     * @param type 值的泛型类型，例如 {@code new TypeReference<List<User>>() {}}
+     * @return JSON 编解码
+     */
+    static <VT> CacheCodec<VT> jackson(ObjectMapper mapper, TypeReference<VT> type) {
+        return new JacksonCacheCodec<>(mapper.writerFor(type), mapper.readerFor(type));
+    }
+}
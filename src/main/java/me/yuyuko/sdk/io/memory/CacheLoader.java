@@ -0,0 +1,27 @@
+package me.yuyuko.sdk.io.memory;
+
+/**
+ * 缓存未命中时加载值
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+@FunctionalInterface
+public interface CacheLoader<KT, VT> {
+
+    /**
+     * @return 键对应的值，返回 null 表示不存在，不会被缓存
+     * @throws Exception 加载失败，调用方会得到 {@link me.yuyuko.sdk.exceptions.memory.CacheLoadException}
+     */
+    VT load(KT key) throws Exception;
+
+    /**
+     * 设置了 refreshAfterWrite 时在后台重新加载，默认与 {@link #load(Object)} 相同。
+     * 失败时保留旧值，下次读取时再重试。
+     *
+     * @return 新的值，返回 null 表示移除
+     */
+    default VT reload(KT key, VT oldValue) throws Exception {
+        return load(key);
+    }
+}
@@ -0,0 +1,56 @@
+package me.yuyuko.sdk.io.memory;
+
+import me.yuyuko.sdk.time.TimingWheel;
+
+/**
+ * 缓存中的一项。值、权重和时间戳在节点锁内更新，链表字段和 policyWeight 只由持有淘汰锁的线程访问。
+ * @author castorice (遐蝶)
+ */
+final class CacheNode<KT, VT> {
+    static final int ALIVE = 0;
+    // 已经从 map 中移除，但淘汰策略可能还没处理
+    static final int RETIRED = 1;
+    static final int DEAD = 2;
+
+    static final int NONE = -1;
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    final KT key;
+    volatile VT value;
+    volatile int weight;
+    volatile int state;
+    // 时钟的 nanoTime()，只在开启了对应的过期策略时维护
+    volatile long writeTime;
+    volatile long accessTime;
+    volatile long deadline;
+
+    // 以下字段只由持有淘汰锁的线程访问
+    int policyWeight;
+    int queue = NONE;
+    CacheNode<KT, VT> prev;
+    CacheNode<KT, VT> next;
+    boolean inWriteOrder;
+    CacheNode<KT, VT> writePrev;
+    CacheNode<KT, VT> writeNext;
+    TimingWheel.Timeout timeout;
+    long scheduledDeadline;
+
+    CacheNode(KT key, VT value, int weight) {
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+    }
+
+    boolean isAlive() {
+        return state == ALIVE;
+    }
+
+    /**
+     * 调用方必须持有节点锁并且已经把节点从 map 中移除
+     */
+    void retire() {
+        state = RETIRED;
+    }
+}
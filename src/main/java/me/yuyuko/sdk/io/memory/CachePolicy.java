@@ -0,0 +1,626 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+import me.yuyuko.sdk.time.TimingWheel;
+
+/**
+ * 缓存的淘汰和过期策略。
+ * <p>
+ * 有上限时按 W-TinyLFU 淘汰：
+ * <ul>
+ *     <li>新写入的项先进入窗口区（约 1% 的容量，LRU），窗口溢出的项进入主区的试用段；</li>
+ *     <li>主区分为试用段和保护段（80%），试用段中被再次访问的项晋升到保护段，保护段溢出时降回试用段；</li>
+ *     <li>超出上限时用 {@link FrequencySketch} 比较试用段头部（牺牲者）和刚从窗口进入的项（候选者），
+ *     频率低的一方被淘汰，这样一次性扫描不会把热点挤出去。</li>
+ * </ul>
+ * 过期的清理不扫描整个 map：三个段各自按访问顺序排列，另有一条按写入顺序的链表，
+ * 固定时长的过期只需要从链表头部检查；每项单独的存活时间则在 {@link TimingWheel} 上登记。
+ * 维护时算出最早的到期时间并在时间轮上安排下一次清理，没有读写时过期的项也会被及时移除。
+ * <p>
+ * 读写都不直接修改链表：读只把节点放进 {@link ReadBuffer}，写把任务放进队列，
+ * 由拿到锁的线程批量重放，所以每次操作的均摊开销是 O(1)，热点读也不会在锁上排队。
+ * @author castorice (遐蝶)
+ */
+final class CachePolicy<KT, VT> {
+    // 写缓冲积压到这个数量时，写线程阻塞等待排空，防止淘汰跟不上写入
+    private static final int WRITE_BUFFER_MAX = 128 * Runtime.getRuntime().availableProcessors();
+    private static final int PERCENT_WINDOW = 1;
+    private static final int PERCENT_PROTECTED = 80;
+    // 存活时间的上限，保证 nanoTime 的差值比较不会溢出
+    static final long MAX_DURATION = Long.MAX_VALUE >>> 1;
+
+    /**
+     * 从 map 中移除节点
+     */
+    interface Evictor<KT, VT> {
+        /**
+         * @return 本次调用是否完成了移除；节点已经被别人移除，或者按 EXPIRED 移除时发现还没过期，返回 false
+         */
+        boolean evict(CacheNode<KT, VT> node, RemovalCause cause, long now);
+    }
+
+    // 小于 0 表示不限制
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final boolean weighted;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final boolean variableExpiry;
+    private final IClock clock;
+    private final TimingWheel timer;
+    private final Evictor<KT, VT> evictor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer<CacheNode<KT, VT>> readBuffer = new ReadBuffer<>();
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final Consumer<CacheNode<KT, VT>> onAccess = this::onAccess;
+
+    // 以下字段只由持有 lock 的线程修改
+    private final FrequencySketch sketch = new FrequencySketch();
+    @SuppressWarnings("unchecked")
+    private final CacheNode<KT, VT>[] heads = new CacheNode[3];
+    @SuppressWarnings("unchecked")
+    private final CacheNode<KT, VT>[] tails = new CacheNode[3];
+    private final long[] queueWeights = new long[3];
+    private CacheNode<KT, VT> writeHead;
+    private CacheNode<KT, VT> writeTail;
+    private long liveCount;
+    private TimingWheel.Timeout pacer;
+    private long pacerDeadline;
+    private List<Runnable> notifications;
+    private volatile long weightedSize;
+
+    CachePolicy(long maximum, boolean weighted, long expireAfterWriteNanos, long expireAfterAccessNanos,
+                boolean variableExpiry, IClock clock, TimingWheel timer, Evictor<KT, VT> evictor) {
+        this.maximum = maximum;
+        this.weighted = weighted;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+        this.variableExpiry = variableExpiry;
+        this.clock = clock;
+        this.timer = timer;
+        this.evictor = evictor;
+        if (maximum >= 0) {
+            this.windowMaximum = maximum - (maximum * (100 - PERCENT_WINDOW)) / 100;
+            this.protectedMaximum = ((maximum - windowMaximum) * PERCENT_PROTECTED) / 100;
+            if (!weighted) {
+                sketch.ensureCapacity(Math.min(maximum, 1 << 20));
+            }
+        } else {
+            this.windowMaximum = Long.MAX_VALUE;
+            this.protectedMaximum = Long.MAX_VALUE;
+        }
+    }
+
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * @return 是否开启了任何一种过期
+     */
+    boolean expires() {
+        return expireAfterWriteNanos >= 0 || expireAfterAccessNanos >= 0 || variableExpiry;
+    }
+
+    boolean expiresAfterAccess() {
+        return expireAfterAccessNanos >= 0;
+    }
+
+    boolean expiresVariably() {
+        return variableExpiry;
+    }
+
+    /**
+     * 不需要持锁，读写路径用它做惰性检查，保证过期的项不会被返回
+     */
+    boolean hasExpired(CacheNode<KT, VT> node, long now) {
+        if (expireAfterWriteNanos >= 0 && now - node.writeTime >= expireAfterWriteNanos) {
+            return true;
+        }
+        if (expireAfterAccessNanos >= 0 && now - node.accessTime >= expireAfterAccessNanos) {
+            return true;
+        }
+        return variableExpiry && now - node.deadline >= 0;
+    }
+
+    /**
+     * 不需要持锁
+     *
+     * @return 节点剩余的存活时间（纳秒），不会过期时为 -1，已经过期时为 0
+     */
+    long remainingNanos(CacheNode<KT, VT> node, long now) {
+        long remaining = Long.MAX_VALUE;
+        if (expireAfterWriteNanos >= 0) {
+            remaining = Math.min(remaining, node.writeTime + expireAfterWriteNanos - now);
+        }
+        if (expireAfterAccessNanos >= 0) {
+            remaining = Math.min(remaining, node.accessTime + expireAfterAccessNanos - now);
+        }
+        if (variableExpiry) {
+            remaining = Math.min(remaining, node.deadline - now);
+        }
+        return remaining == Long.MAX_VALUE ? -1 : Math.max(0, remaining);
+    }
+
+    /**
+     * 调整还没有加入 map 的节点的时间戳，让它在 remainingNanos 之后过期（不超过本缓存配置的存活时间）
+     */
+    void backdate(CacheNode<KT, VT> node, long now, long remainingNanos) {
+        if (expireAfterWriteNanos >= 0) {
+            node.writeTime = now - Math.max(0, expireAfterWriteNanos - remainingNanos);
+        }
+        if (expireAfterAccessNanos >= 0) {
+            node.accessTime = now - Math.max(0, expireAfterAccessNanos - remainingNanos);
+        }
+        if (variableExpiry) {
+            node.deadline = now + Math.min(remainingNanos, MAX_DURATION);
+        }
+    }
+
+    /**
+     * 批量读取访问频率，整批只获取一次锁
+     *
+     * @param out 与 nodes 一一对应的频率，没有上限时全部为 0
+     */
+    void frequencies(List<CacheNode<KT, VT>> nodes, int[] out) {
+        if (maximum < 0) {
+            Arrays.fill(out, 0, nodes.size(), 0);
+            return;
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < nodes.size(); i++) {
+                out[i] = sketch.frequency(nodes.get(i).key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 恢复快照中记录的访问频率，必须在 {@link #recordAdd} 之后调用（添加本身计一次）
+     */
+    void recordFrequency(CacheNode<KT, VT> node, int frequency) {
+        if (maximum < 0 || frequency <= 1) {
+            return;
+        }
+        afterWrite(() -> {
+            for (int i = 1; i < frequency; i++) {
+                sketch.increment(node.key);
+            }
+        });
+    }
+
+    /**
+     * 维护期间产生的移除通知，在释放锁之后执行
+     */
+    void notifyLater(Runnable notification) {
+        if (notifications == null) {
+            notifications = new ArrayList<>();
+        }
+        notifications.add(notification);
+    }
+
+    /**
+     * 记录一次读命中，只在缓冲区满时才尝试排空
+     */
+    void recordRead(CacheNode<KT, VT> node) {
+        if (readBuffer.offer(node) == ReadBuffer.FULL) {
+            tryDrain();
+        }
+    }
+
+    void recordAdd(CacheNode<KT, VT> node) {
+        afterWrite(() -> onAdd(node));
+    }
+
+    void recordUpdate(CacheNode<KT, VT> node) {
+        afterWrite(() -> onUpdate(node));
+    }
+
+    void recordRemove(CacheNode<KT, VT> node) {
+        afterWrite(() -> onRemove(node));
+    }
+
+    /**
+     * 批量读取的访问记录，最后只尝试一次排空
+     */
+    void recordReads(List<CacheNode<KT, VT>> nodes) {
+        boolean full = false;
+        for (CacheNode<KT, VT> node : nodes) {
+            full |= readBuffer.offer(node) == ReadBuffer.FULL;
+        }
+        if (full) {
+            tryDrain();
+        }
+    }
+
+    /**
+     * 批量写入的记录合并成一个任务，整批只入队一次、只尝试一次维护
+     */
+    void recordBatch(List<CacheNode<KT, VT>> added, List<CacheNode<KT, VT>> updated, List<CacheNode<KT, VT>> removed) {
+        if (added.isEmpty() && updated.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        afterWrite(() -> {
+            for (CacheNode<KT, VT> node : added) {
+                onAdd(node);
+            }
+            for (CacheNode<KT, VT> node : updated) {
+                onUpdate(node);
+            }
+            for (CacheNode<KT, VT> node : removed) {
+                onRemove(node);
+            }
+        });
+    }
+
+    /**
+     * 同步排空所有缓冲区并执行淘汰和过期清理
+     */
+    void cleanUp() {
+        List<Runnable> pending;
+        lock.lock();
+        try {
+            pending = maintenance();
+        } finally {
+            lock.unlock();
+        }
+        runNotifications(pending);
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() >= WRITE_BUFFER_MAX) {
+            cleanUp();
+        }
+        tryDrain();
+    }
+
+    private void tryDrain() {
+        // 持锁线程在释放前检查过写缓冲，但释放之后才入队的任务需要再检查一次
+        do {
+            if (!lock.tryLock()) {
+                return;
+            }
+            List<Runnable> pending;
+            try {
+                pending = maintenance();
+            } finally {
+                lock.unlock();
+            }
+            runNotifications(pending);
+        } while (!writeBuffer.isEmpty());
+    }
+
+    private List<Runnable> maintenance() {
+        readBuffer.drainTo(onAccess);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        if (expireAfterWriteNanos >= 0 || expireAfterAccessNanos >= 0) {
+            long now = clock.nanoTime();
+            expireEntries(now);
+            schedulePacer(now);
+        }
+        if (maximum >= 0) {
+            evictEntries();
+        }
+        weightedSize = queueWeights[CacheNode.WINDOW] + queueWeights[CacheNode.PROBATION] + queueWeights[CacheNode.PROTECTED];
+        List<Runnable> pending = notifications;
+        notifications = null;
+        return pending;
+    }
+
+    private static void runNotifications(List<Runnable> pending) {
+        if (pending == null) return;
+        for (Runnable notification : pending) {
+            notification.run();
+        }
+    }
+
+    private void onAdd(CacheNode<KT, VT> node) {
+        if (!node.isAlive()) {
+            // 添加任务被重放之前节点已经被删除
+            node.state = CacheNode.DEAD;
+            return;
+        }
+        liveCount++;
+        if (maximum >= 0) {
+            if (liveCount > sketch.capacity() && weighted) {
+                // 按权重限制时无法预知项数，随着项数增长扩大 sketch
+                sketch.ensureCapacity(liveCount * 2);
+            }
+            sketch.increment(node.key);
+        }
+        node.policyWeight = node.weight;
+        link(node, CacheNode.WINDOW);
+        if (expireAfterWriteNanos >= 0) {
+            linkWriteOrder(node);
+        }
+        if (variableExpiry) {
+            scheduleTimer(node);
+        }
+    }
+
+    private void onUpdate(CacheNode<KT, VT> node) {
+        if (maximum >= 0) {
+            sketch.increment(node.key);
+        }
+        if (node.queue == CacheNode.NONE) {
+            // 还没有被添加或者已经被移除，添加时会读取最新的权重
+            return;
+        }
+        int weight = node.weight;
+        queueWeights[node.queue] += weight - node.policyWeight;
+        node.policyWeight = weight;
+        touch(node);
+        if (expireAfterWriteNanos >= 0) {
+            unlinkWriteOrder(node);
+            linkWriteOrder(node);
+        }
+        if (variableExpiry && node.deadline != node.scheduledDeadline) {
+            scheduleTimer(node);
+        }
+    }
+
+    private void onRemove(CacheNode<KT, VT> node) {
+        discard(node);
+    }
+
+    private void onAccess(CacheNode<KT, VT> node) {
+        if (node.queue == CacheNode.NONE) {
+            return;
+        }
+        if (maximum >= 0) {
+            sketch.increment(node.key);
+        }
+        touch(node);
+        if (variableExpiry && node.deadline - node.scheduledDeadline < 0) {
+            // 读取缩短了存活时间；延长的情况等原来的定时器触发时再重新登记
+            scheduleTimer(node);
+        }
+    }
+
+    private void onTimer(CacheNode<KT, VT> node) {
+        if (node.queue == CacheNode.NONE) {
+            return;
+        }
+        long now = clock.nanoTime();
+        if (!expire(node, now)) {
+            scheduleTimer(node);
+        }
+    }
+
+    private void touch(CacheNode<KT, VT> node) {
+        if (node.queue == CacheNode.PROBATION) {
+            // 试用段中被再次访问，晋升到保护段
+            unlink(node);
+            link(node, CacheNode.PROTECTED);
+            while (queueWeights[CacheNode.PROTECTED] > protectedMaximum && heads[CacheNode.PROTECTED] != node) {
+                CacheNode<KT, VT> demoted = heads[CacheNode.PROTECTED];
+                unlink(demoted);
+                link(demoted, CacheNode.PROBATION);
+            }
+        } else {
+            moveToTail(node);
+        }
+    }
+
+    private void expireEntries(long now) {
+        if (expireAfterWriteNanos >= 0) {
+            while (writeHead != null && now - writeHead.writeTime >= expireAfterWriteNanos) {
+                if (!expire(writeHead, now)) break;
+            }
+        }
+        if (expireAfterAccessNanos >= 0) {
+            // 三个段各自按访问顺序排列
+            for (int queue = CacheNode.WINDOW; queue <= CacheNode.PROTECTED; queue++) {
+                while (heads[queue] != null && now - heads[queue].accessTime >= expireAfterAccessNanos) {
+                    if (!expire(heads[queue], now)) break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 节点是否已经被处理掉；false 表示它在被并发更新后还没有过期
+     */
+    private boolean expire(CacheNode<KT, VT> node, long now) {
+        if (evictor.evict(node, RemovalCause.EXPIRED, now) || !node.isAlive()) {
+            discard(node);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在时间轮上安排下一次清理，时间为最早到期的项的过期时间
+     */
+    private void schedulePacer(long now) {
+        long next = Long.MAX_VALUE;
+        if (expireAfterWriteNanos >= 0 && writeHead != null) {
+            next = Math.min(next, writeHead.writeTime + expireAfterWriteNanos - now);
+        }
+        if (expireAfterAccessNanos >= 0) {
+            for (int queue = CacheNode.WINDOW; queue <= CacheNode.PROTECTED; queue++) {
+                if (heads[queue] != null) {
+                    next = Math.min(next, heads[queue].accessTime + expireAfterAccessNanos - now);
+                }
+            }
+        }
+        if (next == Long.MAX_VALUE) {
+            return;
+        }
+        long delay = Math.max(0, next);
+        boolean pending = pacer != null && !pacer.isExpired() && !pacer.isCancelled();
+        if (pending && pacerDeadline - (now + delay) <= timer.tick().toNanos()) {
+            // 已经安排的清理足够早
+            return;
+        }
+        if (pending) {
+            pacer.cancel();
+        }
+        pacerDeadline = now + delay;
+        pacer = timer.schedule(this::cleanUp, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void scheduleTimer(CacheNode<KT, VT> node) {
+        if (node.timeout != null) {
+            node.timeout.cancel();
+        }
+        long deadline = node.deadline;
+        node.scheduledDeadline = deadline;
+        long delay = Math.max(0, deadline - clock.nanoTime());
+        node.timeout = timer.schedule(() -> afterWrite(() -> onTimer(node)), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void evictEntries() {
+        // 窗口溢出的项移到试用段尾部，成为候选者
+        int candidates = 0;
+        while (queueWeights[CacheNode.WINDOW] > windowMaximum) {
+            CacheNode<KT, VT> node = heads[CacheNode.WINDOW];
+            unlink(node);
+            link(node, CacheNode.PROBATION);
+            candidates++;
+        }
+        while (total() > maximum) {
+            CacheNode<KT, VT> victim = heads[CacheNode.PROBATION];
+            CacheNode<KT, VT> candidate = candidates > 0 ? tails[CacheNode.PROBATION] : null;
+            if (victim == null) {
+                victim = heads[CacheNode.PROTECTED] != null ? heads[CacheNode.PROTECTED] : heads[CacheNode.WINDOW];
+                candidate = null;
+            }
+            if (candidate == null || candidate == victim) {
+                candidates = Math.max(0, candidates - 1);
+                evict(victim);
+            } else if (admit(candidate, victim)) {
+                evict(victim);
+            } else {
+                candidates--;
+                evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * 候选者的访问频率高于牺牲者时才接纳。频率相同时拒绝候选者，偏向已经在主区中的项。
+     */
+    private boolean admit(CacheNode<KT, VT> candidate, CacheNode<KT, VT> victim) {
+        if (candidate.policyWeight > maximum) {
+            return false;
+        }
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key);
+    }
+
+    private void evict(CacheNode<KT, VT> node) {
+        evictor.evict(node, RemovalCause.SIZE, 0);
+        discard(node);
+    }
+
+    /**
+     * 从所有链表和时间轮中摘除节点
+     */
+    private void discard(CacheNode<KT, VT> node) {
+        if (node.queue != CacheNode.NONE) {
+            unlink(node);
+            liveCount--;
+        }
+        if (node.inWriteOrder) {
+            unlinkWriteOrder(node);
+        }
+        if (node.timeout != null) {
+            node.timeout.cancel();
+            node.timeout = null;
+        }
+        node.state = CacheNode.DEAD;
+    }
+
+    private long total() {
+        return queueWeights[CacheNode.WINDOW] + queueWeights[CacheNode.PROBATION] + queueWeights[CacheNode.PROTECTED];
+    }
+
+    private void link(CacheNode<KT, VT> node, int queue) {
+        CacheNode<KT, VT> tail = tails[queue];
+        node.queue = queue;
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            heads[queue] = node;
+        } else {
+            tail.next = node;
+        }
+        tails[queue] = node;
+        queueWeights[queue] += node.policyWeight;
+    }
+
+    private void unlink(CacheNode<KT, VT> node) {
+        int queue = node.queue;
+        if (node.prev == null) {
+            heads[queue] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tails[queue] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        queueWeights[queue] -= node.policyWeight;
+        node.prev = null;
+        node.next = null;
+        node.queue = CacheNode.NONE;
+    }
+
+    private void moveToTail(CacheNode<KT, VT> node) {
+        int queue = node.queue;
+        if (tails[queue] == node) {
+            return;
+        }
+        unlink(node);
+        link(node, queue);
+    }
+
+    private void linkWriteOrder(CacheNode<KT, VT> node) {
+        node.inWriteOrder = true;
+        node.writePrev = writeTail;
+        node.writeNext = null;
+        if (writeTail == null) {
+            writeHead = node;
+        } else {
+            writeTail.writeNext = node;
+        }
+        writeTail = node;
+    }
+
+    private void unlinkWriteOrder(CacheNode<KT, VT> node) {
+        if (node.writePrev == null) {
+            writeHead = node.writeNext;
+        } else {
+            node.writePrev.writeNext = node.writeNext;
+        }
+        if (node.writeNext == null) {
+            writeTail = node.writePrev;
+        } else {
+            node.writeNext.writePrev = node.writePrev;
+        }
+        node.writePrev = null;
+        node.writeNext = null;
+        node.inWriteOrder = false;
+    }
+}
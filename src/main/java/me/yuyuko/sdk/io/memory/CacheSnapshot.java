@@ -0,0 +1,212 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MemoryCache} 快照文件的读写。
+ * <p>
+ * 格式（大端序）：
+ * <pre>
+ * 头部   int magic "YYCS" | short version | short 保留 | long 保存时的墙上时间（毫秒）
+ * 每一项 int 键长度 | 键 | int 值长度 | 值 | long 剩余存活时间（纳秒，-1 表示不过期） | byte 访问频率
+ * 尾部   int -1 | long 项数
+ * </pre>
+ * 写入时按批遍历缓存，每批只获取一次淘汰锁来读取访问频率；读取时按窗口映射文件，不经过堆上的缓冲区。
+ * @author castorice (遐蝶)
+ */
+final class CacheSnapshot {
+    private static final int MAGIC = 0x59594353;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END = -1;
+    private static final int BATCH_SIZE = 1024;
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    private CacheSnapshot() {
+    }
+
+    static <KT, VT> long write(MemoryCache<KT, VT> cache, Path file, CacheCodec<KT> keyCodec, CacheCodec<VT> valueCodec)
+        throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeLong(cache.clock().currentTimeMillis());
+            List<CacheNode<KT, VT>> batch = new ArrayList<>(BATCH_SIZE);
+            int[] frequencies = new int[BATCH_SIZE];
+            for (CacheNode<KT, VT> node : cache.nodes()) {
+                batch.add(node);
+                if (batch.size() == BATCH_SIZE) {
+                    count += writeBatch(cache, batch, frequencies, out, keyCodec, valueCodec);
+                    batch.clear();
+                }
+            }
+            count += writeBatch(cache, batch, frequencies, out, keyCodec, valueCodec);
+            out.writeInt(END);
+            out.writeLong(count);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 文件系统不支持原子替换时退回普通替换
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return count;
+    }
+
+    private static <KT, VT> int writeBatch(MemoryCache<KT, VT> cache, List<CacheNode<KT, VT>> batch, int[] frequencies,
+                                           DataOutputStream out, CacheCodec<KT> keyCodec, CacheCodec<VT> valueCodec)
+        throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        cache.frequencies(batch, frequencies);
+        long now = cache.clock().nanoTime();
+        int written = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            CacheNode<KT, VT> node = batch.get(i);
+            VT value;
+            long remaining;
+            synchronized (node) {
+                if (!node.isAlive()) {
+                    continue;
+                }
+                value = node.value;
+                remaining = cache.remainingNanos(node, now);
+            }
+            if (remaining == 0) {
+                continue;
+            }
+            byte[] key = keyCodec.encode(node.key);
+            byte[] data = valueCodec.encode(value);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(data.length);
+            out.write(data);
+            out.writeLong(remaining);
+            out.writeByte(frequencies[i]);
+            written++;
+        }
+        return written;
+    }
+
+    static <KT, VT> long read(MemoryCache<KT, VT> cache, Path file, CacheCodec<KT> keyCodec, CacheCodec<VT> valueCodec)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            if (in.size < HEADER_SIZE || in.getInt() != MAGIC) {
+                throw new IOException("not a cache snapshot: " + file);
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version + ": " + file);
+            }
+            in.getShort();
+            long savedAt = in.getLong();
+            long elapsed = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cache.clock().currentTimeMillis() - savedAt));
+            long read = 0;
+            long restored = 0;
+            for (;;) {
+                int keyLength = in.getInt();
+                if (keyLength == END) {
+                    break;
+                }
+                KT key = keyCodec.decode(in.getBytes(keyLength));
+                VT value = valueCodec.decode(in.getBytes(in.getInt()));
+                long remaining = in.getLong();
+                int frequency = in.getByte();
+                read++;
+                if (remaining >= 0) {
+                    remaining -= elapsed;
+                    if (remaining <= 0) {
+                        continue;
+                    }
+                }
+                if (key != null && value != null && cache.restore(key, value, remaining, frequency)) {
+                    restored++;
+                }
+            }
+            long count = in.getLong();
+            if (count != read) {
+                throw new IOException("corrupted snapshot, expected " + count + " entries but read " + read + ": " + file);
+            }
+            return restored;
+        }
+    }
+
+    /**
+     * 按窗口顺序读取文件，当前窗口剩余的字节不够时从下一项的起点重新映射
+     */
+    private static final class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private MappedByteBuffer buffer;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_SIZE));
+        }
+
+        private void ensure(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("corrupted snapshot, negative length " + length);
+            }
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            long position = base + buffer.position();
+            if (size - position < length) {
+                throw new EOFException("truncated snapshot at offset " + position);
+            }
+            base = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(length, WINDOW_SIZE)));
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        short getShort() throws IOException {
+            ensure(2);
+            return buffer.getShort();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        int getByte() throws IOException {
+            ensure(1);
+            return buffer.get() & 0xff;
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+}
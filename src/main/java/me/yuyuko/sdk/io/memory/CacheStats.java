@@ -0,0 +1,299 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.Arrays;
+
+import me.yuyuko.sdk.time.TimeDelta;
+
+/**
+ * {@link MemoryCache} 的统计数据快照，不可变。
+ * <p>
+ * 计数从缓存创建开始累计；两次快照相减（{@link #minus(CacheStats)}）得到这段时间内的增量，
+ * 再用 {@link #hitRate()}、{@link #requestsPerSecond()} 等计算比例和速率。
+ * <pre>
+ * CacheStats before = cache.stats();
+ * ...
+ * CacheStats window = cache.stats().minus(before);
+ * double hitRate = window.hitRate();
+ * </pre>
+ * @author castorice (遐蝶)
+ */
+public final class CacheStats {
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, new long[RemovalCause.values().length], 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long[] removalCounts;
+    private final long evictionWeight;
+    private final long weightedSize;
+    private final long intervalNanos;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+               long[] removalCounts, long evictionWeight, long weightedSize, long intervalNanos) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.removalCounts = removalCounts;
+        this.evictionWeight = evictionWeight;
+        this.weightedSize = weightedSize;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @return 所有计数都为零的快照，没有开启统计的缓存返回它
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 命中和未命中次数之和
+     */
+    public long requestCount() {
+        return saturatedAdd(hitCount, missCount);
+    }
+
+    /**
+     * @return 命中率，没有请求时为 1
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return 未命中率，没有请求时为 0
+     */
+    public double missRate() {
+        long requests = requestCount();
+        return requests == 0 ? 0.0 : (double) missCount / requests;
+    }
+
+    /**
+     * @return 加载成功的次数（包括后台刷新）
+     */
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * @return 加载失败的次数，loader 抛出异常或返回 null 都算失败
+     */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * @return 加载的总次数
+     */
+    public long loadCount() {
+        return saturatedAdd(loadSuccessCount, loadFailureCount);
+    }
+
+    /**
+     * @return 加载失败的比例，没有加载时为 0
+     */
+    public double loadFailureRate() {
+        long loads = loadCount();
+        return loads == 0 ? 0.0 : (double) loadFailureCount / loads;
+    }
+
+    /**
+     * @return 所有加载的总耗时（纳秒）
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return 平均每次加载的耗时（纳秒），没有加载时为 0
+     */
+    public double averageLoadPenalty() {
+        long loads = loadCount();
+        return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * @param cause 移除原因
+     * @return 因 cause 被移除的项数
+     */
+    public long removalCount(RemovalCause cause) {
+        return removalCounts[cause.ordinal()];
+    }
+
+    /**
+     * @return 被淘汰或过期的项数，见 {@link RemovalCause#wasEvicted()}
+     */
+    public long evictionCount() {
+        return saturatedAdd(removalCount(RemovalCause.SIZE), removalCount(RemovalCause.EXPIRED));
+    }
+
+    /**
+     * @return 被淘汰或过期的项的权重之和
+     */
+    public long evictionWeight() {
+        return evictionWeight;
+    }
+
+    /**
+     * @return 取快照时的总权重估计值，可能包含尚未清理的项；增量快照中为较新一次的值
+     */
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * @return 统计覆盖的时长（纳秒）：缓存创建至今，或者两次快照之间
+     */
+    public long intervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * @see #intervalNanos()
+     */
+    public TimeDelta interval() {
+        return new TimeDelta().nanos(intervalNanos);
+    }
+
+    /**
+     * @return 每秒请求数，时长为零时为 0
+     */
+    public double requestsPerSecond() {
+        return perSecond(requestCount());
+    }
+
+    /**
+     * @return 每秒加载次数，时长为零时为 0
+     */
+    public double loadsPerSecond() {
+        return perSecond(loadCount());
+    }
+
+    /**
+     * @return 每秒淘汰和过期的项数，时长为零时为 0
+     */
+    public double evictionsPerSecond() {
+        return perSecond(evictionCount());
+    }
+
+    /**
+     * @param other 较早的快照
+     * @return 两次快照之间的增量，计数不会小于零
+     */
+    public CacheStats minus(CacheStats other) {
+        long[] removals = new long[removalCounts.length];
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = Math.max(0, removalCounts[i] - other.removalCounts[i]);
+        }
+        return new CacheStats(
+            Math.max(0, hitCount - other.hitCount),
+            Math.max(0, missCount - other.missCount),
+            Math.max(0, loadSuccessCount - other.loadSuccessCount),
+            Math.max(0, loadFailureCount - other.loadFailureCount),
+            Math.max(0, totalLoadTime - other.totalLoadTime),
+            removals,
+            Math.max(0, evictionWeight - other.evictionWeight),
+            weightedSize,
+            Math.max(0, intervalNanos - other.intervalNanos));
+    }
+
+    /**
+     * 合并两个缓存的统计，例如把多个分片的统计汇总到一起
+     *
+     * @param other 另一个快照
+     * @return 两者之和，溢出时饱和；时长取较长的一个
+     */
+    public CacheStats plus(CacheStats other) {
+        long[] removals = new long[removalCounts.length];
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = saturatedAdd(removalCounts[i], other.removalCounts[i]);
+        }
+        return new CacheStats(
+            saturatedAdd(hitCount, other.hitCount),
+            saturatedAdd(missCount, other.missCount),
+            saturatedAdd(loadSuccessCount, other.loadSuccessCount),
+            saturatedAdd(loadFailureCount, other.loadFailureCount),
+            saturatedAdd(totalLoadTime, other.totalLoadTime),
+            removals,
+            saturatedAdd(evictionWeight, other.evictionWeight),
+            saturatedAdd(weightedSize, other.weightedSize),
+            Math.max(intervalNanos, other.intervalNanos));
+    }
+
+    private double perSecond(long count) {
+        return intervalNanos <= 0 ? 0.0 : count * 1e9 / intervalNanos;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) {
+            return Long.MAX_VALUE;
+        }
+        return r;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheStats)) return false;
+        CacheStats other = (CacheStats) o;
+        return hitCount == other.hitCount
+            && missCount == other.missCount
+            && loadSuccessCount == other.loadSuccessCount
+            && loadFailureCount == other.loadFailureCount
+            && totalLoadTime == other.totalLoadTime
+            && Arrays.equals(removalCounts, other.removalCounts)
+            && evictionWeight == other.evictionWeight
+            && weightedSize == other.weightedSize
+            && intervalNanos == other.intervalNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Long.hashCode(hitCount);
+        h = 31 * h + Long.hashCode(missCount);
+        h = 31 * h + Long.hashCode(loadSuccessCount);
+        h = 31 * h + Long.hashCode(loadFailureCount);
+        h = 31 * h + Long.hashCode(totalLoadTime);
+        h = 31 * h + Arrays.hashCode(removalCounts);
+        h = 31 * h + Long.hashCode(evictionWeight);
+        h = 31 * h + Long.hashCode(weightedSize);
+        return 31 * h + Long.hashCode(intervalNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CacheStats{")
+            .append("hitCount=").append(hitCount)
+            .append(", missCount=").append(missCount)
+            .append(", loadSuccessCount=").append(loadSuccessCount)
+            .append(", loadFailureCount=").append(loadFailureCount)
+            .append(", totalLoadTime=").append(totalLoadTime);
+        for (RemovalCause cause : RemovalCause.values()) {
+            sb.append(", ").append(cause.name().toLowerCase()).append("Count=").append(removalCount(cause));
+        }
+        return sb.append(", evictionWeight=").append(evictionWeight)
+            .append(", weightedSize=").append(weightedSize)
+            .append(", intervalNanos=").append(intervalNanos)
+            .append('}').toString();
+    }
+}
@@ -0,0 +1,41 @@
+package me.yuyuko.sdk.io.memory;
+
+import me.yuyuko.sdk.time.TimeDelta;
+
+/**
+ * 为每一项单独计算存活时间。
+ * <pre>
+ * MemoryCache&lt;String, Session&gt; cache = MemoryCache.&lt;String, Session&gt;builder()
+ *     .expireAfter((key, session) -&gt; session.ttl())
+ *     .build();
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+@FunctionalInterface
+public interface Expiry<KT, VT> {
+
+    /**
+     * @return 新写入的项从现在起的存活时间
+     */
+    TimeDelta expireAfterCreate(KT key, VT value);
+
+    /**
+     * 默认与新写入相同
+     *
+     * @return 被覆盖的项从现在起的存活时间
+     */
+    default TimeDelta expireAfterUpdate(KT key, VT value) {
+        return expireAfterCreate(key, value);
+    }
+
+    /**
+     * 默认返回 null，即读取不影响过期时间
+     *
+     * @return 被读取的项从现在起的存活时间，null 表示不变
+     */
+    default TimeDelta expireAfterRead(KT key, VT value) {
+        return null;
+    }
+}
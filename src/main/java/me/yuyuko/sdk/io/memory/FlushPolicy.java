@@ -0,0 +1,104 @@
+package me.yuyuko.sdk.io.memory;
+
+import me.yuyuko.sdk.time.TimeDelta;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MemoryMappedFile} 把修改写回存储设备的时机。
+ * <p>
+ * 除了 {@link #none()}，其余策略都会按页记录被修改过的区域，{@link MemoryMappedFile#flush()} 只对这些区域调用 force，
+ * 并且在关闭文件时写回剩下的修改。
+ * <pre>
+ * MemoryMappedFile.builder(path).flushPolicy(FlushPolicy.periodic(new TimeDelta().seconds(1))).build();
+ * </pre>
+ * @author castorice (遐蝶)
+ */
+public final class FlushPolicy {
+    private static final FlushPolicy NONE = new FlushPolicy(false, 0, 0);
+    private static final FlushPolicy ON_CLOSE = new FlushPolicy(true, 0, 0);
+
+    private final boolean tracking;
+    private final long intervalNanos;
+    private final long dirtyBytes;
+
+    private FlushPolicy(boolean tracking, long intervalNanos, long dirtyBytes) {
+        this.tracking = tracking;
+        this.intervalNanos = intervalNanos;
+        this.dirtyBytes = dirtyBytes;
+    }
+
+    /**
+     * 不主动写回，由操作系统决定，不记录修改的区域，{@link MemoryMappedFile#flush()} 写回所有已映射的段
+     */
+    public static FlushPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * 关闭时写回修改过的区域
+     */
+    public static FlushPolicy onClose() {
+        return ON_CLOSE;
+    }
+
+    /**
+     * 每隔 interval 在后台写回一次修改过的区域，关闭时也会写回
+     *
+     * @param interval 间隔，必须大于零
+     */
+    public static FlushPolicy periodic(TimeDelta interval) {
+        long nanos = interval.toTimeUnit(TimeUnit.NANOSECONDS);
+        if (nanos <= 0) {
+            throw new IllegalArgumentException("interval must be positive: " + interval);
+        }
+        return new FlushPolicy(true, nanos, 0);
+    }
+
+    /**
+     * 修改过的区域累计达到 bytes 时在后台写回一次，关闭时也会写回。修改按页（4 KiB）计算
+     *
+     * @param bytes 阈值，必须大于零
+     */
+    public static FlushPolicy afterDirtyBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes must be positive: " + bytes);
+        }
+        return new FlushPolicy(true, 0, bytes);
+    }
+
+    /**
+     * @return 是否记录修改的区域并在关闭时写回
+     */
+    boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * @return 后台写回的间隔，0 表示不定期写回
+     */
+    long intervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * @return 触发写回的修改量，0 表示不按修改量写回
+     */
+    long dirtyBytes() {
+        return dirtyBytes;
+    }
+
+    @Override
+    public String toString() {
+        if (!tracking) {
+            return "FlushPolicy[none]";
+        }
+        if (intervalNanos > 0) {
+            return "FlushPolicy[periodic " + intervalNanos + "ns]";
+        }
+        if (dirtyBytes > 0) {
+            return "FlushPolicy[after " + dirtyBytes + " dirty bytes]";
+        }
+        return "FlushPolicy[onClose]";
+    }
+}
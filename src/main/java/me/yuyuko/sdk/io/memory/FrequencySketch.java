@@ -0,0 +1,100 @@
+package me.yuyuko.sdk.io.memory;
+
+/**
+ * TinyLFU 使用的访问频率估计：4 位计数器的 Count-Min Sketch，每个键占用 4 个计数器，
+ * 取最小值作为频率估计（上限 15）。累计的增量达到容量的 10 倍时所有计数减半，让旧的热点逐渐冷却。
+ * <p>
+ * 不是线程安全的，只由持有淘汰锁的线程访问。
+ * @author castorice (遐蝶)
+ */
+final class FrequencySketch {
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table = new long[1];
+    private int tableMask;
+    private int sampleSize = 10;
+    private int size;
+
+    /**
+     * 按预期的项数扩容，只增不减；扩容时已有的频率会丢失
+     */
+    void ensureCapacity(long expectedSize) {
+        int maximum = (int) Math.min(Math.max(expectedSize, 1), Integer.MAX_VALUE >>> 2);
+        if (table.length >= maximum) {
+            return;
+        }
+        table = new long[Integer.highestOneBit(maximum - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = 10 * maximum;
+        size = 0;
+    }
+
+    /**
+     * @return 能够较准确跟踪的项数
+     */
+    int capacity() {
+        return table.length;
+    }
+
+    /**
+     * @return 估计的访问频率，0 到 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
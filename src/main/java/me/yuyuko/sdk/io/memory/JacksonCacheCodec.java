@@ -0,0 +1,30 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 基于 Jackson 的 JSON 编解码，ObjectReader / ObjectWriter 是不可变的，可以并发使用
+ * @author castorice (遐蝶)
+ */
+final class JacksonCacheCodec<VT> implements CacheCodec<VT> {
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    JacksonCacheCodec(ObjectWriter writer, ObjectReader reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    @Override
+    public byte[] encode(VT value) throws IOException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Override
+    public VT decode(byte[] data) throws IOException {
+        return reader.readValue(data);
+    }
+}
@@ -0,0 +1,317 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 以 long 为键的内存缓存，键不装箱，也没有 {@link java.util.concurrent.ConcurrentHashMap} 的节点对象。
+ * <p>
+ * 按哈希值分成若干分段，每段是一张线性探测的开放寻址表：键存放在 long[] 中，值存放在并列的引用数组中，
+ * 每项只占 8 字节的键加一个引用，查找通常只访问两条缓存行。
+ * 读不加锁：先以 volatile 语义读值再读键，同一张表中的槽位不会换给别的键，所以读到的键值一定是配对的；
+ * 写在分段上加锁，扩容或清理删除标记时整张表换新，正在读旧表的线程不受影响。
+ * <p>
+ * 设置 maximumSize 后每个分段按 CLOCK 淘汰：读命中只设置一个访问位，淘汰时跳过并清除访问位，
+ * 移除第一个没有被访问过的项。上限平均分给各个分段，所以是近似的。
+ * <pre>
+ * LongMemoryCache&lt;Session&gt; sessions = LongMemoryCache.&lt;Session&gt;builder().maximumSize(100_000).build();
+ * sessions.put(userId, session);
+ * Session s = sessions.get(userId);
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <VT> 值的类型
+ */
+public final class LongMemoryCache<VT> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_STRIPES = 256;
+    // 有上限时每个分段至少分到这么多项，避免分段太多让上限失去意义
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private static final class Table {
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+        final byte[] referenced;
+        final int mask;
+        volatile int size;
+        // 包括删除标记在内被占用的槽位
+        int used;
+        int hand;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            referenced = new byte[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Stripe {
+        final long maximum;
+        volatile Table table;
+
+        Stripe(long maximum, int capacity) {
+            this.maximum = maximum;
+            this.table = new Table(capacity);
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int initialCapacity;
+    private final boolean bounded;
+
+    /**
+     * 没有上限的缓存
+     */
+    public LongMemoryCache() {
+        this(-1, 0);
+    }
+
+    private LongMemoryCache(long maximumSize, int expectedSize) {
+        int count = Math.min(MAX_STRIPES, tableSizeFor(Runtime.getRuntime().availableProcessors() * 4));
+        if (maximumSize >= 0) {
+            while (count > 1 && maximumSize / count < MIN_STRIPE_SIZE) {
+                count >>= 1;
+            }
+        }
+        this.stripes = new Stripe[count];
+        this.stripeMask = count - 1;
+        this.bounded = maximumSize >= 0;
+        this.initialCapacity = capacityFor(expectedSize / count);
+        for (int i = 0; i < count; i++) {
+            long maximum = maximumSize < 0 ? -1 : maximumSize / count + (i < maximumSize % count ? 1 : 0);
+            stripes[i] = new Stripe(maximum, initialCapacity);
+        }
+    }
+
+    /**
+     * @return 用于创建有界缓存的 Builder
+     */
+    public static <VT> Builder<VT> builder() {
+        return new Builder<>();
+    }
+
+    public void put(long key, VT value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long hash = mix(key);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            Table table = stripe.table;
+            int i = (int) hash & table.mask;
+            for (;;) {
+                Object current = table.values.get(i);
+                if (current == null) {
+                    table.keys[i] = key;
+                    table.referenced[i] = 1;
+                    table.values.set(i, value);
+                    table.size++;
+                    table.used++;
+                    break;
+                }
+                if (table.keys[i] == key) {
+                    if (current == TOMBSTONE) {
+                        table.size++;
+                    }
+                    table.referenced[i] = 1;
+                    table.values.set(i, value);
+                    break;
+                }
+                i = (i + 1) & table.mask;
+            }
+            if (table.used * 4L >= (table.mask + 1) * 3L) {
+                table = rehash(stripe, table);
+            }
+            if (stripe.maximum >= 0) {
+                while (table.size > stripe.maximum) {
+                    evictOne(table);
+                }
+            }
+        }
+    }
+
+    public VT get(long key) {
+        long hash = mix(key);
+        Table table = stripeFor(hash).table;
+        int i = find(table, (int) hash, key);
+        if (i < 0) {
+            return null;
+        }
+        Object value = table.values.get(i);
+        if (value == TOMBSTONE) {
+            return null;
+        }
+        if (bounded && table.referenced[i] == 0) {
+            table.referenced[i] = 1;
+        }
+        @SuppressWarnings("unchecked")
+        VT result = (VT) value;
+        return result;
+    }
+
+    public boolean containsKey(long key) {
+        long hash = mix(key);
+        Table table = stripeFor(hash).table;
+        int i = find(table, (int) hash, key);
+        return i >= 0 && table.values.get(i) != TOMBSTONE;
+    }
+
+    public void remove(long key) {
+        long hash = mix(key);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            Table table = stripe.table;
+            int i = find(table, (int) hash, key);
+            if (i >= 0 && table.values.get(i) != TOMBSTONE) {
+                table.values.set(i, TOMBSTONE);
+                table.size--;
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.table = new Table(initialCapacity);
+            }
+        }
+    }
+
+    public int size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.table.size;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        for (Stripe stripe : stripes) {
+            if (stripe.table.size != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 键所在的槽位，不存在时为 -1；删除标记也会被返回
+     */
+    private static int find(Table table, int hash, long key) {
+        int i = hash & table.mask;
+        for (;;) {
+            // 先读值：值非空之后才能保证读到的键是写入者写的那个
+            Object value = table.values.get(i);
+            if (value == null) {
+                return -1;
+            }
+            if (table.keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & table.mask;
+        }
+    }
+
+    /**
+     * 按现有项数建一张新表，顺便清掉删除标记，调用方必须持有分段锁
+     */
+    private Table rehash(Stripe stripe, Table table) {
+        Table fresh = new Table(Math.max(initialCapacity, capacityFor(table.size * 2)));
+        for (int i = 0; i <= table.mask; i++) {
+            Object value = table.values.get(i);
+            if (value == null || value == TOMBSTONE) continue;
+            long key = table.keys[i];
+            int j = (int) mix(key) & fresh.mask;
+            while (fresh.values.get(j) != null) {
+                j = (j + 1) & fresh.mask;
+            }
+            fresh.keys[j] = key;
+            fresh.referenced[j] = table.referenced[i];
+            fresh.values.set(j, value);
+        }
+        fresh.size = table.size;
+        fresh.used = table.size;
+        stripe.table = fresh;
+        return fresh;
+    }
+
+    /**
+     * CLOCK：跳过并清除访问位，移除第一个没有被访问过的项
+     */
+    private static void evictOne(Table table) {
+        for (;;) {
+            int i = table.hand;
+            table.hand = (i + 1) & table.mask;
+            Object value = table.values.get(i);
+            if (value == null || value == TOMBSTONE) continue;
+            if (table.referenced[i] != 0) {
+                table.referenced[i] = 0;
+                continue;
+            }
+            table.values.set(i, TOMBSTONE);
+            table.size--;
+            return;
+        }
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash >>> 40) & stripeMask];
+    }
+
+    /**
+     * 负载不超过 3/4 所需的 2 的幂容量
+     */
+    private static int capacityFor(int size) {
+        return Math.max(MIN_CAPACITY, tableSizeFor((int) Math.min((size * 4L + 2) / 3 + 1, 1 << 30)));
+    }
+
+    private static int tableSizeFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * 有界缓存的配置
+     * @param <VT> 值的类型
+     */
+    public static final class Builder<VT> {
+        private long maximumSize = -1;
+        private int expectedSize;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumSize 最多保存的项数，近似值
+         */
+        public Builder<VT> maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param expectedSize 预计的项数，用于预先分配表，避免扩容
+         */
+        public Builder<VT> expectedSize(int expectedSize) {
+            if (expectedSize < 0) {
+                throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+            }
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        public LongMemoryCache<VT> build() {
+            return new LongMemoryCache<>(maximumSize, expectedSize);
+        }
+    }
+}
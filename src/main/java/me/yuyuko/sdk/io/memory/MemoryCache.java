@@ -1,43 +1,1388 @@
 package me.yuyuko.sdk.io.memory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+import me.yuyuko.sdk.exceptions.memory.CacheLoadException;
+import me.yuyuko.sdk.interfaces.io.memory.IMemoryCache;
+import me.yuyuko.sdk.interfaces.time.IClock;
+import me.yuyuko.sdk.time.SystemClock;
+import me.yuyuko.sdk.time.TimeDelta;
+import me.yuyuko.sdk.time.TimeSpan;
+import me.yuyuko.sdk.time.TimingWheel;
 
 /**
  * 内存缓存操作
+ * <p>
+ * 直接 new 出来的缓存没有上限也不会过期；通过 {@link #builder()} 可以：
+ * <ul>
+ *     <li>按项数或总权重限制大小，超出时按 W-TinyLFU 淘汰；</li>
+ *     <li>设置写入后或访问后的固定存活时间，或者用 {@link Expiry} 为每一项单独计算；</li>
+ *     <li>注册 {@link RemovalListener}，在项被移除、覆盖、过期或淘汰时得到通知；</li>
+ *     <li>设置 refreshAfterWrite，通过 {@link #get(Object, CacheLoader)} 读到旧值时先返回旧值，同时在后台重新加载。</li>
+ * </ul>
+ * {@link #get(Object, CacheLoader)} 和 {@link #getAll(Iterable, BulkLoader)} 保证同一个键同时只有一次加载，
+ * 其他未命中的线程等待同一个结果，热点键过期时不会有大量请求同时打到后端。
+ * 需要异步加载时使用 {@link Builder#buildAsync(CacheLoader)}。
+ * 开启 {@link Builder#recordStats()} 后可以通过 {@link #stats()} 读取命中率、加载耗时和淘汰次数等统计。
+ * {@link #saveSnapshot} 和 {@link #loadSnapshot} 可以把缓存的内容保存到文件，重启后直接恢复而不必从后端重新加载。
+ * 过期的项不会被读到。淘汰和过期清理在写入之后批量进行（见 {@link CachePolicy}），
+ * 所以 {@link #size()} 可能包含尚未清理的项，并发写入时也可能短暂地超过上限，{@link #cleanUp()} 之后一定不超过。
+ * <pre>
+ * MemoryCache&lt;String, byte[]&gt; cache = MemoryCache.&lt;String, byte[]&gt;builder()
+ *     .maximumWeight(64L &lt;&lt; 20)
+ *     .weigher((key, value) -&gt; value.length)
+ *     .expireAfterWrite(new TimeDelta().minutes(5))
+ *     .build();
+ * </pre>
  * @author castorice (遐蝶)
  * @param <KT> 键的类型
  * @param <VT> 值的类型
 */
-public class MemoryCache<KT, VT> {
-    private final ConcurrentMap<KT, VT> memCache = new ConcurrentHashMap<KT, VT>();
+public class MemoryCache<KT, VT> implements IMemoryCache<KT, VT> {
+    // 在调用线程上执行加载
+    private static final Executor DIRECT = Runnable::run;
+
+    private final ConcurrentMap<KT, CacheNode<KT, VT>> memCache = new ConcurrentHashMap<KT, CacheNode<KT, VT>>();
+    private final Weigher<? super KT, ? super VT> weigher;
+    private final Expiry<? super KT, ? super VT> expiry;
+    private final RemovalListener<? super KT, ? super VT> removalListener;
+    private final IClock clock;
+    private final long refreshAfterWriteNanos;
+    private final Executor executor;
+    private final StatsCounter stats;
+    // 需要维护节点上的时间戳
+    private final boolean timed;
+    // 既没有上限也不会过期时为 null
+    private final CachePolicy<KT, VT> policy;
+    // 正在进行的加载和刷新，保证每个键同时只有一个
+    private final ConcurrentMap<KT, CompletableFuture<VT>> loading = new ConcurrentHashMap<KT, CompletableFuture<VT>>();
+    private final ConcurrentMap<KT, CompletableFuture<VT>> refreshing = new ConcurrentHashMap<KT, CompletableFuture<VT>>();
+    private MapView mapView;
+
+    /**
+     * 没有上限的缓存
+     */
+    public MemoryCache() {
+        this.weigher = null;
+        this.expiry = null;
+        this.removalListener = null;
+        this.clock = SystemClock.INSTANCE;
+        this.refreshAfterWriteNanos = -1;
+        this.executor = ForkJoinPool.commonPool();
+        this.stats = StatsCounter.DISABLED;
+        this.timed = false;
+        this.policy = null;
+    }
+
+    private MemoryCache(Builder<KT, VT> builder) {
+        this.weigher = builder.weigher;
+        this.expiry = builder.expiry;
+        this.removalListener = builder.removalListener;
+        this.clock = builder.clock;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.executor = builder.executor;
+        this.stats = builder.recordStats ? new StatsCounter.Concurrent(clock) : StatsCounter.DISABLED;
+        long maximum = builder.maximumWeight >= 0 ? builder.maximumWeight : builder.maximumSize;
+        if (maximum >= 0 || builder.expireAfterWriteNanos >= 0 || builder.expireAfterAccessNanos >= 0 || expiry != null) {
+            this.policy = new CachePolicy<>(maximum, builder.maximumWeight >= 0,
+                builder.expireAfterWriteNanos, builder.expireAfterAccessNanos, expiry != null,
+                clock, builder.timer, this::evict);
+        } else {
+            this.policy = null;
+        }
+        this.timed = (policy != null && policy.expires()) || refreshAfterWriteNanos >= 0;
+    }
+
+    /**
+     * @return 用于创建有界或会过期的缓存的 Builder
+     */
+    public static <KT, VT> Builder<KT, VT> builder() {
+        return new Builder<>();
+    }
 
+    @Override
     public void put(KT key, VT value) {
-        memCache.put(key, value);
+        write(key, value, timed ? clock.nanoTime() : 0, false, null);
     }
 
+    @Override
     public VT get(KT key) {
-        return memCache.get(key);
+        CacheNode<KT, VT> node = lookup(key, true);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * 读取多个键，不会触发加载。整批只读一次时钟，访问记录批量交给淘汰策略。
+     *
+     * @param keys 要读取的键
+     * @return 按 keys 的顺序排列的命中的项
+     */
+    public Map<KT, VT> getAll(Iterable<? extends KT> keys) {
+        boolean expires = policy != null && policy.expires();
+        long now = expires ? clock.nanoTime() : 0;
+        Map<KT, VT> result = new LinkedHashMap<>();
+        List<CacheNode<KT, VT>> hits = policy == null ? null : new ArrayList<CacheNode<KT, VT>>();
+        int misses = 0;
+        for (KT key : keys) {
+            if (result.containsKey(key)) {
+                continue;
+            }
+            CacheNode<KT, VT> node = memCache.get(key);
+            if (node != null && expires) {
+                if (policy.hasExpired(node, now)) {
+                    expire(node, now);
+                    node = null;
+                } else {
+                    afterRead(node, now);
+                }
+            }
+            if (node == null) {
+                misses++;
+                continue;
+            }
+            result.put(key, node.value);
+            if (hits != null) {
+                hits.add(node);
+            }
+        }
+        if (hits != null) {
+            policy.recordReads(hits);
+        }
+        stats.recordHits(result.size());
+        stats.recordMisses(misses);
+        return result;
+    }
+
+    /**
+     * 写入多个项。整批只读一次时钟，所有写入合并成一个任务交给淘汰策略，最后只尝试一次维护。
+     *
+     * @param entries 要写入的项，值不能为 null
+     */
+    public void putAll(Map<? extends KT, ? extends VT> entries) {
+        long now = timed ? clock.nanoTime() : 0;
+        Batch<KT, VT> batch = policy == null ? null : new Batch<KT, VT>();
+        for (Map.Entry<? extends KT, ? extends VT> entry : entries.entrySet()) {
+            write(entry.getKey(), entry.getValue(), now, false, batch);
+        }
+        finish(batch);
+    }
+
+    /**
+     * 移除多个键，移除记录合并成一个任务交给淘汰策略
+     *
+     * @param keys 要移除的键
+     */
+    public void removeAll(Iterable<? extends KT> keys) {
+        Batch<KT, VT> batch = policy == null ? null : new Batch<KT, VT>();
+        for (KT key : keys) {
+            CacheNode<KT, VT> node = memCache.remove(key);
+            if (node != null) {
+                retire(node, batch);
+            }
+        }
+        finish(batch);
+    }
+
+    /**
+     * 原子地计算键的新值。计算期间持有该项的锁，同一个键上的其他写入会等待，所以 function 应当很快，并且不能修改本缓存。
+     * 过期的项视为不存在；function 返回 null 时移除该项，返回原来的对象时不做任何修改。
+     *
+     * @param key 键
+     * @param function 参数为键和当前的值（不存在时为 null），返回新的值
+     * @return 新的值，被移除或不存在时为 null
+     */
+    public VT compute(KT key, BiFunction<? super KT, ? super VT, ? extends VT> function) {
+        long now = timed ? clock.nanoTime() : 0;
+        for (;;) {
+            CacheNode<KT, VT> prior = memCache.get(key);
+            if (prior == null) {
+                Object[] computed = new Object[1];
+                prior = memCache.computeIfAbsent(key, k -> {
+                    VT value = function.apply(k, null);
+                    if (value == null) {
+                        return null;
+                    }
+                    computed[0] = value;
+                    return newNode(k, value, weigh(k, value), now);
+                });
+                if (prior == null) {
+                    return null;
+                }
+                if (computed[0] != null) {
+                    if (policy != null) {
+                        policy.recordAdd(prior);
+                    }
+                    return prior.value;
+                }
+            }
+            VT oldValue;
+            VT newValue;
+            int oldWeight;
+            boolean expired;
+            boolean removed = false;
+            synchronized (prior) {
+                if (!prior.isAlive() || memCache.get(key) != prior) {
+                    // 已经被删除，或者 remove 已经把它移出 map 但还没来得及标记
+                    continue;
+                }
+                oldValue = prior.value;
+                oldWeight = prior.weight;
+                expired = policy != null && policy.expires() && policy.hasExpired(prior, now);
+                newValue = function.apply(key, expired ? null : oldValue);
+                if (newValue == null) {
+                    if (!memCache.remove(key, prior)) {
+                        continue;
+                    }
+                    prior.retire();
+                    removed = true;
+                } else if (newValue != oldValue || expired) {
+                    update(prior, newValue, weigh(key, newValue), now, expired);
+                } else {
+                    return newValue;
+                }
+            }
+            if (removed) {
+                if (policy != null) {
+                    policy.recordRemove(prior);
+                }
+                RemovalCause cause = expired ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT;
+                stats.recordRemoval(cause, oldWeight);
+                notifyRemoval(key, oldValue, cause);
+                return null;
+            }
+            afterUpdate(prior, oldValue, oldWeight, newValue, expired, null);
+            return newValue;
+        }
+    }
+
+    /**
+     * 键不存在时写入 value，否则用 function 合并当前值和 value，原子地完成
+     *
+     * @param key 键
+     * @param value 要合并的值
+     * @param function 参数为当前的值和 value，返回 null 时移除该项
+     * @return 新的值，被移除时为 null
+     * @see #compute(Object, BiFunction)
+     */
+    public VT merge(KT key, VT value, BiFunction<? super VT, ? super VT, ? extends VT> function) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        return compute(key, (k, current) -> current == null ? value : function.apply(current, value));
+    }
+
+    /**
+     * 返回缓存的 {@link ConcurrentMap} 视图，读写直接作用于缓存，可以交给需要 Map 的代码使用。
+     * 视图上的操作与缓存的对应方法相同：会记录统计、参与淘汰并触发 removalListener，过期的项不可见。
+     *
+     * @return Map 视图
+     */
+    public ConcurrentMap<KT, VT> asMap() {
+        MapView view = mapView;
+        if (view == null) {
+            view = new MapView();
+            mapView = view;
+        }
+        return view;
+    }
+
+    /**
+     * 读取键对应的值，未命中时调用 loader 加载并缓存。
+     * 同一个键同时只有一个线程执行加载，其他线程等待它的结果；加载在调用线程上进行。
+     * 设置了 refreshAfterWrite 时，读到的值超过刷新时间后仍然返回旧值，同时在后台调用 {@link CacheLoader#reload}。
+     *
+     * @param key 键
+     * @param loader 加载函数
+     * @return 缓存的或新加载的值，loader 返回 null 时为 null
+     * @throws CacheLoadException loader 抛出异常时，失败不会被缓存
+     */
+    public VT get(KT key, CacheLoader<? super KT, VT> loader) throws CacheLoadException {
+        CacheNode<KT, VT> node = lookup(key, true);
+        if (node != null) {
+            VT value = node.value;
+            refreshIfNeeded(node, value, loader);
+            return value;
+        }
+        return await(key, load(key, loader, DIRECT));
+    }
+
+    /**
+     * 读取多个键，所有未命中的键合并成一次 {@link BulkLoader#loadAll} 调用。
+     * 已经在被其他线程加载的键不会重复加载，而是等待那次加载的结果。
+     *
+     * @param keys 要读取的键
+     * @param loader 批量加载函数，在调用线程上执行
+     * @return 按 keys 的顺序排列的结果，不存在的键不包含在内
+     * @throws CacheLoadException loader 抛出异常时
+     */
+    public Map<KT, VT> getAll(Iterable<? extends KT> keys, BulkLoader<KT, VT> loader) throws CacheLoadException {
+        return await(keys, loadAll(keys, loader, DIRECT));
     }
 
+    @Override
     public boolean containsKey(KT key) {
-        return memCache.containsKey(key);
+        CacheNode<KT, VT> node = memCache.get(key);
+        if (node == null) {
+            return false;
+        }
+        return policy == null || !policy.expires() || !policy.hasExpired(node, clock.nanoTime());
     }
 
+    @Override
     public void remove(KT key) {
-        memCache.remove(key);
+        CacheNode<KT, VT> node = memCache.remove(key);
+        if (node != null) {
+            retire(node, null);
+        }
     }
 
+    @Override
     public void clear() {
-        memCache.clear();
+        for (KT key : memCache.keySet()) {
+            remove(key);
+        }
     }
 
+    @Override
     public int size() {
         return memCache.size();
     }
 
+    @Override
     public boolean isEmpty()
     {
         return memCache.isEmpty();
     }
+
+    /**
+     * @return 当前的总权重；没有设置 weigher 时等于项数
+     */
+    public long weightedSize() {
+        return policy == null ? memCache.size() : policy.weightedSize();
+    }
+
+    /**
+     * 同步地执行挂起的维护工作（重放访问记录、清理过期的项、淘汰超出上限的项）。
+     * 平时不需要调用，主要用于测试或需要立即回收内存的场景。
+     */
+    public void cleanUp() {
+        if (policy != null) {
+            policy.cleanUp();
+        }
+    }
+
+    /**
+     * 统计从缓存创建开始累计，读取不会清零；需要某段时间的数据时用 {@link CacheStats#minus(CacheStats)} 相减。
+     *
+     * @return 当前统计数据的快照，没有开启 {@link Builder#recordStats()} 时所有计数为零
+     */
+    public CacheStats stats() {
+        return stats.snapshot(weightedSize());
+    }
+
+    /**
+     * 把所有没有过期的项写入快照文件，之后可以用 {@link #loadSnapshot} 恢复。
+     * 边遍历边写入，不会复制整个缓存；写入期间的并发修改可能包含也可能不包含在快照中。
+     * 先写到同一目录下的临时文件，完成后再替换 file，中途失败不会破坏已有的快照。
+     *
+     * @param file 快照文件
+     * @param keyCodec 键的编解码
+     * @param valueCodec 值的编解码
+     * @return 写入的项数
+     * @throws IOException 写入或编码失败
+     */
+    public long saveSnapshot(Path file, CacheCodec<KT> keyCodec, CacheCodec<VT> valueCodec) throws IOException {
+        return CacheSnapshot.write(this, file, keyCodec, valueCodec);
+    }
+
+    /**
+     * 通过内存映射读取快照并写入缓存。
+     * 剩余的存活时间会扣除保存之后经过的墙上时间，已经过期的项被跳过；缓存中已经存在的键不会被覆盖。
+     * 恢复的项不计入统计，也不触发加载；有上限时按快照中的访问频率参与淘汰，热点项优先保留。
+     *
+     * @param file 快照文件
+     * @param keyCodec 键的编解码
+     * @param valueCodec 值的编解码
+     * @return 恢复的项数
+     * @throws IOException 读取失败、文件不是快照或已损坏、解码失败；出错之前读到的项已经写入缓存
+     */
+    public long loadSnapshot(Path file, CacheCodec<KT> keyCodec, CacheCodec<VT> valueCodec) throws IOException {
+        return CacheSnapshot.read(this, file, keyCodec, valueCodec);
+    }
+
+    /**
+     * @see #get(Object, CacheLoader)
+     */
+    CompletableFuture<VT> getAsync(KT key, CacheLoader<? super KT, VT> loader, Executor executor) {
+        CacheNode<KT, VT> node = lookup(key, true);
+        if (node != null) {
+            VT value = node.value;
+            refreshIfNeeded(node, value, loader);
+            return CompletableFuture.completedFuture(value);
+        }
+        return load(key, loader, executor).copy();
+    }
+
+    /**
+     * @see #getAll(Iterable, BulkLoader)
+     */
+    CompletableFuture<Map<KT, VT>> getAllAsync(Iterable<? extends KT> keys, BulkLoader<KT, VT> loader, Executor executor) {
+        return loadAll(keys, loader, executor);
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    IClock clock() {
+        return clock;
+    }
+
+    Collection<CacheNode<KT, VT>> nodes() {
+        return memCache.values();
+    }
+
+    /**
+     * @return 节点剩余的存活时间（纳秒），不会过期时为 -1，已经过期时为 0
+     */
+    long remainingNanos(CacheNode<KT, VT> node, long now) {
+        return policy == null || !policy.expires() ? -1 : policy.remainingNanos(node, now);
+    }
+
+    /**
+     * @see CachePolicy#frequencies(List, int[])
+     */
+    void frequencies(List<CacheNode<KT, VT>> nodes, int[] out) {
+        if (policy == null) {
+            Arrays.fill(out, 0, nodes.size(), 0);
+        } else {
+            policy.frequencies(nodes, out);
+        }
+    }
+
+    /**
+     * 写入快照中的一项，键已经存在时不覆盖
+     *
+     * @param remainingNanos 剩余的存活时间，-1 表示按本缓存的配置计算
+     * @param frequency 访问频率
+     * @return 是否写入
+     */
+    boolean restore(KT key, VT value, long remainingNanos, int frequency) {
+        int weight = weigh(key, value);
+        long now = timed ? clock.nanoTime() : 0;
+        CacheNode<KT, VT> node = newNode(key, value, weight, now);
+        if (remainingNanos >= 0 && policy != null && policy.expires()) {
+            policy.backdate(node, now, remainingNanos);
+        }
+        if (memCache.putIfAbsent(key, node) != null) {
+            return false;
+        }
+        if (policy != null) {
+            policy.recordAdd(node);
+            policy.recordFrequency(node, frequency);
+        }
+        return true;
+    }
+
+    /**
+     * 读取一个没有过期的节点并记录访问
+     *
+     * @param recordStats 是否计入命中和未命中，加载任务内部的重复检查不计入
+     */
+    private CacheNode<KT, VT> lookup(KT key, boolean recordStats) {
+        CacheNode<KT, VT> node = memCache.get(key);
+        if (node != null && policy != null) {
+            if (policy.expires()) {
+                long now = clock.nanoTime();
+                if (policy.hasExpired(node, now)) {
+                    expire(node, now);
+                    node = null;
+                } else {
+                    afterRead(node, now);
+                }
+            }
+            if (node != null) {
+                policy.recordRead(node);
+            }
+        }
+        if (recordStats) {
+            if (node == null) {
+                stats.recordMisses(1);
+            } else {
+                stats.recordHits(1);
+            }
+        }
+        return node;
+    }
+
+    private VT getQuietly(KT key) {
+        CacheNode<KT, VT> node = lookup(key, false);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * 认领键的加载；已经有别的线程在加载时返回它的 future
+     */
+    private CompletableFuture<VT> load(KT key, CacheLoader<? super KT, VT> loader, Executor executor) {
+        CompletableFuture<VT> future = new CompletableFuture<>();
+        CompletableFuture<VT> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        execute(executor, () -> {
+            try {
+                // 认领之前可能刚好有一次加载完成
+                VT value = getQuietly(key);
+                if (value == null) {
+                    value = timedLoad(loader, key);
+                    if (value != null) {
+                        value = insertLoaded(key, value);
+                    }
+                }
+                future.complete(value);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                loading.remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 写入加载的值；加载期间别的线程已经写入时保留它的值，不覆盖
+     *
+     * @return 留在缓存里的值
+     */
+    private VT insertLoaded(KT key, VT value) {
+        VT present = write(key, value, timed ? clock.nanoTime() : 0, true, null);
+        return present != null ? present : value;
+    }
+
+    private CompletableFuture<Map<KT, VT>> loadAll(Iterable<? extends KT> keys, BulkLoader<KT, VT> loader, Executor executor) {
+        Map<KT, CompletableFuture<VT>> futures = new LinkedHashMap<>();
+        Map<KT, CompletableFuture<VT>> claimed = new LinkedHashMap<>();
+        for (KT key : keys) {
+            if (futures.containsKey(key)) {
+                continue;
+            }
+            VT value = get(key);
+            if (value != null) {
+                futures.put(key, CompletableFuture.completedFuture(value));
+                continue;
+            }
+            CompletableFuture<VT> future = new CompletableFuture<>();
+            CompletableFuture<VT> inFlight = loading.putIfAbsent(key, future);
+            if (inFlight == null) {
+                claimed.put(key, future);
+                futures.put(key, future);
+            } else {
+                futures.put(key, inFlight);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            execute(executor, () -> {
+                try {
+                    Set<KT> misses = new LinkedHashSet<>();
+                    for (Map.Entry<KT, CompletableFuture<VT>> entry : claimed.entrySet()) {
+                        VT value = getQuietly(entry.getKey());
+                        if (value != null) {
+                            entry.getValue().complete(value);
+                        } else {
+                            misses.add(entry.getKey());
+                        }
+                    }
+                    Map<KT, VT> loaded = misses.isEmpty()
+                        ? Collections.<KT, VT>emptyMap()
+                        : timedLoadAll(loader, Collections.unmodifiableSet(misses));
+                    if (loaded == null) {
+                        loaded = Collections.emptyMap();
+                    }
+                    for (Map.Entry<KT, VT> entry : loaded.entrySet()) {
+                        KT key = entry.getKey();
+                        if (key == null || entry.getValue() == null) {
+                            continue;
+                        }
+                        VT value = insertLoaded(key, entry.getValue());
+                        CompletableFuture<VT> future = claimed.get(key);
+                        if (future != null) {
+                            future.complete(value);
+                        }
+                    }
+                    for (KT key : misses) {
+                        claimed.get(key).complete(null);
+                    }
+                } catch (Throwable e) {
+                    for (CompletableFuture<VT> future : claimed.values()) {
+                        future.completeExceptionally(e);
+                    }
+                } finally {
+                    for (Map.Entry<KT, CompletableFuture<VT>> entry : claimed.entrySet()) {
+                        loading.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+            });
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<KT, VT> result = new LinkedHashMap<>();
+            for (Map.Entry<KT, CompletableFuture<VT>> entry : futures.entrySet()) {
+                VT value = entry.getValue().join();
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 值超过刷新时间时在后台重新加载，同一个键同时只有一次刷新
+     */
+    private void refreshIfNeeded(CacheNode<KT, VT> node, VT oldValue, CacheLoader<? super KT, VT> loader) {
+        if (refreshAfterWriteNanos < 0) {
+            return;
+        }
+        long writeTime = node.writeTime;
+        if (clock.nanoTime() - writeTime < refreshAfterWriteNanos) {
+            return;
+        }
+        KT key = node.key;
+        CompletableFuture<VT> future = new CompletableFuture<>();
+        if (refreshing.putIfAbsent(key, future) != null) {
+            return;
+        }
+        execute(executor, () -> {
+            try {
+                VT value = timedReload(loader, key, oldValue);
+                replaceIfUnchanged(node, oldValue, writeTime, value);
+                future.complete(value);
+            } catch (Throwable e) {
+                // 保留旧值，下次读取时再重试
+                future.completeExceptionally(e);
+            } finally {
+                refreshing.remove(key, future);
+            }
+        });
+    }
+
+    /**
+     * 刷新期间值没有被覆盖时才写入刷新的结果，value 为 null 时移除
+     */
+    private void replaceIfUnchanged(CacheNode<KT, VT> node, VT oldValue, long writeTime, VT value) {
+        int weight = value == null ? 0 : weigh(node.key, value);
+        long now = clock.nanoTime();
+        int oldWeight;
+        synchronized (node) {
+            if (!node.isAlive() || node.value != oldValue || node.writeTime != writeTime) {
+                return;
+            }
+            oldWeight = node.weight;
+            if (value != null) {
+                update(node, value, weight, now, false);
+            }
+        }
+        if (value != null) {
+            afterUpdate(node, oldValue, oldWeight, value, false, null);
+        } else if (memCache.remove(node.key, node)) {
+            retire(node, null);
+        }
+    }
+
+    /*
+     * 以下三个方法调用 loader 并记录耗时，结果为 null 或抛出异常都算加载失败；没有开启统计时不读时钟
+     */
+
+    private VT timedLoad(CacheLoader<? super KT, VT> loader, KT key) throws Exception {
+        if (stats == StatsCounter.DISABLED) {
+            return loader.load(key);
+        }
+        long start = clock.nanoTime();
+        VT value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable e) {
+            stats.recordLoadFailure(clock.nanoTime() - start);
+            throw e;
+        }
+        recordLoad(start, value != null);
+        return value;
+    }
+
+    private VT timedReload(CacheLoader<? super KT, VT> loader, KT key, VT oldValue) throws Exception {
+        if (stats == StatsCounter.DISABLED) {
+            return loader.reload(key, oldValue);
+        }
+        long start = clock.nanoTime();
+        VT value;
+        try {
+            value = loader.reload(key, oldValue);
+        } catch (Throwable e) {
+            stats.recordLoadFailure(clock.nanoTime() - start);
+            throw e;
+        }
+        recordLoad(start, value != null);
+        return value;
+    }
+
+    private Map<KT, VT> timedLoadAll(BulkLoader<KT, VT> loader, Set<KT> keys) throws Exception {
+        if (stats == StatsCounter.DISABLED) {
+            return loader.loadAll(keys);
+        }
+        long start = clock.nanoTime();
+        Map<KT, VT> loaded;
+        try {
+            loaded = loader.loadAll(keys);
+        } catch (Throwable e) {
+            stats.recordLoadFailure(clock.nanoTime() - start);
+            throw e;
+        }
+        recordLoad(start, loaded != null);
+        return loaded;
+    }
+
+    private void recordLoad(long start, boolean success) {
+        long elapsed = clock.nanoTime() - start;
+        if (success) {
+            stats.recordLoadSuccess(elapsed);
+        } else {
+            stats.recordLoadFailure(elapsed);
+        }
+    }
+
+    private static void execute(Executor executor, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private static <T> T await(Object key, CompletableFuture<T> future) throws CacheLoadException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheLoadException("interrupted while loading " + key, e);
+        } catch (ExecutionException e) {
+            throw new CacheLoadException("failed to load " + key, e.getCause());
+        }
+    }
+
+    /**
+     * 写入一项
+     *
+     * @param onlyIfAbsent 已经存在没有过期的项时不覆盖
+     * @param batch 批量操作时把淘汰策略的记录暂存在这里，否则直接交给淘汰策略
+     * @return 之前的值，不存在或已过期时为 null
+     */
+    private VT write(KT key, VT value, long now, boolean onlyIfAbsent, Batch<KT, VT> batch) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int weight = weigh(key, value);
+        CacheNode<KT, VT> node = null;
+        for (;;) {
+            CacheNode<KT, VT> prior = memCache.get(key);
+            if (prior == null) {
+                if (node == null) {
+                    node = newNode(key, value, weight, now);
+                }
+                prior = memCache.putIfAbsent(key, node);
+                if (prior == null) {
+                    if (batch != null) {
+                        batch.added.add(node);
+                    } else if (policy != null) {
+                        policy.recordAdd(node);
+                    }
+                    return null;
+                }
+            }
+            VT oldValue;
+            int oldWeight;
+            boolean expired;
+            synchronized (prior) {
+                if (!prior.isAlive()) {
+                    // 已经被删除或淘汰，map 中的映射已经不在了，重试
+                    continue;
+                }
+                oldValue = prior.value;
+                oldWeight = prior.weight;
+                expired = policy != null && policy.expires() && policy.hasExpired(prior, now);
+                if (onlyIfAbsent && !expired) {
+                    return oldValue;
+                }
+                update(prior, value, weight, now, expired);
+            }
+            afterUpdate(prior, oldValue, oldWeight, value, expired, batch);
+            return expired ? null : oldValue;
+        }
+    }
+
+    private CacheNode<KT, VT> newNode(KT key, VT value, int weight, long now) {
+        CacheNode<KT, VT> node = new CacheNode<>(key, value, weight);
+        node.writeTime = now;
+        node.accessTime = now;
+        if (expiry != null) {
+            node.deadline = deadline(now, expiry.expireAfterCreate(key, value));
+        }
+        return node;
+    }
+
+    private void finish(Batch<KT, VT> batch) {
+        if (batch != null) {
+            policy.recordBatch(batch.added, batch.updated, batch.removed);
+        }
+    }
+
+    /**
+     * 覆盖节点的值，调用方必须持有节点锁
+     */
+    private void update(CacheNode<KT, VT> node, VT value, int weight, long now, boolean expired) {
+        node.value = value;
+        node.weight = weight;
+        node.writeTime = now;
+        node.accessTime = now;
+        if (expiry != null) {
+            node.deadline = deadline(now, expired
+                ? expiry.expireAfterCreate(node.key, value)
+                : expiry.expireAfterUpdate(node.key, value));
+        }
+    }
+
+    private void afterUpdate(CacheNode<KT, VT> node, VT oldValue, int oldWeight, VT newValue, boolean expired,
+                             Batch<KT, VT> batch) {
+        if (batch != null) {
+            batch.updated.add(node);
+        } else if (policy != null) {
+            policy.recordUpdate(node);
+        }
+        if (oldValue != newValue) {
+            RemovalCause cause = expired ? RemovalCause.EXPIRED : RemovalCause.REPLACED;
+            stats.recordRemoval(cause, oldWeight);
+            notifyRemoval(node.key, oldValue, cause);
+        }
+    }
+
+    private int weigh(KT key, VT value) {
+        if (weigher == null) {
+            return 1;
+        }
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weigher returned a negative weight: " + weight);
+        }
+        return weight;
+    }
+
+    private void afterRead(CacheNode<KT, VT> node, long now) {
+        if (policy.expiresAfterAccess()) {
+            node.accessTime = now;
+        }
+        if (expiry != null) {
+            TimeDelta ttl = expiry.expireAfterRead(node.key, node.value);
+            if (ttl != null) {
+                node.deadline = deadline(now, ttl);
+            }
+        }
+    }
+
+    private static long deadline(long now, TimeDelta ttl) {
+        long nanos = TimeSpan.from(ttl).toNanos();
+        return now + Math.max(0, Math.min(nanos, CachePolicy.MAX_DURATION));
+    }
+
+    /**
+     * @param batch 批量操作时把移除记录暂存在这里，否则直接交给淘汰策略
+     */
+    private void retire(CacheNode<KT, VT> node, Batch<KT, VT> batch) {
+        VT value;
+        int weight;
+        boolean expired;
+        synchronized (node) {
+            node.retire();
+            value = node.value;
+            weight = node.weight;
+            expired = policy != null && policy.expires() && policy.hasExpired(node, clock.nanoTime());
+        }
+        if (batch != null) {
+            batch.removed.add(node);
+        } else if (policy != null) {
+            policy.recordRemove(node);
+        }
+        RemovalCause cause = expired ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT;
+        stats.recordRemoval(cause, weight);
+        notifyRemoval(node.key, value, cause);
+    }
+
+    /**
+     * 读到过期的项时在调用线程上移除它
+     */
+    private void expire(CacheNode<KT, VT> node, long now) {
+        VT value;
+        synchronized (node) {
+            if (!node.isAlive() || !policy.hasExpired(node, now) || !memCache.remove(node.key, node)) {
+                return;
+            }
+            value = node.value;
+            node.retire();
+        }
+        policy.recordRemove(node);
+        stats.recordRemoval(RemovalCause.EXPIRED, node.weight);
+        notifyRemoval(node.key, value, RemovalCause.EXPIRED);
+    }
+
+    /**
+     * 由淘汰策略在持锁时调用，通知推迟到释放锁之后
+     */
+    private boolean evict(CacheNode<KT, VT> node, RemovalCause cause, long now) {
+        VT value;
+        synchronized (node) {
+            if (!node.isAlive()) {
+                return false;
+            }
+            if (cause == RemovalCause.EXPIRED && !policy.hasExpired(node, now)) {
+                return false;
+            }
+            if (!memCache.remove(node.key, node)) {
+                return false;
+            }
+            value = node.value;
+            node.retire();
+        }
+        stats.recordRemoval(cause, node.weight);
+        if (removalListener != null) {
+            policy.notifyLater(() -> notifyRemoval(node.key, value, cause));
+        }
+        return true;
+    }
+
+    private void notifyRemoval(KT key, VT value, RemovalCause cause) {
+        if (removalListener == null) {
+            return;
+        }
+        try {
+            removalListener.onRemoval(key, value, cause);
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * 批量操作期间暂存的淘汰策略记录
+     */
+    private static final class Batch<KT, VT> {
+        final List<CacheNode<KT, VT>> added = new ArrayList<>();
+        final List<CacheNode<KT, VT>> updated = new ArrayList<>();
+        final List<CacheNode<KT, VT>> removed = new ArrayList<>();
+    }
+
+    /**
+     * {@link #asMap()} 返回的视图
+     */
+    private final class MapView extends AbstractMap<KT, VT> implements ConcurrentMap<KT, VT> {
+        private Set<Map.Entry<KT, VT>> entrySet;
+
+        @Override
+        public int size() {
+            return MemoryCache.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return MemoryCache.this.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean containsKey(Object key) {
+            return key != null && MemoryCache.this.containsKey((KT) key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public VT get(Object key) {
+            return key == null ? null : MemoryCache.this.get((KT) key);
+        }
+
+        @Override
+        public VT put(KT key, VT value) {
+            return write(key, value, timed ? clock.nanoTime() : 0, false, null);
+        }
+
+        @Override
+        public VT putIfAbsent(KT key, VT value) {
+            return write(key, value, timed ? clock.nanoTime() : 0, true, null);
+        }
+
+        @Override
+        public void putAll(Map<? extends KT, ? extends VT> m) {
+            MemoryCache.this.putAll(m);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public VT remove(Object key) {
+            if (key == null) {
+                return null;
+            }
+            Object[] removed = new Object[1];
+            MemoryCache.this.compute((KT) key, (k, current) -> {
+                removed[0] = current;
+                return null;
+            });
+            return (VT) removed[0];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object key, Object value) {
+            if (key == null || value == null) {
+                return false;
+            }
+            boolean[] removed = new boolean[1];
+            MemoryCache.this.compute((KT) key, (k, current) -> {
+                removed[0] = value.equals(current);
+                return removed[0] ? null : current;
+            });
+            return removed[0];
+        }
+
+        @Override
+        public VT replace(KT key, VT value) {
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            Object[] replaced = new Object[1];
+            MemoryCache.this.compute(key, (k, current) -> {
+                replaced[0] = current;
+                return current == null ? null : value;
+            });
+            @SuppressWarnings("unchecked")
+            VT old = (VT) replaced[0];
+            return old;
+        }
+
+        @Override
+        public boolean replace(KT key, VT oldValue, VT newValue) {
+            if (oldValue == null || newValue == null) {
+                throw new NullPointerException("value");
+            }
+            boolean[] replaced = new boolean[1];
+            MemoryCache.this.compute(key, (k, current) -> {
+                replaced[0] = oldValue.equals(current);
+                return replaced[0] ? newValue : current;
+            });
+            return replaced[0];
+        }
+
+        @Override
+        public VT compute(KT key, BiFunction<? super KT, ? super VT, ? extends VT> function) {
+            return MemoryCache.this.compute(key, function);
+        }
+
+        @Override
+        public VT merge(KT key, VT value, BiFunction<? super VT, ? super VT, ? extends VT> function) {
+            return MemoryCache.this.merge(key, value, function);
+        }
+
+        @Override
+        public void clear() {
+            MemoryCache.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<KT, VT>> entrySet() {
+            Set<Map.Entry<KT, VT>> set = entrySet;
+            if (set == null) {
+                set = new AbstractSet<Map.Entry<KT, VT>>() {
+                    @Override
+                    public Iterator<Map.Entry<KT, VT>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return MemoryCache.this.size();
+                    }
+
+                    @Override
+                    public void clear() {
+                        MemoryCache.this.clear();
+                    }
+                };
+                entrySet = set;
+            }
+            return set;
+        }
+    }
+
+    /**
+     * 遍历没有过期的项，弱一致，不记录访问
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<KT, VT>> {
+        private final Iterator<CacheNode<KT, VT>> nodes = memCache.values().iterator();
+        private final long now = policy != null && policy.expires() ? clock.nanoTime() : 0;
+        private Map.Entry<KT, VT> next;
+        private Map.Entry<KT, VT> last;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && nodes.hasNext()) {
+                CacheNode<KT, VT> node = nodes.next();
+                VT value = node.value;
+                if (node.isAlive() && (policy == null || !policy.expires() || !policy.hasExpired(node, now))) {
+                    next = new MapEntry(node.key, value);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<KT, VT> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            asMap().remove(last.getKey(), last.getValue());
+            last = null;
+        }
+    }
+
+    /**
+     * setValue 写回缓存
+     */
+    private final class MapEntry extends AbstractMap.SimpleEntry<KT, VT> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(KT key, VT value) {
+            super(key, value);
+        }
+
+        @Override
+        public VT setValue(VT value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * 有界或会过期的缓存的配置，maximumSize 和 maximumWeight 只能设置一个，
+     * expireAfter 不能与 expireAfterWrite / expireAfterAccess 同时设置
+     * @param <KT> 键的类型
+     * @param <VT> 值的类型
+     */
+    public static final class Builder<KT, VT> {
+        private long maximumSize = -1;
+        private long maximumWeight = -1;
+        private Weigher<? super KT, ? super VT> weigher;
+        private long expireAfterWriteNanos = -1;
+        private long expireAfterAccessNanos = -1;
+        private Expiry<? super KT, ? super VT> expiry;
+        private RemovalListener<? super KT, ? super VT> removalListener;
+        private IClock clock = SystemClock.INSTANCE;
+        private TimingWheel timer = TimingWheel.shared();
+        private long refreshAfterWriteNanos = -1;
+        private Executor executor = ForkJoinPool.commonPool();
+        private boolean recordStats;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumSize 最多保存的项数
+         */
+        public Builder<KT, VT> maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+            }
+            if (this.maximumWeight >= 0) {
+                throw new IllegalStateException("maximumWeight was already set");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param maximumWeight 所有项的权重之和的上限，需要同时设置 {@link #weigher(Weigher)}
+         */
+        public Builder<KT, VT> maximumWeight(long maximumWeight) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("maximumWeight must not be negative: " + maximumWeight);
+            }
+            if (this.maximumSize >= 0) {
+                throw new IllegalStateException("maximumSize was already set");
+            }
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * @param weigher 计算每一项的权重，在写入时调用
+         */
+        public Builder<KT, VT> weigher(Weigher<? super KT, ? super VT> weigher) {
+            if (weigher == null) {
+                throw new NullPointerException("weigher");
+            }
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * @param duration 写入（或覆盖）之后的存活时间
+         */
+        public Builder<KT, VT> expireAfterWrite(TimeDelta duration) {
+            this.expireAfterWriteNanos = durationNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param duration 最后一次读写之后的存活时间
+         */
+        public Builder<KT, VT> expireAfterAccess(TimeDelta duration) {
+            this.expireAfterAccessNanos = durationNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param expiry 为每一项单独计算存活时间
+         */
+        public Builder<KT, VT> expireAfter(Expiry<? super KT, ? super VT> expiry) {
+            if (expiry == null) {
+                throw new NullPointerException("expiry");
+            }
+            this.expiry = expiry;
+            return this;
+        }
+
+        /**
+         * 写入超过 duration 之后，{@link MemoryCache#get(Object, CacheLoader)} 仍然返回旧值，同时在后台重新加载。
+         * 通常与一个更长的 expireAfterWrite 一起使用，让热点键在过期之前就被刷新。
+         *
+         * @param duration 写入之后多久开始刷新
+         */
+        public Builder<KT, VT> refreshAfterWrite(TimeDelta duration) {
+            this.refreshAfterWriteNanos = durationNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param executor 执行后台刷新和异步加载的线程池，默认为 {@link ForkJoinPool#commonPool()}
+         */
+        public Builder<KT, VT> executor(Executor executor) {
+            if (executor == null) {
+                throw new NullPointerException("executor");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param removalListener 项被移除时的回调
+         */
+        public Builder<KT, VT> removalListener(RemovalListener<? super KT, ? super VT> removalListener) {
+            if (removalListener == null) {
+                throw new NullPointerException("removalListener");
+            }
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        /**
+         * @param clock 计算过期用的时钟，默认为 {@link SystemClock#INSTANCE}
+         */
+        public Builder<KT, VT> clock(IClock clock) {
+            if (clock == null) {
+                throw new NullPointerException("clock");
+            }
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @param timer 安排过期清理用的时间轮，默认为 {@link TimingWheel#shared()}
+         */
+        public Builder<KT, VT> timer(TimingWheel timer) {
+            if (timer == null) {
+                throw new NullPointerException("timer");
+            }
+            this.timer = timer;
+            return this;
+        }
+
+        /**
+         * 开启统计，见 {@link MemoryCache#stats()}。
+         * 计数器基于 {@link java.util.concurrent.atomic.LongAdder}，只有开启时才会在读写和加载路径上计数和读取时钟。
+         */
+        public Builder<KT, VT> recordStats() {
+            this.recordStats = true;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException 配置互相冲突
+         */
+        public MemoryCache<KT, VT> build() {
+            if ((maximumWeight >= 0) != (weigher != null)) {
+                throw new IllegalStateException(weigher == null
+                    ? "maximumWeight requires a weigher"
+                    : "weigher requires maximumWeight");
+            }
+            if (expiry != null && (expireAfterWriteNanos >= 0 || expireAfterAccessNanos >= 0)) {
+                throw new IllegalStateException("expireAfter cannot be combined with expireAfterWrite or expireAfterAccess");
+            }
+            return new MemoryCache<>(this);
+        }
+
+        /**
+         * @param loader 未命中和刷新时使用的加载函数，在 executor 上执行
+         * @return 异步加载的缓存
+         * @throws IllegalStateException 配置互相冲突
+         */
+        public AsyncLoadingCache<KT, VT> buildAsync(CacheLoader<? super KT, VT> loader) {
+            if (loader == null) {
+                throw new NullPointerException("loader");
+            }
+            return new AsyncLoadingCache<>(build(), loader);
+        }
+
+        private static long durationNanos(TimeDelta duration) {
+            long nanos = TimeSpan.from(duration).toNanos();
+            if (nanos < 0) {
+                throw new IllegalArgumentException("duration must not be negative: " + duration);
+            }
+            return Math.min(nanos, CachePolicy.MAX_DURATION);
+        }
+    }
 }
@@ -1,38 +1,835 @@
 package me.yuyuko.sdk.io.memory;
 
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import me.yuyuko.sdk.time.TimingWheel;
 
 /**
  * 内存映射文件
+ * <p>
+ * 文件按固定大小（2 的幂，默认 1 GiB）分成若干段，每段单独用 {@link FileChannel#map} 映射，
+ * 用 long 偏移量寻址，不受单个 MappedByteBuffer 2 GiB 的限制。
+ * 每段在第一次访问时才映射，只读打开时用 {@link FileChannel.MapMode#READ_ONLY} 映射。
+ * 跨越段边界的批量读写和 {@link #getLong(long)} 等定长读写会自动拆开；{@link #grow(long)} 扩大文件时只重新映射最后一个不完整的段。
+ * 定长读写使用 {@link Builder#order(ByteOrder)} 设置的字节序，默认为大端序。
+ * 需要直接操作缓冲区时，{@link #slice(long, int)} 返回段内一段区域的零拷贝视图。
+ * <p>
+ * 修改何时写回存储设备由 {@link Builder#flushPolicy(FlushPolicy)} 决定，默认交给操作系统；
+ * 记录修改区域时 {@link #flush()} 只对修改过的页调用 force。
+ * {@link #close()} 会立即解除所有映射：支持 Foreign Memory API 的 JDK 上通过 Arena 解除，之后的访问抛出
+ * {@link IllegalStateException}；其他 JDK 上通过 Cleaner 解除，调用方必须保证关闭之后没有线程再访问文件或者 slice。
+ * <p>
+ * 所有读写都使用绝对位置，不修改缓冲区的状态，可以由多个线程并发调用；
+ * 同一区域的并发写入之间没有同步，需要调用方自己协调。
+ * <pre>
+ * try (MemoryMappedFile file = MemoryMappedFile.builder(Paths.get("data.bin")).readOnly().build()) {
+ *     long id = file.getLong(50L &lt;&lt; 30);
+ * }
+ * </pre>
  * @author castorice (遐蝶)
 */
-public class MemoryMappedFile {
-    private final File file;
-    private final RandomAccessFile randomAccessFile;
+public class MemoryMappedFile implements Closeable {
+    private static final int MIN_SEGMENT_SHIFT = 12;
+    private static final int MAX_SEGMENT_SHIFT = 30;
+    private static final int PAGE_SHIFT = 12;
+
+    private final Path path;
     private final FileChannel fileChannel;
-    private final MappedByteBuffer buffer;
+    private final boolean readOnly;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final ByteOrder order;
+    private final SegmentMapper mapper;
+    private final FlushPolicy flushPolicy;
+    private final boolean tracking;
+    private final Executor executor;
+    // 每段一个位图，每一位对应一页，只在 tracking 时使用
+    private volatile AtomicReferenceArray<AtomicLongArray> dirtyPages;
+    private final AtomicLong dirtyBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private TimingWheel.Timeout flushTimeout;
+    private volatile AtomicReferenceArray<MappedByteBuffer> segments;
+    private volatile long size;
+    private volatile boolean closed;
 
+    /**
+     * 以读写方式映射文件的前 size 个字节，文件不够大时扩大到 size
+     *
+     * @param filePath 文件路径，不存在时创建
+     * @param size 映射的大小
+     */
     public MemoryMappedFile(String filePath, long size) throws IOException {
-        this.file = new File(filePath);
-        this.randomAccessFile = new RandomAccessFile(file, "rw");
-        this.fileChannel = randomAccessFile.getChannel();
-        this.buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this(builder(Paths.get(filePath)).size(size));
+    }
+
+    private MemoryMappedFile(Builder builder) throws IOException {
+        this.path = builder.path;
+        this.readOnly = builder.readOnly;
+        this.segmentShift = Integer.numberOfTrailingZeros(builder.segmentSize);
+        this.segmentMask = builder.segmentSize - 1;
+        this.order = builder.order;
+        this.flushPolicy = builder.flushPolicy;
+        this.tracking = !readOnly && flushPolicy.isTracking();
+        this.executor = builder.executor;
+        this.fileChannel = readOnly
+            ? FileChannel.open(path, StandardOpenOption.READ)
+            : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            long fileSize = fileChannel.size();
+            long mappedSize = builder.size < 0 ? fileSize : builder.size;
+            if (readOnly && mappedSize > fileSize) {
+                throw new IOException("cannot map " + mappedSize + " bytes of a " + fileSize + " byte file read-only: " + path);
+            }
+            if (mappedSize > fileSize) {
+                extend(mappedSize);
+            }
+            this.size = mappedSize;
+            this.segments = new AtomicReferenceArray<>(segmentCount(mappedSize));
+            this.dirtyPages = tracking ? new AtomicReferenceArray<>(segments.length()) : null;
+            this.mapper = SegmentMapper.create();
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 构造完成之后才启动定期写回，避免未初始化完的对象被时间轮线程看到
+     */
+    private static MemoryMappedFile open(Builder builder) throws IOException {
+        MemoryMappedFile file = new MemoryMappedFile(builder);
+        if (file.tracking && file.flushPolicy.intervalNanos() > 0) {
+            file.schedulePeriodicFlush();
+        }
+        return file;
+    }
+
+    /**
+     * @param path 文件路径
+     * @return 用于配置映射方式的 Builder
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
+    }
+
+    public void write(long index, byte value) {
+        checkIndex(index, 1);
+        segment(index >>> segmentShift).put((int) (index & segmentMask), value);
+        dirty(index, 1);
+    }
+
+    public byte read(long index) {
+        checkIndex(index, 1);
+        return segment(index >>> segmentShift).get((int) (index & segmentMask));
+    }
+
+    /**
+     * 从 offset 开始读取 dst.length 个字节，可以跨越段边界
+     *
+     * @param offset 文件中的起始位置
+     * @param dst 目标数组
+     */
+    public void read(long offset, byte[] dst) {
+        read(offset, dst, 0, dst.length);
+    }
+
+    /**
+     * @see #read(long, byte[])
+     */
+    public void read(long offset, byte[] dst, int dstOffset, int length) {
+        checkIndex(offset, length);
+        if (dstOffset < 0 || length < 0 || dstOffset > dst.length - length) {
+            throw new IndexOutOfBoundsException("dstOffset " + dstOffset + ", length " + length + ", array " + dst.length);
+        }
+        while (length > 0) {
+            ByteBuffer segment = segment(offset >>> segmentShift).duplicate();
+            int position = (int) (offset & segmentMask);
+            int chunk = Math.min(length, segment.capacity() - position);
+            segment.position(position);
+            segment.get(dst, dstOffset, chunk);
+            offset += chunk;
+            dstOffset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * 从 offset 开始写入 src 的全部字节，可以跨越段边界
+     *
+     * @param offset 文件中的起始位置
+     * @param src 要写入的字节
+     */
+    public void write(long offset, byte[] src) {
+        write(offset, src, 0, src.length);
+    }
+
+    /**
+     * @see #write(long, byte[])
+     */
+    public void write(long offset, byte[] src, int srcOffset, int length) {
+        checkIndex(offset, length);
+        if (srcOffset < 0 || length < 0 || srcOffset > src.length - length) {
+            throw new IndexOutOfBoundsException("srcOffset " + srcOffset + ", length " + length + ", array " + src.length);
+        }
+        long start = offset;
+        int total = length;
+        while (length > 0) {
+            ByteBuffer segment = segment(offset >>> segmentShift).duplicate();
+            int position = (int) (offset & segmentMask);
+            int chunk = Math.min(length, segment.capacity() - position);
+            segment.position(position);
+            segment.put(src, srcOffset, chunk);
+            offset += chunk;
+            srcOffset += chunk;
+            length -= chunk;
+        }
+        // 写完再记录，否则并发的 flush 可能在数据写入之前清除记录
+        dirty(start, total);
+    }
+
+    /**
+     * 从 offset 开始读取 dst.remaining() 个字节，读完后 dst 的 position 前进相应的长度
+     *
+     * @param offset 文件中的起始位置
+     * @param dst 目标缓冲区
+     */
+    public void read(long offset, ByteBuffer dst) {
+        int length = dst.remaining();
+        checkIndex(offset, length);
+        while (length > 0) {
+            ByteBuffer segment = segment(offset >>> segmentShift).duplicate();
+            int position = (int) (offset & segmentMask);
+            int chunk = Math.min(length, segment.capacity() - position);
+            segment.limit(position + chunk).position(position);
+            dst.put(segment);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * 从 offset 开始写入 src 中剩余的全部字节，写完后 src 的 position 前进相应的长度
+     *
+     * @param offset 文件中的起始位置
+     * @param src 要写入的字节
+     */
+    public void write(long offset, ByteBuffer src) {
+        int length = src.remaining();
+        checkIndex(offset, length);
+        long start = offset;
+        int total = length;
+        while (length > 0) {
+            ByteBuffer segment = segment(offset >>> segmentShift).duplicate();
+            int position = (int) (offset & segmentMask);
+            int chunk = Math.min(length, segment.capacity() - position);
+            segment.position(position);
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + chunk);
+            segment.put(part);
+            src.position(src.position() + chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+        dirty(start, total);
+    }
+
+    public short getShort(long offset) {
+        return (short) getBits(offset, Short.BYTES);
+    }
+
+    public int getInt(long offset) {
+        return (int) getBits(offset, Integer.BYTES);
+    }
+
+    public long getLong(long offset) {
+        return getBits(offset, Long.BYTES);
+    }
+
+    public float getFloat(long offset) {
+        return Float.intBitsToFloat(getInt(offset));
+    }
+
+    public double getDouble(long offset) {
+        return Double.longBitsToDouble(getLong(offset));
+    }
+
+    public void putShort(long offset, short value) {
+        putBits(offset, Short.BYTES, value);
+    }
+
+    public void putInt(long offset, int value) {
+        putBits(offset, Integer.BYTES, value);
+    }
+
+    public void putLong(long offset, long value) {
+        putBits(offset, Long.BYTES, value);
+    }
+
+    public void putFloat(long offset, float value) {
+        putInt(offset, Float.floatToRawIntBits(value));
+    }
+
+    public void putDouble(long offset, double value) {
+        putLong(offset, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * 返回 [offset, offset + length) 的零拷贝视图，字节序与文件相同，只读打开时视图也是只读的。
+     * 视图直接指向映射的内存，不能跨越段边界；文件关闭之后不能再使用。
+     * 读写打开时整个区域在创建时记为已修改，之后通过视图的写入需要调用 {@link #markDirty(long, long)}。
+     *
+     * @param offset 文件中的起始位置
+     * @param length 长度
+     * @return position 为 0、capacity 为 length 的缓冲区
+     * @throws IllegalArgumentException 区域跨越了段边界
+     */
+    public ByteBuffer slice(long offset, int length) {
+        checkIndex(offset, length);
+        int position = (int) (offset & segmentMask);
+        if (position + (long) length > segmentSize()) {
+            throw new IllegalArgumentException("slice [" + offset + ", " + (offset + length)
+                + ") crosses a segment boundary, segmentSize is " + segmentSize());
+        }
+        ByteBuffer slice = segment(offset >>> segmentShift).slice(position, length).order(order);
+        if (!readOnly) {
+            dirty(offset, length);
+        }
+        return slice;
+    }
+
+    /**
+     * 把 [offset, offset + length) 记为已修改，用于通过 {@link #slice(long, int)} 写入之后。
+     * 不记录修改区域的策略下什么也不做
+     *
+     * @param offset 文件中的起始位置
+     * @param length 长度
+     */
+    public void markDirty(long offset, long length) {
+        checkIndex(offset, length);
+        dirty(offset, length);
+    }
+
+    /**
+     * 把修改写回存储设备。记录修改区域时只对修改过的页调用 force，否则对所有已映射的段调用 force
+     *
+     * @throws IllegalStateException 文件已关闭
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            ensureOpen();
+            if (!readOnly) {
+                flushDirty();
+            }
+        }
+    }
+
+    /**
+     * @return 尚未写回的修改量，按页计算，不记录修改区域时为 0
+     */
+    public long dirtyBytes() {
+        return dirtyBytes.get();
+    }
+
+    /**
+     * 把整个文件写入 target
+     *
+     * @see #transferTo(long, long, WritableByteChannel)
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return transferTo(0, size, target);
+    }
+
+    /**
+     * 把 [offset, offset + length) 写入 target。
+     * 优先使用 {@link FileChannel#transferTo}，目标是 socket 或文件时由内核直接复制，不经过用户态缓冲区。
+     *
+     * @param offset 文件中的起始位置
+     * @param length 长度
+     * @param target 目标通道，阻塞模式
+     * @return 写入的字节数，非阻塞的 target 写不进去时可能小于 length
+     */
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        checkIndex(offset, length);
+        long transferred = 0;
+        while (transferred < length) {
+            long n = fileChannel.transferTo(offset + transferred, length - transferred, target);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    /**
+     * 把文件扩大到 newSize。前面完整的段保持不变，只有最后一个不完整的段会被重新映射，新增的段在访问时才映射。
+     *
+     * @param newSize 新的大小，不大于当前大小时什么也不做
+     * @throws ReadOnlyBufferException 只读打开时
+     */
+    public synchronized void grow(long newSize) throws IOException {
+        ensureOpen();
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
+        long oldSize = size;
+        if (newSize <= oldSize) {
+            return;
+        }
+        if (fileChannel.size() < newSize) {
+            extend(newSize);
+        }
+        AtomicReferenceArray<MappedByteBuffer> old = segments;
+        AtomicReferenceArray<MappedByteBuffer> grown = new AtomicReferenceArray<>(segmentCount(newSize));
+        // 只保留完整的段，不完整的尾段在下次访问时按新的大小重新映射；旧的映射在关闭时解除，因为别的线程可能还在使用
+        int full = (int) (oldSize >>> segmentShift);
+        for (int i = 0; i < full; i++) {
+            grown.set(i, old.get(i));
+        }
+        if (tracking) {
+            // 位图按整段分配，尾段的位图原样保留，写回时用新的映射 force
+            AtomicReferenceArray<AtomicLongArray> oldPages = dirtyPages;
+            AtomicReferenceArray<AtomicLongArray> grownPages = new AtomicReferenceArray<>(grown.length());
+            for (int i = 0; i < oldPages.length(); i++) {
+                grownPages.set(i, oldPages.get(i));
+            }
+            dirtyPages = grownPages;
+        }
+        segments = grown;
+        size = newSize;
+    }
+
+    /**
+     * @return 映射的大小
+     */
+    public long size() {
+        return size;
     }
 
-    public void write(int index, byte value) {
-        buffer.put(index, value);
+    /**
+     * @return 每段的大小
+     */
+    public int segmentSize() {
+        return 1 << segmentShift;
     }
 
-    public byte read(int index) {
-        return buffer.get(index);
+    /**
+     * @return 定长读写使用的字节序
+     */
+    public ByteOrder order() {
+        return order;
     }
 
+    /**
+     * @return 是否只读打开
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return 文件路径
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return 写回策略
+     */
+    public FlushPolicy flushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * 按写回策略写回修改，解除所有映射并关闭文件
+     */
+    @Override
     public void close() throws IOException {
-        fileChannel.close();
-        randomAccessFile.close();
+        // 锁的顺序与 flush 相同：先 flushLock，再 this
+        synchronized (flushLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (tracking) {
+                    flushDirty();
+                }
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                    if (flushTimeout != null) {
+                        flushTimeout.cancel();
+                    }
+                    segments = new AtomicReferenceArray<>(0);
+                }
+                try {
+                    mapper.close();
+                } finally {
+                    fileChannel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回第 index 段的映射，第一次访问时才映射
+     */
+    private MappedByteBuffer segment(long index) {
+        AtomicReferenceArray<MappedByteBuffer> current = segments;
+        MappedByteBuffer segment = index < current.length() ? current.get((int) index) : null;
+        return segment != null ? segment : map(index);
+    }
+
+    private synchronized MappedByteBuffer map(long index) {
+        ensureOpen();
+        AtomicReferenceArray<MappedByteBuffer> current = segments;
+        if (index >= current.length()) {
+            throw new IndexOutOfBoundsException("segment " + index + " is beyond the end of " + path);
+        }
+        MappedByteBuffer segment = current.get((int) index);
+        if (segment == null) {
+            long position = index << segmentShift;
+            long length = Math.min(1L << segmentShift, size - position);
+            try {
+                segment = mapper.map(fileChannel, readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, position, length);
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to map " + path + " at " + position, e);
+            }
+            segment.order(order);
+            current.set((int) index, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * 按页记录修改过的区域，调用方已经检查过范围
+     */
+    private void dirty(long offset, long length) {
+        if (!tracking || length == 0) {
+            return;
+        }
+        AtomicReferenceArray<AtomicLongArray> current = dirtyPages;
+        int pageBits = segmentShift - PAGE_SHIFT;
+        long pageMask = (1L << pageBits) - 1;
+        long last = (offset + length - 1) >>> PAGE_SHIFT;
+        long pages = 0;
+        for (long page = offset >>> PAGE_SHIFT; page <= last; page++) {
+            AtomicLongArray bits = dirtyBitmap(current, (int) (page >>> pageBits));
+            int word = (int) ((page & pageMask) >>> 6);
+            long bit = 1L << (page & pageMask);
+            if ((bits.get(word) & bit) == 0 && (bits.getAndAccumulate(word, bit, (a, b) -> a | b) & bit) == 0) {
+                pages++;
+            }
+        }
+        if (pages > 0) {
+            long dirty = dirtyBytes.addAndGet(pages << PAGE_SHIFT);
+            long threshold = flushPolicy.dirtyBytes();
+            if (threshold > 0 && dirty >= threshold) {
+                flushInBackground();
+            }
+        }
+    }
+
+    private AtomicLongArray dirtyBitmap(AtomicReferenceArray<AtomicLongArray> current, int index) {
+        AtomicLongArray bits = current.get(index);
+        if (bits == null) {
+            synchronized (this) {
+                // grow 可能已经换了数组，在最新的数组里分配，旧数组里的位图是同一个对象
+                AtomicReferenceArray<AtomicLongArray> latest = dirtyPages;
+                bits = latest.get(index);
+                if (bits == null) {
+                    bits = new AtomicLongArray(((1 << (segmentShift - PAGE_SHIFT)) + 63) >>> 6);
+                    latest.set(index, bits);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 调用方持有 flushLock
+     */
+    private void flushDirty() {
+        AtomicReferenceArray<MappedByteBuffer> current = segments;
+        if (!tracking) {
+            for (int i = 0; i < current.length(); i++) {
+                MappedByteBuffer segment = current.get(i);
+                if (segment != null) {
+                    mapper.force(segment, 0, segment.capacity());
+                }
+            }
+            return;
+        }
+        AtomicReferenceArray<AtomicLongArray> pages = dirtyPages;
+        for (int i = 0; i < pages.length(); i++) {
+            AtomicLongArray bits = pages.get(i);
+            if (bits == null) {
+                continue;
+            }
+            int words = bits.length();
+            int start = -1;
+            // 先清除再 force，force 期间的新修改会重新记下来
+            for (int w = 0; w <= words; w++) {
+                long word = w < words && bits.get(w) != 0 ? bits.getAndSet(w, 0) : 0;
+                if (word == -1L) {
+                    if (start < 0) {
+                        start = w << 6;
+                    }
+                    continue;
+                }
+                if (word == 0 && start < 0) {
+                    continue;
+                }
+                for (int b = 0; b < 64; b++) {
+                    int page = (w << 6) + b;
+                    if ((word & 1L << b) != 0) {
+                        if (start < 0) {
+                            start = page;
+                        }
+                    } else if (start >= 0) {
+                        forcePages(i, start, page);
+                        start = -1;
+                    }
+                }
+            }
+        }
+    }
+
+    private void forcePages(int index, int startPage, int endPage) {
+        dirtyBytes.addAndGet(-((long) (endPage - startPage) << PAGE_SHIFT));
+        MappedByteBuffer segment = segment(index);
+        int from = startPage << PAGE_SHIFT;
+        int to = (int) Math.min(segment.capacity(), (long) endPage << PAGE_SHIFT);
+        if (to > from) {
+            mapper.force(segment, from, to - from);
+        }
+    }
+
+    private void flushInBackground() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+        }
+    }
+
+    private synchronized void schedulePeriodicFlush() {
+        if (closed) {
+            return;
+        }
+        flushTimeout = TimingWheel.shared().schedule(() -> {
+            try {
+                executor.execute(() -> {
+                    flushQuietly();
+                    schedulePeriodicFlush();
+                });
+            } catch (RejectedExecutionException e) {
+                schedulePeriodicFlush();
+            }
+        }, flushPolicy.intervalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void flushQuietly() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IllegalStateException e) {
+            // 写回期间文件被关闭，关闭时已经写回
+        }
+    }
+
+    /**
+     * 读取 width 个字节组成的整数，跨越段边界时逐字节拼接
+     */
+    private long getBits(long offset, int width) {
+        checkIndex(offset, width);
+        MappedByteBuffer segment = segment(offset >>> segmentShift);
+        int position = (int) (offset & segmentMask);
+        if (position + width <= segment.capacity()) {
+            switch (width) {
+                case Short.BYTES:
+                    return segment.getShort(position);
+                case Integer.BYTES:
+                    return segment.getInt(position);
+                default:
+                    return segment.getLong(position);
+            }
+        }
+        long bits = 0;
+        for (int i = 0; i < width; i++) {
+            long b = read(offset + i) & 0xffL;
+            bits |= order == ByteOrder.BIG_ENDIAN ? b << ((width - 1 - i) << 3) : b << (i << 3);
+        }
+        // 按宽度做符号扩展，与 ByteBuffer 的返回值一致
+        int shift = 64 - (width << 3);
+        return bits << shift >> shift;
+    }
+
+    private void putBits(long offset, int width, long bits) {
+        checkIndex(offset, width);
+        MappedByteBuffer segment = segment(offset >>> segmentShift);
+        int position = (int) (offset & segmentMask);
+        if (position + width <= segment.capacity()) {
+            switch (width) {
+                case Short.BYTES:
+                    segment.putShort(position, (short) bits);
+                    break;
+                case Integer.BYTES:
+                    segment.putInt(position, (int) bits);
+                    break;
+                default:
+                    segment.putLong(position, bits);
+            }
+            dirty(offset, width);
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            int shift = order == ByteOrder.BIG_ENDIAN ? (width - 1 - i) << 3 : i << 3;
+            write(offset + i, (byte) (bits >>> shift));
+        }
+    }
+
+    private void extend(long newSize) throws IOException {
+        // 在末尾写一个字节，不同平台上都会把文件扩大并用 0 填充
+        fileChannel.write(ByteBuffer.wrap(new byte[1]), newSize - 1);
+    }
+
+    private int segmentCount(long size) {
+        long count = (size + segmentMask) >>> segmentShift;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many segments for " + size + " bytes, increase segmentSize");
+        }
+        return (int) count;
+    }
+
+    private void checkIndex(long offset, long length) {
+        if (closed) {
+            throw new IllegalStateException("file is closed: " + path);
+        }
+        if (offset < 0 || length < 0 || offset > size - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + size);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("file is closed: " + path);
+        }
+    }
+
+    /**
+     * 映射方式的配置
+     */
+    public static final class Builder {
+        private final Path path;
+        private long size = -1;
+        private int segmentSize = 1 << MAX_SEGMENT_SHIFT;
+        private boolean readOnly;
+        private ByteOrder order = ByteOrder.BIG_ENDIAN;
+        private FlushPolicy flushPolicy = FlushPolicy.none();
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder(Path path) {
+            if (path == null) {
+                throw new NullPointerException("path");
+            }
+            this.path = path;
+        }
+
+        /**
+         * @param size 映射的大小，默认为文件当前的大小；读写打开时文件不够大会被扩大
+         */
+        public Builder size(long size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("size must not be negative: " + size);
+            }
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * @param segmentSize 每段的大小，2 的幂，4 KiB 到 1 GiB 之间，默认 1 GiB
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (Integer.bitCount(segmentSize) != 1
+                || segmentSize < 1 << MIN_SEGMENT_SHIFT || segmentSize > 1 << MAX_SEGMENT_SHIFT) {
+                throw new IllegalArgumentException("segmentSize must be a power of two in [4KiB, 1GiB]: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param order 定长读写和 {@link MemoryMappedFile#slice} 使用的字节序，默认为大端序
+         */
+        public Builder order(ByteOrder order) {
+            if (order == null) {
+                throw new NullPointerException("order");
+            }
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * @param flushPolicy 写回策略，默认为 {@link FlushPolicy#none()}，只读打开时不起作用
+         */
+        public Builder flushPolicy(FlushPolicy flushPolicy) {
+            if (flushPolicy == null) {
+                throw new NullPointerException("flushPolicy");
+            }
+            this.flushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * @param executor 执行后台写回的线程池，默认为 {@link ForkJoinPool#commonPool()}
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new NullPointerException("executor");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 只读打开，文件必须存在，写入时抛出 {@link ReadOnlyBufferException}
+         */
+        public Builder readOnly() {
+            this.readOnly = true;
+            return this;
+        }
+
+        public MemoryMappedFile build() throws IOException {
+            return open(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,229 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import me.yuyuko.sdk.interfaces.io.memory.IMemoryCache;
+
+/**
+ * 把值序列化后存放在堆外直接内存中的缓存，适合缓存大量对象又不想增加 GC 压力的场景。
+ * <p>
+ * 值经过 {@link CacheCodec} 编码后写入 {@link SlabStore} 的段中，堆上只保留键到记录位置的索引
+ * （一个按字节数限制大小、W-TinyLFU 淘汰的 {@link MemoryCache}）。索引中的项被移除、覆盖或淘汰时，
+ * 对应的堆外空间被标记为无效，由碎片整理回收。
+ * <p>
+ * 可选的热点层是一个按项数限制的 {@link MemoryCache}，保存反序列化后的对象，
+ * 频繁读取的键不需要每次都解码。热点层返回的是共享的对象，调用方不应修改它。
+ * <p>
+ * 直接内存在第一次用到某一段时才分配，总量约为 capacity，需要相应地设置 {@code -XX:MaxDirectMemorySize}。
+ * 编解码失败时抛出 {@link UncheckedIOException}。
+ * <pre>
+ * OffHeapMemoryCache&lt;String, Order&gt; orders = OffHeapMemoryCache.builder(CacheCodec.jackson(Order.class))
+ *     .capacity(4L &lt;&lt; 30)
+ *     .hotTierSize(10_000)
+ *     .build();
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+public final class OffHeapMemoryCache<KT, VT> implements IMemoryCache<KT, VT> {
+    private final CacheCodec<VT> codec;
+    private final SlabStore store;
+    private final MemoryCache<KT, SlabStore.SlabRef> index;
+    // 没有热点层时为 null
+    private final MemoryCache<KT, VT> hot;
+
+    private OffHeapMemoryCache(Builder<KT, VT> builder) {
+        this.codec = builder.codec;
+        this.store = new SlabStore(builder.capacity, builder.segmentSize, this::evictNow);
+        this.index = MemoryCache.<KT, SlabStore.SlabRef>builder()
+            .maximumWeight(store.maximumLiveBytes())
+            .weigher((key, ref) -> ref.length)
+            .removalListener(this::onRemoval)
+            .build();
+        this.hot = builder.hotTierSize > 0
+            ? MemoryCache.<KT, VT>builder().maximumSize(builder.hotTierSize).build()
+            : null;
+    }
+
+    /**
+     * @param codec 值的编解码
+     * @return 用于创建堆外缓存的 Builder
+     */
+    public static <KT, VT> Builder<KT, VT> builder(CacheCodec<VT> codec) {
+        if (codec == null) {
+            throw new NullPointerException("codec");
+        }
+        return new Builder<>(codec);
+    }
+
+    @Override
+    public void put(KT key, VT value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        byte[] data;
+        try {
+            data = codec.encode(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to encode value for " + key, e);
+        }
+        store.lock();
+        try {
+            // 旧的记录在覆盖时通过移除回调释放
+            index.put(key, store.allocate(data));
+        } finally {
+            store.unlock();
+        }
+    }
+
+    @Override
+    public VT get(KT key) {
+        if (hot != null) {
+            VT value = hot.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        SlabStore.SlabRef ref = index.get(key);
+        if (ref == null) {
+            return null;
+        }
+        byte[] data = store.read(ref);
+        if (data == null) {
+            return null;
+        }
+        VT value;
+        try {
+            value = codec.decode(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to decode value for " + key, e);
+        }
+        if (hot != null) {
+            hot.put(key, value);
+            if (!ref.isLive()) {
+                // 解码期间被覆盖或删除，不能让旧值留在热点层
+                hot.remove(key);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(KT key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public void remove(KT key) {
+        index.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        if (hot != null) {
+            hot.clear();
+        }
+        store.clear();
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * @return 所有值编码后的总字节数
+     */
+    public long weightedSize() {
+        return index.weightedSize();
+    }
+
+    /**
+     * @return 已经分配的直接内存字节数
+     */
+    public long allocatedBytes() {
+        return store.allocatedBytes();
+    }
+
+    /**
+     * @see MemoryCache#cleanUp()
+     */
+    public void cleanUp() {
+        index.cleanUp();
+        if (hot != null) {
+            hot.cleanUp();
+        }
+    }
+
+    private void evictNow() {
+        index.cleanUp();
+    }
+
+    private void onRemoval(KT key, SlabStore.SlabRef ref, RemovalCause cause) {
+        store.free(ref);
+        if (hot != null) {
+            hot.remove(key);
+        }
+    }
+
+    /**
+     * 堆外缓存的配置
+     * @param <KT> 键的类型
+     * @param <VT> 值的类型
+     */
+    public static final class Builder<KT, VT> {
+        private final CacheCodec<VT> codec;
+        private long capacity = 64L << 20;
+        private int segmentSize = 1 << 20;
+        private long hotTierSize;
+
+        private Builder(CacheCodec<VT> codec) {
+            this.codec = codec;
+        }
+
+        /**
+         * @param capacity 直接内存的总字节数，默认 64MB；其中两段预留给碎片整理
+         */
+        public Builder<KT, VT> capacity(long capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param segmentSize 每段的字节数，默认 1MB，也是单个值编码后的上限
+         */
+        public Builder<KT, VT> segmentSize(int segmentSize) {
+            if (segmentSize < 1024) {
+                throw new IllegalArgumentException("segmentSize must be at least 1KB: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param hotTierSize 堆上保存的反序列化对象的数量，0 表示不使用热点层
+         */
+        public Builder<KT, VT> hotTierSize(long hotTierSize) {
+            if (hotTierSize < 0) {
+                throw new IllegalArgumentException("hotTierSize must not be negative: " + hotTierSize);
+            }
+            this.hotTierSize = hotTierSize;
+            return this;
+        }
+
+        public OffHeapMemoryCache<KT, VT> build() {
+            return new OffHeapMemoryCache<>(this);
+        }
+    }
+}
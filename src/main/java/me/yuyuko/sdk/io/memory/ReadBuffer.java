@@ -0,0 +1,79 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 记录读访问的有损缓冲区：按线程分散到多个环形缓冲区，写入只有一次 CAS，满了或竞争失败就丢弃。
+ * 丢失少量访问记录只会让淘汰策略稍微不准，换来读操作几乎和 ConcurrentHashMap.get 一样便宜。
+ * @author castorice (遐蝶)
+ */
+final class ReadBuffer<E> {
+    static final int SUCCESS = 0;
+    static final int FULL = 1;
+    static final int FAILED = 2;
+
+    private static final int BUFFER_SIZE = 16;
+    private static final int MASK = BUFFER_SIZE - 1;
+
+    private static final class Stripe<E> {
+        final AtomicLong writeCounter = new AtomicLong();
+        final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        volatile long readCounter;
+    }
+
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    ReadBuffer() {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors() * 2)) * 2 - 1);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * @return SUCCESS；缓冲区已满需要排空时为 FULL；与其他线程竞争失败时为 FAILED
+     */
+    int offer(E e) {
+        int h = Thread.currentThread().hashCode();
+        Stripe<E> stripe = stripes[(h ^ (h >>> 16)) & stripeMask];
+        long head = stripe.readCounter;
+        long tail = stripe.writeCounter.get();
+        long size = tail - head;
+        if (size >= BUFFER_SIZE) {
+            return FULL;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & MASK), e);
+            return size + 1 >= BUFFER_SIZE / 2 ? FULL : SUCCESS;
+        }
+        return FAILED;
+    }
+
+    /**
+     * 把所有缓冲区中已经发布的元素交给 consumer，只能由持有淘汰锁的线程调用
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & MASK);
+                E e = stripe.buffer.get(index);
+                if (e == null) {
+                    // 写入者已经占位但还没有发布，下次再处理
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(e);
+                head++;
+            }
+            stripe.readCounter = head;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.yuyuko.sdk.io.memory;
+
+/**
+ * 缓存项被移除的原因
+ * @author castorice (遐蝶)
+ */
+public enum RemovalCause {
+    /**
+     * 调用了 remove 或 clear
+     */
+    EXPLICIT,
+    /**
+     * 被同一个键的新值覆盖
+     */
+    REPLACED,
+    /**
+     * 过期
+     */
+    EXPIRED,
+    /**
+     * 超出项数或权重上限被淘汰
+     */
+    SIZE;
+
+    /**
+     * @return 是否是缓存自动移除的（过期或淘汰），而不是调用方主动移除的
+     */
+    public boolean wasEvicted() {
+        return this == EXPIRED || this == SIZE;
+    }
+}
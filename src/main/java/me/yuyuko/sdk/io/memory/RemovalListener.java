@@ -0,0 +1,16 @@
+package me.yuyuko.sdk.io.memory;
+
+/**
+ * 缓存项被移除时的回调，可以用来释放值上挂着的资源（例如堆外缓冲区）。
+ * <p>
+ * 主动移除和覆盖在调用线程上同步回调；淘汰和过期在维护完成、释放内部锁之后回调，
+ * 所以回调中可以再访问缓存。回调抛出的异常交给线程的 UncaughtExceptionHandler，不会影响缓存。
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+@FunctionalInterface
+public interface RemovalListener<KT, VT> {
+
+    void onRemoval(KT key, VT value, RemovalCause cause);
+}
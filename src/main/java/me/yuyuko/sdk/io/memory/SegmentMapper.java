@@ -0,0 +1,222 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 创建 {@link MemoryMappedFile} 的映射并在关闭时解除映射，每个文件一个实例。
+ * <p>
+ * 支持 Foreign Memory API 的 JDK 上，所有段映射到同一个共享的 Arena，关闭 Arena 立即解除映射，
+ * 之后通过旧缓冲区的访问会抛出 {@link IllegalStateException}，不会访问已经释放的内存。
+ * 否则退回 {@code Unsafe.invokeCleaner}，解除映射之后不能再有任何访问，由调用方保证；
+ * 两者都不可用时只能等 GC 回收。
+ * @author castorice (遐蝶)
+ */
+abstract class SegmentMapper {
+    private static final Ffm FFM = Ffm.load();
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JDK 8 或者 jdk.unsupported 不可用，交给 GC
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    static SegmentMapper create() {
+        if (FFM != null) {
+            try {
+                return new ArenaMapper(FFM);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 退回 MappedByteBuffer
+            }
+        }
+        return new CleanerMapper();
+    }
+
+    /**
+     * @return 是否通过 Arena 解除映射
+     */
+    static boolean arenaSupported() {
+        return FFM != null;
+    }
+
+    abstract MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length) throws IOException;
+
+    /**
+     * 把 buffer 中 [index, index + length) 的修改写回存储设备
+     */
+    abstract void force(MappedByteBuffer buffer, int index, int length);
+
+    /**
+     * 解除所有映射，只调用一次
+     */
+    abstract void close();
+
+    /**
+     * @return 关闭时是否能确定地解除映射
+     */
+    abstract boolean unmaps();
+
+    /**
+     * 通过反射访问 Foreign Memory API，编译时不依赖 JDK 版本
+     */
+    private static final class Ffm {
+        final Method ofShared;
+        final Method close;
+        final Method map;
+        final Method asByteBuffer;
+        final Method asSlice;
+        final Method force;
+
+        private Ffm(Class<?> arena, Class<?> segment) throws ReflectiveOperationException {
+            this.ofShared = arena.getMethod("ofShared");
+            this.close = arena.getMethod("close");
+            this.map = FileChannel.class.getMethod("map", FileChannel.MapMode.class, long.class, long.class, arena);
+            this.asByteBuffer = segment.getMethod("asByteBuffer");
+            this.asSlice = segment.getMethod("asSlice", long.class, long.class);
+            this.force = segment.getMethod("force");
+        }
+
+        static Ffm load() {
+            try {
+                Ffm ffm = new Ffm(Class.forName("java.lang.foreign.Arena"), Class.forName("java.lang.foreign.MemorySegment"));
+                // JDK 21 上是预览 API，确认不需要 --enable-preview 也能使用
+                ffm.close.invoke(ffm.ofShared.invoke(null));
+                return ffm;
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class ArenaMapper extends SegmentMapper {
+        private final Ffm ffm;
+        private final Object arena;
+        private final Map<MappedByteBuffer, Object> segments = new IdentityHashMap<>();
+
+        ArenaMapper(Ffm ffm) throws ReflectiveOperationException {
+            this.ffm = ffm;
+            this.arena = ffm.ofShared.invoke(null);
+        }
+
+        @Override
+        synchronized MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length) throws IOException {
+            try {
+                Object segment = ffm.map.invoke(channel, mode, position, length, arena);
+                MappedByteBuffer buffer = (MappedByteBuffer) ffm.asByteBuffer.invoke(segment);
+                segments.put(buffer, segment);
+                return buffer;
+            } catch (InvocationTargetException e) {
+                throw rethrow(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void force(MappedByteBuffer buffer, int index, int length) {
+            Object segment;
+            synchronized (this) {
+                segment = segments.get(buffer);
+            }
+            try {
+                ffm.force.invoke(ffm.asSlice.invoke(segment, (long) index, (long) length));
+            } catch (InvocationTargetException e) {
+                throw rethrowUnchecked(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        synchronized void close() {
+            segments.clear();
+            try {
+                ffm.close.invoke(arena);
+            } catch (InvocationTargetException e) {
+                throw rethrowUnchecked(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        boolean unmaps() {
+            return true;
+        }
+
+        private static IOException rethrow(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+            throw rethrowUnchecked(e);
+        }
+
+        private static RuntimeException rethrowUnchecked(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class CleanerMapper extends SegmentMapper {
+        private final List<MappedByteBuffer> buffers = new ArrayList<>();
+
+        @Override
+        synchronized MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length) throws IOException {
+            MappedByteBuffer buffer = channel.map(mode, position, length);
+            buffers.add(buffer);
+            return buffer;
+        }
+
+        @Override
+        void force(MappedByteBuffer buffer, int index, int length) {
+            buffer.force(index, length);
+        }
+
+        @Override
+        synchronized void close() {
+            if (INVOKE_CLEANER != null) {
+                for (MappedByteBuffer buffer : buffers) {
+                    try {
+                        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                    } catch (ReflectiveOperationException e) {
+                        // 解除失败的映射留给 GC
+                    }
+                }
+            }
+            buffers.clear();
+        }
+
+        @Override
+        boolean unmaps() {
+            return INVOKE_CLEANER != null;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 堆外存储：容量被切成固定大小的段（slab），每段是一块直接内存，写入时在当前段末尾追加。
+ * <p>
+ * 删除只把字节记为无效，空间在整段回收时才能重用。没有空闲段时选出可回收字节最多的段，
+ * 把其中仍然有效的记录紧凑地搬到预留的空闲段里（碎片整理），被整理的段成为新的预留段。
+ * 缓存的索引按 {@link #maximumLiveBytes()} 限制有效字节数，保证整理总能腾出空间。
+ * <p>
+ * 分配、释放和整理在同一把锁下进行；读取不加锁，先乐观地复制字节，
+ * 如果期间有段被重用（{@link StampedLock} 的版本变化）再在读锁下重试。
+ * @author castorice (遐蝶)
+ */
+final class SlabStore {
+
+    /**
+     * 一条记录在堆外的位置。整理时位置会变，但对象不变，所以索引不需要更新
+     */
+    static final class SlabRef {
+        final int length;
+        // 高 32 位是段号，低 32 位是段内偏移
+        volatile long address;
+        volatile boolean live;
+
+        SlabRef(int length) {
+            this.length = length;
+        }
+
+        boolean isLive() {
+            return live;
+        }
+    }
+
+    private final int segmentSize;
+    private final ByteBuffer[] segments;
+    private final int[] used;
+    private final int[] dead;
+    private final boolean[] free;
+    private final List<List<SlabRef>> records;
+    private final Deque<Integer> freeSegments = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StampedLock reuse = new StampedLock();
+    // 空间不足时让索引立即执行淘汰
+    private final Runnable evictor;
+    private int active;
+
+    SlabStore(long capacity, int segmentSize, Runnable evictor) {
+        long count = Math.max(4, (capacity + segmentSize - 1) / segmentSize);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many segments: " + count);
+        }
+        this.segmentSize = segmentSize;
+        this.segments = new ByteBuffer[(int) count];
+        this.used = new int[(int) count];
+        this.dead = new int[(int) count];
+        this.free = new boolean[(int) count];
+        this.records = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            records.add(new ArrayList<>());
+            if (i > 0) {
+                free[i] = true;
+                freeSegments.add(i);
+            }
+        }
+        this.evictor = evictor;
+        this.active = 0;
+        this.segments[0] = ByteBuffer.allocateDirect(segmentSize);
+    }
+
+    /**
+     * 预留一段用于整理，另一段的余量留给正在写入的记录
+     */
+    long maximumLiveBytes() {
+        return (long) (segments.length - 2) * segmentSize;
+    }
+
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return 已经分配的直接内存字节数
+     */
+    long allocatedBytes() {
+        long total = 0;
+        for (ByteBuffer segment : segments) {
+            if (segment != null) total += segment.capacity();
+        }
+        return total;
+    }
+
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * 写入一条记录，调用方必须持有锁
+     */
+    SlabRef allocate(byte[] data) {
+        if (data.length > segmentSize) {
+            throw new IllegalArgumentException("encoded value of " + data.length
+                + " bytes does not fit in a segment of " + segmentSize + " bytes");
+        }
+        SlabRef ref = new SlabRef(data.length);
+        if (used[active] + data.length > segmentSize) {
+            nextSegment(data.length);
+        }
+        int offset = used[active];
+        segments[active].put(offset, data, 0, data.length);
+        used[active] = offset + data.length;
+        records.get(active).add(ref);
+        ref.address = ((long) active << 32) | offset;
+        ref.live = true;
+        return ref;
+    }
+
+    /**
+     * 释放一条记录，重复调用没有效果
+     */
+    void free(SlabRef ref) {
+        lock.lock();
+        try {
+            if (!ref.live) return;
+            ref.live = false;
+            int segment = (int) (ref.address >>> 32);
+            dead[segment] += ref.length;
+            if (segment != active && dead[segment] == used[segment]) {
+                // 整段都无效了，直接回收
+                long stamp = reuse.writeLock();
+                try {
+                    release(segment);
+                } finally {
+                    reuse.unlockWrite(stamp);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 记录的字节，记录已经被释放时为 null
+     */
+    byte[] read(SlabRef ref) {
+        byte[] data = new byte[ref.length];
+        long stamp = reuse.tryOptimisticRead();
+        if (stamp != 0) {
+            copy(ref, data);
+            if (reuse.validate(stamp)) {
+                return data;
+            }
+        }
+        stamp = reuse.readLock();
+        try {
+            if (!ref.live) return null;
+            copy(ref, data);
+            return data;
+        } finally {
+            reuse.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 释放所有记录，已经分配的直接内存留着复用
+     */
+    void clear() {
+        lock.lock();
+        long stamp = reuse.writeLock();
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                for (SlabRef ref : records.get(i)) {
+                    ref.live = false;
+                }
+                if (i != active) {
+                    release(i);
+                }
+            }
+            used[active] = 0;
+            dead[active] = 0;
+            records.get(active).clear();
+        } finally {
+            reuse.unlockWrite(stamp);
+            lock.unlock();
+        }
+    }
+
+    private void copy(SlabRef ref, byte[] data) {
+        long address = ref.address;
+        segments[(int) (address >>> 32)].get((int) address, data, 0, data.length);
+    }
+
+    /**
+     * 换到一个至少有 length 字节空闲的段
+     */
+    private void nextSegment(int length) {
+        boolean evicted = false;
+        for (int attempt = 0; attempt <= 2 * segments.length; attempt++) {
+            if (freeSegments.size() > 1) {
+                active = takeFree();
+                return;
+            }
+            int victim = -1;
+            int best = 0;
+            for (int i = 0; i < segments.length; i++) {
+                if (i == active || free[i]) continue;
+                int reclaimable = segmentSize - (used[i] - dead[i]);
+                if (reclaimable > best) {
+                    best = reclaimable;
+                    victim = i;
+                }
+            }
+            if (victim < 0 || (best < length && !evicted)) {
+                // 先让索引把超出上限的项淘汰掉，释放的记录会回到这里
+                evictor.run();
+                evicted = true;
+                continue;
+            }
+            int live = used[victim] - dead[victim];
+            if (live <= segmentSize - used[active]) {
+                // 当前段的余量放得下，整理后 victim 变成空闲段
+                compact(victim, active);
+            } else {
+                // 搬到预留段，victim 成为新的预留段
+                int target = takeFree();
+                compact(victim, target);
+                active = target;
+            }
+            if (used[active] + length <= segmentSize) {
+                return;
+            }
+        }
+        throw new IllegalStateException("off-heap store is too fragmented to fit " + length + " bytes");
+    }
+
+    private void compact(int victim, int target) {
+        long stamp = reuse.writeLock();
+        try {
+            ByteBuffer from = segments[victim];
+            ByteBuffer to = segments[target];
+            int offset = used[target];
+            List<SlabRef> moved = records.get(target);
+            for (SlabRef ref : records.get(victim)) {
+                if (!ref.live) continue;
+                to.put(offset, from, (int) ref.address, ref.length);
+                ref.address = ((long) target << 32) | offset;
+                offset += ref.length;
+                moved.add(ref);
+            }
+            used[target] = offset;
+            release(victim);
+        } finally {
+            reuse.unlockWrite(stamp);
+        }
+    }
+
+    private int takeFree() {
+        int segment = freeSegments.poll();
+        free[segment] = false;
+        if (segments[segment] == null) {
+            segments[segment] = ByteBuffer.allocateDirect(segmentSize);
+        }
+        return segment;
+    }
+
+    /**
+     * 清空一段并放回空闲列表，调用方必须持有 reuse 的写锁
+     */
+    private void release(int segment) {
+        used[segment] = 0;
+        dead[segment] = 0;
+        records.get(segment).clear();
+        if (!free[segment]) {
+            free[segment] = true;
+            freeSegments.add(segment);
+        }
+    }
+}
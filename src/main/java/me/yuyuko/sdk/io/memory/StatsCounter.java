@@ -0,0 +1,119 @@
+package me.yuyuko.sdk.io.memory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+
+/**
+ * 缓存统计的计数器。没有开启统计时使用 {@link #DISABLED}，所有方法都是空操作
+ * @author castorice (遐蝶)
+ */
+interface StatsCounter {
+
+    StatsCounter DISABLED = new StatsCounter() {
+        @Override
+        public void recordHits(int count) {
+        }
+
+        @Override
+        public void recordMisses(int count) {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadNanos) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadNanos) {
+        }
+
+        @Override
+        public void recordRemoval(RemovalCause cause, int weight) {
+        }
+
+        @Override
+        public CacheStats snapshot(long weightedSize) {
+            return CacheStats.empty();
+        }
+    };
+
+    void recordHits(int count);
+
+    void recordMisses(int count);
+
+    void recordLoadSuccess(long loadNanos);
+
+    void recordLoadFailure(long loadNanos);
+
+    /**
+     * @param weight 被移除的项的权重，只有淘汰（{@link RemovalCause#wasEvicted()}）时才累计
+     */
+    void recordRemoval(RemovalCause cause, int weight);
+
+    CacheStats snapshot(long weightedSize);
+
+    /**
+     * 基于 {@link LongAdder} 的实现，竞争激烈时各线程累加到不同的 cell 上
+     */
+    final class Concurrent implements StatsCounter {
+        private static final RemovalCause[] CAUSES = RemovalCause.values();
+
+        private final IClock clock;
+        private final long startTime;
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        private final LongAdder loadSuccessCount = new LongAdder();
+        private final LongAdder loadFailureCount = new LongAdder();
+        private final LongAdder totalLoadTime = new LongAdder();
+        private final LongAdder evictionWeight = new LongAdder();
+        private final LongAdder[] removalCounts = new LongAdder[CAUSES.length];
+
+        Concurrent(IClock clock) {
+            this.clock = clock;
+            this.startTime = clock.nanoTime();
+            for (int i = 0; i < removalCounts.length; i++) {
+                removalCounts[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void recordHits(int count) {
+            hitCount.add(count);
+        }
+
+        @Override
+        public void recordMisses(int count) {
+            missCount.add(count);
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadNanos) {
+            loadSuccessCount.increment();
+            totalLoadTime.add(Math.max(0, loadNanos));
+        }
+
+        @Override
+        public void recordLoadFailure(long loadNanos) {
+            loadFailureCount.increment();
+            totalLoadTime.add(Math.max(0, loadNanos));
+        }
+
+        @Override
+        public void recordRemoval(RemovalCause cause, int weight) {
+            removalCounts[cause.ordinal()].increment();
+            if (cause.wasEvicted()) {
+                evictionWeight.add(weight);
+            }
+        }
+
+        @Override
+        public CacheStats snapshot(long weightedSize) {
+            long[] removals = new long[CAUSES.length];
+            for (int i = 0; i < removals.length; i++) {
+                removals[i] = removalCounts[i].sum();
+            }
+            return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), removals, evictionWeight.sum(), weightedSize, clock.nanoTime() - startTime);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package me.yuyuko.sdk.io.memory;
+
+/**
+ * 计算缓存项的权重，用于按总权重（例如字节数）限制缓存大小。
+ * 权重在写入时计算一次，之后不会重新计算，必须是非负数。
+ * <pre>
+ * MemoryCache&lt;String, byte[]&gt; cache = MemoryCache.&lt;String, byte[]&gt;builder()
+ *     .maximumWeight(64L &lt;&lt; 20)
+ *     .weigher((key, value) -&gt; value.length)
+ *     .build();
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <KT> 键的类型
+ * @param <VT> 值的类型
+ */
+@FunctionalInterface
+public interface Weigher<KT, VT> {
+
+    int weigh(KT key, VT value);
+
+    /**
+     * 每一项的权重都是 1，此时总权重就是项数
+     */
+    static <KT, VT> Weigher<KT, VT> singleton() {
+        return (key, value) -> 1;
+    }
+}
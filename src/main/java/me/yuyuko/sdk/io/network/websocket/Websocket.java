@@ -9,20 +9,23 @@ import java.net.http.WebSocket.Listener;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.concurrent.TimeoutException;
 
 import me.yuyuko.sdk.exceptions.network.websocket.WebsocketConnectionException;
 import me.yuyuko.sdk.exceptions.network.websocket.WebsocketConnectionTimedOut;
 import me.yuyuko.sdk.exceptions.network.websocket.WebsocketSubProtocolException;
 import me.yuyuko.sdk.interfaces.io.network.websocket.IWebsocket;
 import me.yuyuko.sdk.time.TimeDelta;
+import me.yuyuko.sdk.time.TimingWheel;
 
 /**
  * 让websocket 连接变得更加简单！
@@ -37,6 +40,9 @@ public final class Websocket implements IWebsocket, AutoCloseable {
     private final URI url;
     private TimeDelta connectionTimeout;
     private final LinkedBlockingQueue<Object> messageQueue = new LinkedBlockingQueue<>();
+    // 正在等待消息的 recvAsync，按调用顺序交付；与 messageQueue 一起由它自己的锁保护
+    private final LinkedHashSet<CompletableFuture<Object>> receivers = new LinkedHashSet<>();
+    private final TimingWheel timer;
     private volatile boolean connected = false;
     private String subProtocol;
     private final Map<String, String> headers = new HashMap<>();
@@ -62,8 +68,19 @@ public final class Websocket implements IWebsocket, AutoCloseable {
      * @param connectionTimeout
     */
     public Websocket(String uri, TimeDelta connectionTimeout) {
+        this(uri, connectionTimeout, TimingWheel.shared());
+    }
+
+    /**
+     * 传入uri，设置超时时间，并指定用于连接超时和 recvAsync 等待的时间轮
+     * @param uri
+     * @param connectionTimeout
+     * @param timer
+    */
+    public Websocket(String uri, TimeDelta connectionTimeout, TimingWheel timer) {
         this.url = URI.create(uri);
         this.connectionTimeout = connectionTimeout;
+        this.timer = Objects.requireNonNull(timer, "timer");
         this.client = HttpClient.newHttpClient();
     }
 
@@ -104,6 +121,31 @@ public final class Websocket implements IWebsocket, AutoCloseable {
      * @see Websocket#onOpen(Runnable)
     */
     public void connect() throws WebsocketConnectionException {
+        try
+        {
+            connectAsync().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new WebsocketConnectionException("Interrupted while connecting to " + this.url, e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof WebsocketConnectionException) {
+                throw (WebsocketConnectionException) cause;
+            }
+            throw new WebsocketConnectionException("Failed to connect to " + this.url, cause);
+        }
+    }
+
+    /**
+     * 异步建立websocket连接，超时由时间轮负责，不占用等待线程
+     * @return 连接成功时完成；失败时以 WebsocketConnectionException（超时为 WebsocketConnectionTimedOut）异常完成
+     * @see Websocket#connect()
+    */
+    public CompletableFuture<Void> connectAsync() {
 
         WebSocket.Builder builder = client.newWebSocketBuilder();
 
@@ -112,32 +154,42 @@ public final class Websocket implements IWebsocket, AutoCloseable {
         }
 
         headers.forEach(builder::header);
-        CompletableFuture<WebSocket> wsFuture = builder.buildAsync(this.url, new WebsocketHandler());
-
-        try 
-        {
-            this.webSocket = wsFuture.get(connectionTimeout.toTimeUnit(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
-            this.connected = true;
-
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        TimingWheel.Timeout timeout = timer.schedule(() -> result.completeExceptionally(
+            new WebsocketConnectionTimedOut("Connect to " + this.url + " timed out after " + connectionTimeout)),
+            connectionTimeout);
+
+        builder.buildAsync(this.url, new WebsocketHandler()).whenComplete((ws, error) -> {
+            timeout.cancel();
+            if (error != null)
+            {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                result.completeExceptionally(new WebsocketConnectionException("Failed to connect to " + this.url, cause));
+                return;
+            }
             if (subProtocol != null)
             {
                 String[] requestedSubProtocols = subProtocol.split(",");
-                String selectedSubProtocol = webSocket.getSubprotocol();
+                String selectedSubProtocol = ws.getSubprotocol();
 
                 if (selectedSubProtocol == null || !Arrays.asList(requestedSubProtocols).contains(selectedSubProtocol))
                 {
-                    throw new WebsocketSubProtocolException("Requested subprotocols: " + subProtocol + ", but server selected: " + selectedSubProtocol);
+                    ws.abort();
+                    result.completeExceptionally(new WebsocketSubProtocolException("Requested subprotocols: " + subProtocol + ", but server selected: " + selectedSubProtocol));
+                    return;
                 }
             }
-        } 
-        catch (TimeoutException e) 
-        {
-            throw new WebsocketConnectionTimedOut("Connect to " + this.url + " timed out after " + connectionTimeout, e);
-        } 
-        catch (Exception e) 
-        {
-            throw new WebsocketConnectionException("Failed to connect to " + this.url, e);
-        }
+            this.webSocket = ws;
+            this.connected = true;
+            if (!result.complete(null))
+            {
+                // 已经超时，调用方不会再使用这个连接
+                this.connected = false;
+                this.webSocket = null;
+                ws.abort();
+            }
+        });
+        return result;
     }
 
     private void checkIsConnected() throws WebsocketConnectionException
@@ -265,19 +317,51 @@ public final class Websocket implements IWebsocket, AutoCloseable {
     }
 
     /**
-     * 异步接收消息
+     * 异步接收消息，等待期间不占用线程，超时由时间轮负责
+     * @return 在等待时间内收到消息时以消息完成，否则以 null 完成
     */
     @Override
     public CompletableFuture<Object> recvAsync(long waitTime, TimeUnit unit) throws WebsocketConnectionException, RuntimeException {
         checkIsConnected();
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return messageQueue.poll(waitTime, unit);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Interrupted while waiting for message", e);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        synchronized (receivers) {
+            Object message = messageQueue.poll();
+            if (message != null) {
+                future.complete(message);
+                return future;
+            }
+            receivers.add(future);
+        }
+        TimingWheel.Timeout timeout = timer.schedule(() -> future.complete(null), waitTime, unit);
+        future.whenComplete((message, error) -> {
+            timeout.cancel();
+            synchronized (receivers) {
+                receivers.remove(future);
             }
         });
+        return future;
+    }
+
+    /**
+     * 把收到的消息交给最早的 recvAsync，没有人在等时放进队列
+    */
+    private void deliver(Object message) {
+        while (true) {
+            CompletableFuture<Object> receiver;
+            synchronized (receivers) {
+                Iterator<CompletableFuture<Object>> it = receivers.iterator();
+                if (!it.hasNext()) {
+                    messageQueue.offer(message);
+                    return;
+                }
+                receiver = it.next();
+                it.remove();
+            }
+            // 在锁外完成，避免在锁内执行调用方的回调；失败说明它刚好超时或被取消了
+            if (receiver.complete(message)) {
+                return;
+            }
+        }
     }
 
     private class WebsocketHandler implements Listener {
@@ -291,7 +375,7 @@ public final class Websocket implements IWebsocket, AutoCloseable {
             textBuilder.append(data);
             if (last) {
                 String message = textBuilder.toString();
-                messageQueue.offer(message);
+                deliver(message);
                 textBuilder.setLength(0);
                 if (onMessageCallback != null) {
                     onMessageCallback.accept(message);
@@ -317,7 +401,7 @@ public final class Websocket implements IWebsocket, AutoCloseable {
                 binaryBuffer.flip();
                 byte[] bytes = new byte[binaryBuffer.remaining()];
                 binaryBuffer.get(bytes);
-                messageQueue.offer(bytes);
+                deliver(bytes);
                 if (onMessageCallback != null) {
                     onMessageCallback.accept(bytes);
                 }
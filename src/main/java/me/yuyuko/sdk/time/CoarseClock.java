@@ -0,0 +1,112 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+
+/**
+ * 粗粒度时钟：后台线程按固定精度刷新两个 volatile 字段，读取时间只是一次 volatile 读。
+ * <p>
+ * 适合每秒调用上百万次、但只需要毫秒级精度的地方，例如缓存过期检查和消息时间戳。
+ * 返回的时间最多落后一个精度，单调不减。
+ * <p>
+ * 示例：
+ * <pre>
+ * IClock clock = CoarseClock.shared();
+ * long start = clock.nanoTime();
+ * ...
+ * TimeDelta elapsed = clock.elapsedSince(start);
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class CoarseClock implements IClock, AutoCloseable {
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private final long resolutionNanos;
+    private final boolean shared;
+    private final Thread ticker;
+    private volatile long nanos;
+    private volatile long millis;
+    private volatile boolean closed;
+
+    /**
+     * @param resolution 刷新间隔，不小于 100 微秒
+     */
+    public CoarseClock(TimeDelta resolution) {
+        this(resolution, false);
+    }
+
+    private CoarseClock(TimeDelta resolution, boolean shared) {
+        long resolutionNanos = resolution.toTimeUnit(TimeUnit.NANOSECONDS);
+        if (resolutionNanos < TimeUnit.MICROSECONDS.toNanos(100)) {
+            throw new IllegalArgumentException("resolution must be at least 100us: " + resolution);
+        }
+        this.resolutionNanos = resolutionNanos;
+        this.shared = shared;
+        this.nanos = System.nanoTime();
+        this.millis = System.currentTimeMillis();
+        this.ticker = new Thread(this::run, "yuyuko-coarse-clock-" + THREAD_ID.incrementAndGet());
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    private static final class SharedHolder {
+        static final CoarseClock INSTANCE = new CoarseClock(new TimeDelta().milliseconds(1), true);
+    }
+
+    /**
+     * 进程内共享的 1 毫秒精度时钟，不能被关闭
+     *
+     * @return 共享的粗粒度时钟
+     */
+    public static CoarseClock shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(this, resolutionNanos);
+            nanos = System.nanoTime();
+            millis = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanos;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis;
+    }
+
+    /**
+     * @return 刷新间隔
+     */
+    public TimeSpan resolution() {
+        return TimeSpan.ofNanos(resolutionNanos);
+    }
+
+    /**
+     * 停止后台线程，之后读到的时间不再变化
+     *
+     * @throws IllegalStateException 对 {@link #shared()} 调用时
+     */
+    @Override
+    public void close() {
+        if (shared) {
+            throw new IllegalStateException("the shared coarse clock cannot be closed");
+        }
+        closed = true;
+        LockSupport.unpark(ticker);
+    }
+
+    @Override
+    public String toString() {
+        return "CoarseClock(" + resolution() + ")";
+    }
+}
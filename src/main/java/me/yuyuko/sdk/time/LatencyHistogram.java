@@ -0,0 +1,374 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存、可并发记录的延迟直方图，桶的划分与 HdrHistogram 相同（对数-线性）。
+ * <p>
+ * 每个 2 的幂区间再线性地分成若干子桶，保证任意记录值的相对误差不超过 {@code 10^-significantDigits}。
+ * 记录只做几次原子自增，不加锁也不分配对象，可以在生产环境常开。
+ * 值以纳秒为单位，小于 0 的按 0、超过上限的按上限记录。
+ * <p>
+ * {@link #intervalSnapshot()} 通过双缓冲和 {@link WriterReaderPhaser} 取出并清空上一段时间的数据，
+ * 取快照期间到达的样本会进入下一段，不会丢失。
+ * <p>
+ * 示例：
+ * <pre>
+ * LatencyHistogram rtt = new LatencyHistogram();
+ * long start = System.nanoTime();
+ * ws.send(message, true);
+ * rtt.recordSince(start);
+ * ...
+ * LatencyHistogram.Snapshot s = rtt.intervalSnapshot();
+ * long p99 = s.valueAtPercentile(99);
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 桶的划分方式，只与上限和有效数字有关
+     */
+    private static final class Layout {
+        final long highestTrackable;
+        final int significantDigits;
+        final int subBucketHalfCountMagnitude;
+        final int subBucketHalfCount;
+        final long subBucketMask;
+        final int leadingZeroCountBase;
+        final int length;
+
+        Layout(long highestTrackable, int significantDigits) {
+            this.highestTrackable = highestTrackable;
+            this.significantDigits = significantDigits;
+            long largestSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+            int subBucketCountMagnitude = 64 - Long.numberOfLeadingZeros(largestSingleUnitResolution - 1);
+            int subBucketCount = 1 << subBucketCountMagnitude;
+            this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+            this.subBucketHalfCount = subBucketCount / 2;
+            this.subBucketMask = subBucketCount - 1;
+            this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+            long smallestUntrackable = subBucketCount;
+            int bucketsNeeded = 1;
+            while (smallestUntrackable <= highestTrackable) {
+                if (smallestUntrackable > Long.MAX_VALUE / 2) {
+                    bucketsNeeded++;
+                    break;
+                }
+                smallestUntrackable <<= 1;
+                bucketsNeeded++;
+            }
+            this.length = (bucketsNeeded + 1) * subBucketHalfCount;
+        }
+
+        int indexOf(long value) {
+            int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+            int subBucketIndex = (int) (value >>> bucketIndex);
+            return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+        }
+
+        private int bucketOf(int index) {
+            return Math.max(0, (index >> subBucketHalfCountMagnitude) - 1);
+        }
+
+        /**
+         * @return 桶 index 中的最小值
+         */
+        long lowestAt(int index) {
+            int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+            int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+            if (bucketIndex < 0) {
+                subBucketIndex -= subBucketHalfCount;
+                bucketIndex = 0;
+            }
+            return (long) subBucketIndex << bucketIndex;
+        }
+
+        /**
+         * @return 桶 index 中的最大值
+         */
+        long highestAt(int index) {
+            return lowestAt(index) + (1L << bucketOf(index)) - 1;
+        }
+
+        /**
+         * @return 桶 index 的中点，用于计算平均值
+         */
+        long medianAt(int index) {
+            return lowestAt(index) + ((1L << bucketOf(index)) >> 1);
+        }
+
+        boolean sameAs(Layout other) {
+            return highestTrackable == other.highestTrackable && significantDigits == other.significantDigits;
+        }
+    }
+
+    /**
+     * 一组计数，记录时只做原子操作
+     */
+    private static final class Counts {
+        final AtomicLongArray counts;
+        final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        Counts(int length) {
+            this.counts = new AtomicLongArray(length);
+        }
+
+        void record(long value, int index) {
+            counts.getAndIncrement(index);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // 重试
+            }
+            while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+                // 重试
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.lazySet(i, 0);
+            }
+            min.set(Long.MAX_VALUE);
+            max.set(Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * 某一时刻的不可变数据，可以合并多个快照（例如多个连接或多个时间段）
+     */
+    public static final class Snapshot {
+        private final Layout layout;
+        private final long[] counts;
+        private final long totalCount;
+        private final long min;
+        private final long max;
+
+        private Snapshot(Layout layout, long[] counts, long min, long max) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.layout = layout;
+            this.counts = counts;
+            this.totalCount = total;
+            this.min = total == 0 ? 0 : min;
+            this.max = total == 0 ? 0 : max;
+        }
+
+        private static Snapshot of(Layout layout, Counts source) {
+            long[] counts = new long[layout.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = source.counts.get(i);
+            }
+            return new Snapshot(layout, counts, source.min.get(), source.max.get());
+        }
+
+        /**
+         * @return 样本数
+         */
+        public long count() {
+            return totalCount;
+        }
+
+        /**
+         * @return 最小值（纳秒），没有样本时为 0
+         */
+        public long min() {
+            return min;
+        }
+
+        /**
+         * @return 最大值（纳秒），没有样本时为 0
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return 平均值（纳秒），按每个桶的中点估算
+         */
+        public double mean() {
+            if (totalCount == 0) return 0;
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    sum += (double) layout.medianAt(i) * counts[i];
+                }
+            }
+            return sum / totalCount;
+        }
+
+        /**
+         * 返回不小于 percentile% 样本的最小值，误差不超过桶宽
+         *
+         * @param percentile 0 到 100 之间的百分位
+         * @return 对应的值（纳秒），没有样本时为 0
+         */
+        public long valueAtPercentile(double percentile) {
+            if (totalCount == 0) return 0;
+            double p = Math.min(Math.max(percentile, 0), 100);
+            if (p == 0) return min;
+            long countAt = Math.max(1, (long) Math.ceil(p * totalCount / 100));
+            long running = 0;
+            for (int i = 0; i < counts.length; i++) {
+                running += counts[i];
+                if (running >= countAt) {
+                    return Math.max(min, Math.min(layout.highestAt(i), max));
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @see #valueAtPercentile(double)
+         */
+        public TimeDelta percentile(double percentile) {
+            return new TimeDelta().nanos(valueAtPercentile(percentile));
+        }
+
+        /**
+         * @param other 另一个快照，必须来自上限和有效数字相同的直方图
+         * @return 两者合并后的新快照
+         * @throws IllegalArgumentException 桶的划分不同
+         */
+        public Snapshot merge(Snapshot other) {
+            if (!layout.sameAs(other.layout)) {
+                throw new IllegalArgumentException("cannot merge histograms with different ranges or precision");
+            }
+            long[] merged = counts.clone();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += other.counts[i];
+            }
+            long mergedMin = Math.min(totalCount == 0 ? Long.MAX_VALUE : min, other.totalCount == 0 ? Long.MAX_VALUE : other.min);
+            long mergedMax = Math.max(totalCount == 0 ? Long.MIN_VALUE : max, other.totalCount == 0 ? Long.MIN_VALUE : other.max);
+            return new Snapshot(layout, merged, mergedMin, mergedMax);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + totalCount
+                + " min=" + min
+                + " p50=" + valueAtPercentile(50)
+                + " p90=" + valueAtPercentile(90)
+                + " p99=" + valueAtPercentile(99)
+                + " p999=" + valueAtPercentile(99.9)
+                + " max=" + max + " (ns)";
+        }
+    }
+
+    private final Layout layout;
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private volatile Counts active;
+    private Counts inactive;
+
+    /**
+     * 上限 1 小时，2 位有效数字（相对误差 1%）
+     */
+    public LatencyHistogram() {
+        this(new TimeDelta().hours(1), 2);
+    }
+
+    /**
+     * @param highestTrackable 可记录的最大值，更大的值按它记录
+     * @param significantDigits 有效数字，1 到 5；每多一位内存大约增加 10 倍
+     */
+    public LatencyHistogram(TimeDelta highestTrackable, int significantDigits) {
+        long highest = highestTrackable.toTimeUnit(TimeUnit.NANOSECONDS);
+        if (highest < 2) {
+            throw new IllegalArgumentException("highestTrackable must be at least 2ns: " + highestTrackable);
+        }
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be in [1, 5]: " + significantDigits);
+        }
+        this.layout = new Layout(highest, significantDigits);
+        this.active = new Counts(layout.length);
+        this.inactive = new Counts(layout.length);
+    }
+
+    /**
+     * 记录一个值
+     *
+     * @param nanos 纳秒数
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, layout.highestTrackable);
+        int index = layout.indexOf(value);
+        long enter = phaser.writerEnter();
+        try {
+            active.record(value, index);
+        } finally {
+            phaser.writerExit(enter);
+        }
+    }
+
+    /**
+     * @see #record(long)
+     */
+    public void record(TimeDelta delta) {
+        record(delta.toTimeUnit(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * 记录从 startNanos（{@link System#nanoTime()} 的返回值）到现在的耗时
+     *
+     * @param startNanos 开始时的 System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 取出自上次调用（或 {@link #reset()}）以来的数据并清空。
+     * 与记录并发进行时，每个样本恰好进入某一次快照。
+     *
+     * @return 这段时间的快照
+     */
+    public Snapshot intervalSnapshot() {
+        phaser.readerLock();
+        try {
+            Counts previous = swap();
+            Snapshot snapshot = Snapshot.of(layout, previous);
+            previous.reset();
+            return snapshot;
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    /**
+     * 复制当前这一段的数据但不清空。复制期间到达的样本可能只有一部分被计入。
+     *
+     * @return 当前数据的快照
+     */
+    public Snapshot snapshot() {
+        return Snapshot.of(layout, active);
+    }
+
+    /**
+     * 清空数据，与记录并发时新到达的样本不受影响
+     */
+    public void reset() {
+        phaser.readerLock();
+        try {
+            swap().reset();
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    /**
+     * 交换两组计数并等待旧的一组上的写者退出，调用前必须持有读者锁
+     */
+    private Counts swap() {
+        Counts previous = active;
+        active = inactive;
+        phaser.flipPhase();
+        inactive = previous;
+        return previous;
+    }
+}
@@ -0,0 +1,87 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+
+/**
+ * 手动推进的时钟，用于测试依赖时间的组件而不需要真的等待。线程安全。
+ * <p>
+ * 示例：
+ * <pre>
+ * ManualClock clock = new ManualClock();
+ * TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, new TimeDelta().seconds(1), 1, TimingWheel.shared(), clock);
+ * limiter.tryAcquire();                        // true
+ * limiter.tryAcquire();                        // false
+ * clock.advance(new TimeDelta().seconds(1));
+ * limiter.tryAcquire();                        // true
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class ManualClock implements IClock {
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong millis;
+
+    /**
+     * 单调时间从 0 开始，墙上时间从当前时间开始
+     */
+    public ManualClock() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param wallMillis 初始的墙上时间
+     */
+    public ManualClock(long wallMillis) {
+        this.millis = new AtomicLong(wallMillis);
+    }
+
+    /**
+     * 同时推进单调时间和墙上时间
+     *
+     * @param delta 推进的时间，不能为负
+     * @return 当前 ManualClock 对象
+     */
+    public ManualClock advance(TimeDelta delta) {
+        return advance(delta.toTimeUnit(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @see #advance(TimeDelta)
+     */
+    public ManualClock advance(long amount, TimeUnit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("a monotonic clock cannot go backwards: " + amount);
+        }
+        long advanced = nanos.addAndGet(unit.toNanos(amount));
+        // 墙上时间按累计的纳秒换算，避免多次推进不足 1 毫秒时丢失
+        millis.addAndGet(TimeUnit.NANOSECONDS.toMillis(advanced) - TimeUnit.NANOSECONDS.toMillis(advanced - unit.toNanos(amount)));
+        return this;
+    }
+
+    /**
+     * 只修改墙上时间，可以往回拨，用于模拟系统时间被调整
+     *
+     * @param wallMillis 新的墙上时间
+     */
+    public void setCurrentTimeMillis(long wallMillis) {
+        millis.set(wallMillis);
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ManualClock(" + nanos.get() + "ns)";
+    }
+}
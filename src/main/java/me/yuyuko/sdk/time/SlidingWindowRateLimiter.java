@@ -0,0 +1,166 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+import me.yuyuko.sdk.interfaces.time.IRateLimiter;
+
+/**
+ * 滑动窗口限流器：任意一个窗口长度的时间内最多放行 limit 个许可。
+ * <p>
+ * 使用滑动窗口计数的近似算法：当前窗口的计数加上前一个窗口的计数乘以它仍在滑动窗口内的比例。
+ * 窗口编号的低 24 位、前一窗口计数和当前窗口计数各 20 位打包在一个 long 中用 CAS 更新，
+ * {@link #tryAcquire(int)} 从不加锁。因此 limit 不能超过 1048575。
+ * <p>
+ * {@link #acquireAsync(int)} 在许可不足时计算还需等待的时间，由时间轮到时重试，不会让线程睡眠。
+ *
+ * @author castorice (遐蝶)
+ */
+public final class SlidingWindowRateLimiter implements IRateLimiter {
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int WINDOW_SHIFT = 2 * COUNT_BITS;
+    private static final long WINDOW_MASK = (1L << (64 - WINDOW_SHIFT)) - 1;
+
+    /**
+     * limit 的最大值
+     */
+    public static final int MAX_LIMIT = (int) COUNT_MASK;
+
+    private final int limit;
+    private final long windowNanos;
+    private final long startTime;
+    private final TimingWheel timer;
+    private final IClock clock;
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * 异步等待使用 {@link TimingWheel#shared()}
+     *
+     * @param limit 每个窗口的许可数
+     * @param window 窗口长度
+     */
+    public SlidingWindowRateLimiter(int limit, TimeDelta window) {
+        this(limit, window, TimingWheel.shared());
+    }
+
+    /**
+     * @param limit 每个窗口的许可数，不超过 {@link #MAX_LIMIT}
+     * @param window 窗口长度
+     * @param timer 用于重试 {@link #acquireAsync(int)} 的时间轮
+     */
+    public SlidingWindowRateLimiter(int limit, TimeDelta window, TimingWheel timer) {
+        this(limit, window, timer, SystemClock.INSTANCE);
+    }
+
+    /**
+     * @param limit 每个窗口的许可数，不超过 {@link #MAX_LIMIT}
+     * @param window 窗口长度
+     * @param timer 用于重试 {@link #acquireAsync(int)} 的时间轮
+     * @param clock 时间来源，例如 {@link CoarseClock} 或测试用的 {@link ManualClock}
+     */
+    public SlidingWindowRateLimiter(int limit, TimeDelta window, TimingWheel timer, IClock clock) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be in [1, " + MAX_LIMIT + "]: " + limit);
+        }
+        long nanos = window.toTimeUnit(TimeUnit.NANOSECONDS);
+        if (nanos <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        if (timer == null) {
+            throw new NullPointerException("timer");
+        }
+        if (clock == null) {
+            throw new NullPointerException("clock");
+        }
+        this.limit = limit;
+        this.windowNanos = nanos;
+        this.timer = timer;
+        this.clock = clock;
+        this.startTime = clock.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return acquireOrWait(checkPermits(permits)) == 0;
+    }
+
+    @Override
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        attempt(future, checkPermits(permits));
+        return future;
+    }
+
+    private void attempt(CompletableFuture<Void> future, int permits) {
+        if (future.isDone()) return;
+        long wait = acquireOrWait(permits);
+        if (wait == 0) {
+            future.complete(null);
+        } else {
+            timer.schedule(() -> attempt(future, permits), wait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 尝试获取许可
+     *
+     * @return 成功时为 0，否则为估计还需等待的纳秒数（至少为 1）
+     */
+    private long acquireOrWait(int permits) {
+        while (true) {
+            long now = clock.nanoTime() - startTime;
+            long windowIndex = now / windowNanos;
+            long elapsed = now - windowIndex * windowNanos;
+            long current = state.get();
+            long storedWindow = current >>> WINDOW_SHIFT;
+            long previous = (current >>> COUNT_BITS) & COUNT_MASK;
+            long count = current & COUNT_MASK;
+            long window = windowIndex & WINDOW_MASK;
+            if (storedWindow != window) {
+                previous = ((storedWindow + 1) & WINDOW_MASK) == window ? count : 0;
+                count = 0;
+            }
+            // 前一个窗口仍在滑动窗口内的比例
+            double weight = (double) (windowNanos - elapsed) / windowNanos;
+            double estimated = previous * weight + count;
+            if (estimated + permits > limit) {
+                return waitNanos(previous, count, permits, elapsed);
+            }
+            long next = (window << WINDOW_SHIFT) | (previous << COUNT_BITS) | (count + permits);
+            if (state.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private long waitNanos(long previous, long count, int permits, long elapsed) {
+        double wait;
+        if (count + permits > limit) {
+            // 当前窗口已经放不下，等到下一个窗口里它的计数衰减到足够小
+            double fraction = 1 - (double) (limit - permits) / count;
+            wait = (windowNanos - elapsed) + fraction * windowNanos;
+        } else {
+            // 等前一个窗口的权重衰减到足够小
+            double fraction = 1 - (double) (limit - count - permits) / previous;
+            wait = fraction * windowNanos - elapsed;
+        }
+        return Math.max(1, (long) Math.ceil(wait));
+    }
+
+    /**
+     * @return 每个窗口的许可数
+     */
+    public int limit() {
+        return limit;
+    }
+
+    private int checkPermits(int permits) {
+        if (permits <= 0 || permits > limit) {
+            throw new IllegalArgumentException("permits must be in [1, " + limit + "]: " + permits);
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,153 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.TimeUnit;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+
+/**
+ * 秒表，用来测量一段代码的耗时，默认使用 {@link System#nanoTime()}，也可以指定其他 {@link IClock}。
+ * <p>
+ * 可以多次启动和停止，耗时会累加。不是线程安全的，每个测量各用一个实例。
+ * <p>
+ * 示例：
+ * <pre>
+ * Stopwatch sw = Stopwatch.createStarted();
+ * ws.send(message, true);
+ * histogram.record(sw.elapsedNanos());
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class Stopwatch {
+    private final IClock clock;
+    private boolean running;
+    private long elapsedNanos;
+    private long startTick;
+
+    private Stopwatch(IClock clock) {
+        if (clock == null) {
+            throw new NullPointerException("clock");
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * @return 一个已经开始计时的秒表
+     */
+    public static Stopwatch createStarted() {
+        return createStarted(SystemClock.INSTANCE);
+    }
+
+    /**
+     * @param clock 时间来源
+     * @return 一个已经开始计时的秒表
+     */
+    public static Stopwatch createStarted(IClock clock) {
+        return new Stopwatch(clock).start();
+    }
+
+    /**
+     * @return 一个尚未开始计时的秒表
+     */
+    public static Stopwatch createUnstarted() {
+        return createUnstarted(SystemClock.INSTANCE);
+    }
+
+    /**
+     * @param clock 时间来源
+     * @return 一个尚未开始计时的秒表
+     */
+    public static Stopwatch createUnstarted(IClock clock) {
+        return new Stopwatch(clock);
+    }
+
+    /**
+     * 开始计时
+     *
+     * @return 当前 Stopwatch 对象
+     * @throws IllegalStateException 已经在计时
+     */
+    public Stopwatch start() {
+        if (running) {
+            throw new IllegalStateException("stopwatch is already running");
+        }
+        running = true;
+        startTick = clock.nanoTime();
+        return this;
+    }
+
+    /**
+     * 停止计时，保留已经累计的耗时
+     *
+     * @return 当前 Stopwatch 对象
+     * @throws IllegalStateException 没有在计时
+     */
+    public Stopwatch stop() {
+        long now = clock.nanoTime();
+        if (!running) {
+            throw new IllegalStateException("stopwatch is already stopped");
+        }
+        running = false;
+        elapsedNanos += now - startTick;
+        return this;
+    }
+
+    /**
+     * 清零并停止计时
+     *
+     * @return 当前 Stopwatch 对象
+     */
+    public Stopwatch reset() {
+        running = false;
+        elapsedNanos = 0;
+        return this;
+    }
+
+    /**
+     * 返回到目前为止的耗时，然后清零并重新开始计时，适合测量连续的多段
+     *
+     * @return 本段的纳秒数
+     */
+    public long lap() {
+        long now = clock.nanoTime();
+        long elapsed = running ? elapsedNanos + (now - startTick) : elapsedNanos;
+        elapsedNanos = 0;
+        running = true;
+        startTick = now;
+        return elapsed;
+    }
+
+    /**
+     * @return 是否正在计时
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return 累计的纳秒数
+     */
+    public long elapsedNanos() {
+        return running ? elapsedNanos + (clock.nanoTime() - startTick) : elapsedNanos;
+    }
+
+    /**
+     * @param unit 目标时间单位
+     * @return 累计的耗时，向零取整
+     */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 累计的耗时
+     */
+    public TimeDelta elapsed() {
+        return new TimeDelta().nanos(elapsedNanos());
+    }
+
+    @Override
+    public String toString() {
+        return elapsed().toString();
+    }
+}
@@ -0,0 +1,31 @@
+package me.yuyuko.sdk.time;
+
+import me.yuyuko.sdk.interfaces.time.IClock;
+
+/**
+ * 精确时钟，直接调用 {@link System#nanoTime()} 和 {@link System#currentTimeMillis()}
+ * @author castorice (遐蝶)
+ */
+public final class SystemClock implements IClock {
+    /**
+     * 唯一的实例
+     */
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {}
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "SystemClock";
+    }
+}
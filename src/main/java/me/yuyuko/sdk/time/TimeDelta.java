@@ -1,9 +1,13 @@
 package me.yuyuko.sdk.time;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
+import me.yuyuko.sdk.exceptions.time.TimeDeltaParseException;
+
 /**
  * 一个用于表示时间间隔的类，提供多种时间单位的设置和运算方法。
  * <p>
@@ -38,6 +42,30 @@ public class TimeDelta implements Comparable<TimeDelta>, Serializable, Cloneable
         this.duration = duration;
     }
 
+    /**
+     * 解析时间间隔，支持紧凑写法（1h30m、250ms、-1.5s）和 ISO-8601（PT5S、P1DT2H）。
+     * 常见的字符串会被缓存，但每次都返回新的 TimeDelta 对象。
+     *
+     * @param text 要解析的文本，首尾空白会被忽略
+     * @return 新的 TimeDelta 对象
+     * @throws TimeDeltaParseException 格式错误或超出 long 纳秒的范围时抛出
+     */
+    public static TimeDelta parse(CharSequence text) throws TimeDeltaParseException {
+        return new TimeDelta(TimeDeltaFormat.parse(text));
+    }
+
+    /**
+     * 从 ByteBuffer 的 position 到 limit 之间的 ASCII 字节解析，不改变 position。
+     *
+     * @param bytes 要解析的字节
+     * @return 新的 TimeDelta 对象
+     * @throws TimeDeltaParseException 格式错误或超出 long 纳秒的范围时抛出
+     * @see #parse(CharSequence)
+     */
+    public static TimeDelta parse(ByteBuffer bytes) throws TimeDeltaParseException {
+        return new TimeDelta(TimeDeltaFormat.parse(bytes));
+    }
+
     /**
      * 添加纳秒到当前时间间隔。
      *
@@ -162,24 +190,41 @@ public class TimeDelta implements Comparable<TimeDelta>, Serializable, Cloneable
      * @return 转换后的时间间隔值
      */
     public long toTimeUnit(TimeUnit unit) {
-        switch (unit) {
-            case NANOSECONDS:
-                return duration.toNanos();
-            case MICROSECONDS:
-                return duration.toNanos() / 1_000;
-            case MILLISECONDS:
-                return duration.toMillis();
-            case SECONDS:
-                return duration.getSeconds();
-            case MINUTES:
-                return duration.toMinutes();
-            case HOURS:
-                return duration.toHours();
-            case DAYS:
-                return duration.toDays();
-            default:
-                throw new IllegalArgumentException("Unsupported TimeUnit: " + unit);
+        // 超出 long 范围时饱和，不会因为先转成纳秒而溢出
+        return unit.convert(duration);
+    }
+
+    /**
+     * 转换为不可变的 {@link TimeSpan}，超出范围时饱和。
+     *
+     * @return 等值的 TimeSpan
+     */
+    public TimeSpan toTimeSpan() {
+        return TimeSpan.from(duration);
+    }
+
+    /**
+     * 以紧凑写法输出，例如 1d2h30m、250ms，结果可以被 {@link #parse(CharSequence)} 解析回来。
+     *
+     * @param out 输出目标
+     * @throws IOException 写入 out 失败时抛出
+     */
+    public void format(Appendable out) throws IOException {
+        TimeDeltaFormat.format(duration, out);
+    }
+
+    /**
+     * @return 紧凑写法的字符串
+     * @see #format(Appendable)
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder(16);
+        try {
+            TimeDeltaFormat.format(duration, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
         }
+        return sb.toString();
     }
 
     @Override
@@ -189,7 +234,7 @@ public class TimeDelta implements Comparable<TimeDelta>, Serializable, Cloneable
 
     @Override
     public int compareTo(TimeDelta other) {
-        return Long.compare(this.toMillis(), other.toMillis());
+        return this.duration.compareTo(other.duration);
     }
 
     /**
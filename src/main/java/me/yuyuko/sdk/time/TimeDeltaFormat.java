@@ -0,0 +1,393 @@
+package me.yuyuko.sdk.time;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import me.yuyuko.sdk.exceptions.time.TimeDeltaParseException;
+
+/**
+ * TimeDelta 的文本解析和格式化。
+ * <p>
+ * 解析是一趟扫描，不使用正则，也不截取子串，支持两种写法：
+ * <ul>
+ *   <li>紧凑写法：{@code 1h30m}、{@code 250ms}、{@code -1.5s}、{@code 2d 12h}，
+ *       单位为 ns、us（或 µs）、ms、s、m、h、d、w，单独的 {@code 0} 也可以</li>
+ *   <li>ISO-8601：{@code PT5S}、{@code P1DT2H}、{@code P2W}，字母不区分大小写</li>
+ * </ul>
+ * 结果必须能用 long 纳秒表示（约 ±292 年）。重复出现的短字符串由一个直接映射的小缓存直接返回。
+ * @author castorice (遐蝶)
+ */
+final class TimeDeltaFormat {
+    private static final long NANOS_PER_MICRO = 1_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MINUTE = 60 * NANOS_PER_SECOND;
+    private static final long NANOS_PER_HOUR = 60 * NANOS_PER_MINUTE;
+    private static final long NANOS_PER_DAY = 24 * NANOS_PER_HOUR;
+    private static final long NANOS_PER_WEEK = 7 * NANOS_PER_DAY;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    // 小数部分最多取 9 位，更多的位被忽略
+    private static final long MAX_FRACTION_SCALE = 1_000_000_000L;
+
+    private static final int CACHE_SIZE = 256;
+    private static final int MAX_CACHED_LENGTH = 32;
+
+    /**
+     * 缓存项，字段都是 final，所以不加锁地读写数组也是安全的
+     */
+    private static final class Entry {
+        final String text;
+        final Duration value;
+
+        Entry(String text, Duration value) {
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    private static final Entry[] cache = new Entry[CACHE_SIZE];
+
+    /**
+     * 把 ByteBuffer 中 position 到 limit 的 ASCII 字节当作字符序列读取，不复制
+     */
+    private static final class AsciiView implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        AsciiView(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiView(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(length).append(this).toString();
+        }
+    }
+
+    private TimeDeltaFormat() {}
+
+    static Duration parse(ByteBuffer bytes) throws TimeDeltaParseException {
+        return parse(new AsciiView(bytes, bytes.position(), bytes.remaining()));
+    }
+
+    static Duration parse(CharSequence text) throws TimeDeltaParseException {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        if (start == end) {
+            throw new TimeDeltaParseException("时间间隔不能为空", start);
+        }
+        int slot = -1;
+        if (end - start <= MAX_CACHED_LENGTH) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            slot = (h ^ (h >>> 16)) & (CACHE_SIZE - 1);
+            Entry entry = cache[slot];
+            if (entry != null && matches(entry.text, text, start, end)) {
+                return entry.value;
+            }
+        }
+        Duration value = Duration.ofNanos(parseNanos(text, start, end));
+        if (slot >= 0) {
+            cache[slot] = new Entry(new StringBuilder(end - start).append(text, start, end).toString(), value);
+        }
+        return value;
+    }
+
+    private static boolean matches(String key, CharSequence text, int start, int end) {
+        if (key.length() != end - start) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private static long parseNanos(CharSequence text, int start, int end) throws TimeDeltaParseException {
+        int i = start;
+        boolean negative = false;
+        char c = text.charAt(i);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            i++;
+        }
+        long nanos;
+        if (i < end && (text.charAt(i) == 'P' || text.charAt(i) == 'p')) {
+            nanos = parseIso(text, i + 1, end);
+        } else {
+            nanos = parseCompact(text, i, end);
+        }
+        return negative ? -nanos : nanos;
+    }
+
+    /**
+     * 解析 1h30m 这样的紧凑写法
+     */
+    private static long parseCompact(CharSequence text, int i, int end) throws TimeDeltaParseException {
+        if (i == end) {
+            throw new TimeDeltaParseException("缺少数值", i);
+        }
+        // 单独的 0 不需要单位
+        if (end - i == 1 && text.charAt(i) == '0') {
+            return 0;
+        }
+        long total = 0;
+        while (i < end) {
+            int numberStart = i;
+            long value = 0;
+            while (i < end && isDigit(text.charAt(i))) {
+                value = appendDigit(value, text.charAt(i), numberStart);
+                i++;
+            }
+            long fraction = 0;
+            long scale = 1;
+            boolean hasDigits = i > numberStart;
+            if (i < end && text.charAt(i) == '.') {
+                i++;
+                while (i < end && isDigit(text.charAt(i))) {
+                    if (scale < MAX_FRACTION_SCALE) {
+                        fraction = fraction * 10 + (text.charAt(i) - '0');
+                        scale *= 10;
+                    }
+                    hasDigits = true;
+                    i++;
+                }
+            }
+            if (!hasDigits) {
+                throw new TimeDeltaParseException("在位置 " + numberStart + " 需要数字", numberStart);
+            }
+            while (i < end && text.charAt(i) == ' ') i++;
+            int unitStart = i;
+            while (i < end && isUnitChar(text.charAt(i))) i++;
+            long unit = compactUnit(text, unitStart, i);
+            total = addComponent(total, value, fraction, scale, unit, numberStart);
+            while (i < end && text.charAt(i) == ' ') i++;
+        }
+        return total;
+    }
+
+    private static long compactUnit(CharSequence text, int start, int end) throws TimeDeltaParseException {
+        char first = start < end ? text.charAt(start) : 0;
+        if (end - start == 1) {
+            switch (first) {
+                case 's': return NANOS_PER_SECOND;
+                case 'm': return NANOS_PER_MINUTE;
+                case 'h': return NANOS_PER_HOUR;
+                case 'd': return NANOS_PER_DAY;
+                case 'w': return NANOS_PER_WEEK;
+                default: break;
+            }
+        } else if (end - start == 2 && text.charAt(start + 1) == 's') {
+            switch (first) {
+                case 'n': return 1;
+                case 'u':
+                case 'µ':
+                case 'μ':
+                    return NANOS_PER_MICRO;
+                case 'm': return NANOS_PER_MILLI;
+                default: break;
+            }
+        }
+        if (start == end) {
+            throw new TimeDeltaParseException("在位置 " + start + " 缺少单位", start);
+        }
+        throw new TimeDeltaParseException("在位置 " + start + " 有未知的单位，可用的单位为 ns, us, ms, s, m, h, d, w", start);
+    }
+
+    /**
+     * 解析 ISO-8601 中 P 之后的部分，例如 1DT2H3M4.5S
+     */
+    private static long parseIso(CharSequence text, int i, int end) throws TimeDeltaParseException {
+        long total = 0;
+        boolean inTime = false;
+        boolean any = false;
+        boolean anyInTime = false;
+        int lastRank = -1;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == 'T' || c == 't') {
+                if (inTime) {
+                    throw new TimeDeltaParseException("在位置 " + i + " 重复的 T", i);
+                }
+                inTime = true;
+                i++;
+                continue;
+            }
+            int numberStart = i;
+            boolean negative = false;
+            if (c == '+' || c == '-') {
+                negative = c == '-';
+                i++;
+            }
+            int digitsStart = i;
+            long value = 0;
+            while (i < end && isDigit(text.charAt(i))) {
+                value = appendDigit(value, text.charAt(i), numberStart);
+                i++;
+            }
+            if (i == digitsStart) {
+                throw new TimeDeltaParseException("在位置 " + digitsStart + " 需要数字", digitsStart);
+            }
+            long fraction = 0;
+            long scale = 1;
+            if (i < end && (text.charAt(i) == '.' || text.charAt(i) == ',')) {
+                i++;
+                while (i < end && isDigit(text.charAt(i))) {
+                    if (scale < MAX_FRACTION_SCALE) {
+                        fraction = fraction * 10 + (text.charAt(i) - '0');
+                        scale *= 10;
+                    }
+                    i++;
+                }
+            }
+            if (i == end) {
+                throw new TimeDeltaParseException("在位置 " + i + " 缺少单位", i);
+            }
+            char designator = Character.toUpperCase(text.charAt(i));
+            int rank;
+            long unit;
+            if (!inTime && designator == 'W') {
+                rank = 0;
+                unit = NANOS_PER_WEEK;
+            } else if (!inTime && designator == 'D') {
+                rank = 1;
+                unit = NANOS_PER_DAY;
+            } else if (inTime && designator == 'H') {
+                rank = 2;
+                unit = NANOS_PER_HOUR;
+            } else if (inTime && designator == 'M') {
+                rank = 3;
+                unit = NANOS_PER_MINUTE;
+            } else if (inTime && designator == 'S') {
+                rank = 4;
+                unit = NANOS_PER_SECOND;
+            } else {
+                throw new TimeDeltaParseException("在位置 " + i + " 有无效的单位 '" + text.charAt(i) + "'，不支持年和月", i);
+            }
+            if (rank <= lastRank) {
+                throw new TimeDeltaParseException("在位置 " + i + " 的单位顺序错误", i);
+            }
+            lastRank = rank;
+            i++;
+            long component = addComponent(0, value, fraction, scale, unit, numberStart);
+            total = add(total, negative ? -component : component, numberStart);
+            any = true;
+            anyInTime |= inTime;
+        }
+        if (!any || (inTime && !anyInTime)) {
+            throw new TimeDeltaParseException("ISO-8601 时间间隔缺少内容", end);
+        }
+        return total;
+    }
+
+    /**
+     * total + (value + fraction / scale) * unit，溢出时抛出异常
+     */
+    private static long addComponent(long total, long value, long fraction, long scale, long unit, int index)
+            throws TimeDeltaParseException {
+        long whole = value * unit;
+        if (Math.multiplyHigh(value, unit) != 0 || whole < 0) {
+            throw overflow(index);
+        }
+        // 先除后乘，fraction < scale <= 10^9，不会溢出
+        long part = unit / scale * fraction + unit % scale * fraction / scale;
+        return add(add(total, whole, index), part, index);
+    }
+
+    private static long add(long a, long b, int index) throws TimeDeltaParseException {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) {
+            throw overflow(index);
+        }
+        return r;
+    }
+
+    private static long appendDigit(long value, char digit, int index) throws TimeDeltaParseException {
+        int d = digit - '0';
+        if (value > (Long.MAX_VALUE - d) / 10) {
+            throw overflow(index);
+        }
+        return value * 10 + d;
+    }
+
+    private static TimeDeltaParseException overflow(int index) {
+        return new TimeDeltaParseException("在位置 " + index + " 的数值超出范围（约 ±292 年）", index);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUnitChar(char c) {
+        return (c >= 'a' && c <= 'z') || c == 'µ' || c == 'μ';
+    }
+
+    /**
+     * 以紧凑写法输出，例如 1d2h3m4s5ms，零输出为 0s。输出可以被 {@link #parse(CharSequence)} 解析回来。
+     */
+    static void format(Duration duration, Appendable out) throws IOException {
+        long seconds = duration.getSeconds();
+        int nano = duration.getNano();
+        if (seconds == 0 && nano == 0) {
+            out.append("0s");
+            return;
+        }
+        if (seconds < 0) {
+            out.append('-');
+            // 取绝对值，结果按无符号数处理，所以 Long.MIN_VALUE 秒也不会出错
+            if (nano > 0) {
+                seconds = -(seconds + 1);
+                nano = (int) NANOS_PER_SECOND - nano;
+            } else {
+                seconds = -seconds;
+            }
+        }
+        long days = Long.divideUnsigned(seconds, SECONDS_PER_DAY);
+        long rest = Long.remainderUnsigned(seconds, SECONDS_PER_DAY);
+        appendPart(out, days, "d");
+        appendPart(out, rest / 3600, "h");
+        appendPart(out, rest / 60 % 60, "m");
+        appendPart(out, rest % 60, "s");
+        appendPart(out, nano / NANOS_PER_MILLI, "ms");
+        appendPart(out, nano / NANOS_PER_MICRO % 1000, "us");
+        appendPart(out, nano % 1000, "ns");
+    }
+
+    private static void appendPart(Appendable out, long value, String unit) throws IOException {
+        if (value == 0) return;
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+        } else {
+            long divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                out.append((char) ('0' + value / divisor % 10));
+            }
+        }
+        out.append(unit);
+    }
+}
@@ -0,0 +1,410 @@
+package me.yuyuko.sdk.time;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 long 纳秒表示的不可变时间间隔，适合超时、调度这类热点路径。
+ * <p>
+ * 与 {@link TimeDelta} 的链式写法相同，但每一步都返回新的值而不修改自身；
+ * 所有运算在溢出时饱和到 {@link #MAX} / {@link #MIN}，不会抛出异常。
+ * 换算和比较不分配对象，零、整毫秒和整秒等常见值返回缓存的实例。
+ * 可表示的范围约为 ±292 年。
+ * <p>
+ * 示例：
+ * <pre>
+ * TimeSpan timeout = TimeSpan.ZERO.seconds(5).milliseconds(500);
+ * long micros = timeout.toTimeUnit(TimeUnit.MICROSECONDS);  // 5500000
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class TimeSpan implements Comparable<TimeSpan>, Serializable {
+    @java.io.Serial
+    private static final long serialVersionUID = 4106373546131925930L;
+
+    private static final long NANOS_PER_MICRO = 1_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MINUTE = 60 * NANOS_PER_SECOND;
+    private static final long NANOS_PER_HOUR = 60 * NANOS_PER_MINUTE;
+    private static final long NANOS_PER_DAY = 24 * NANOS_PER_HOUR;
+
+    // 0..1000 毫秒和 0..600 秒的整数值预先创建
+    private static final int CACHED_MILLIS = 1000;
+    private static final int CACHED_SECONDS = 600;
+    private static final TimeSpan[] MILLIS_CACHE = new TimeSpan[CACHED_MILLIS + 1];
+    private static final TimeSpan[] SECONDS_CACHE = new TimeSpan[CACHED_SECONDS + 1];
+
+    static {
+        for (int i = 0; i <= CACHED_MILLIS; i++) {
+            MILLIS_CACHE[i] = new TimeSpan(i * NANOS_PER_MILLI);
+        }
+        SECONDS_CACHE[0] = MILLIS_CACHE[0];
+        SECONDS_CACHE[1] = MILLIS_CACHE[CACHED_MILLIS];
+        for (int i = 2; i <= CACHED_SECONDS; i++) {
+            SECONDS_CACHE[i] = new TimeSpan(i * NANOS_PER_SECOND);
+        }
+    }
+
+    /**
+     * 零
+     */
+    public static final TimeSpan ZERO = MILLIS_CACHE[0];
+    /**
+     * 可表示的最大值，正向溢出时饱和到它
+     */
+    public static final TimeSpan MAX = new TimeSpan(Long.MAX_VALUE);
+    /**
+     * 可表示的最小值，负向溢出时饱和到它
+     */
+    public static final TimeSpan MIN = new TimeSpan(Long.MIN_VALUE);
+
+    private final long nanos;
+
+    private TimeSpan(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * 获取表示 nanos 纳秒的实例，常见值返回缓存
+     *
+     * @param nanos 纳秒数
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan ofNanos(long nanos) {
+        if (nanos >= 0 && nanos % NANOS_PER_MILLI == 0) {
+            long millis = nanos / NANOS_PER_MILLI;
+            if (millis <= CACHED_MILLIS) {
+                return MILLIS_CACHE[(int) millis];
+            }
+            if (millis % 1000 == 0 && millis / 1000 <= CACHED_SECONDS) {
+                return SECONDS_CACHE[(int) (millis / 1000)];
+            }
+        }
+        if (nanos == Long.MAX_VALUE) return MAX;
+        if (nanos == Long.MIN_VALUE) return MIN;
+        return new TimeSpan(nanos);
+    }
+
+    /**
+     * @param millis 毫秒数，溢出时饱和
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan ofMillis(long millis) {
+        return ofNanos(saturatedMultiply(millis, NANOS_PER_MILLI));
+    }
+
+    /**
+     * @param seconds 秒数，溢出时饱和
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan ofSeconds(long seconds) {
+        return ofNanos(saturatedMultiply(seconds, NANOS_PER_SECOND));
+    }
+
+    /**
+     * @param amount 数量，溢出时饱和
+     * @param unit 单位
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan of(long amount, TimeUnit unit) {
+        return ofNanos(unit.toNanos(amount));
+    }
+
+    /**
+     * 从 Duration 转换，超出范围时饱和
+     *
+     * @param duration 原生 Duration
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan from(Duration duration) {
+        return ofNanos(saturatedNanos(duration));
+    }
+
+    /**
+     * 从 TimeDelta 转换，超出范围时饱和
+     *
+     * @param delta TimeDelta 对象
+     * @return 对应的 TimeSpan
+     */
+    public static TimeSpan from(TimeDelta delta) {
+        return from(delta.getDuration());
+    }
+
+    /**
+     * 添加纳秒。
+     *
+     * @param nanos 纳秒数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan nanos(long nanos) {
+        return plusNanos(nanos);
+    }
+
+    /**
+     * 添加微秒。
+     *
+     * @param micros 微秒数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan micros(long micros) {
+        return plusNanos(saturatedMultiply(micros, NANOS_PER_MICRO));
+    }
+
+    /**
+     * 添加毫秒。
+     *
+     * @param milliseconds 毫秒数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan milliseconds(long milliseconds) {
+        return plusNanos(saturatedMultiply(milliseconds, NANOS_PER_MILLI));
+    }
+
+    /**
+     * 添加秒。
+     *
+     * @param seconds 秒数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan seconds(long seconds) {
+        return plusNanos(saturatedMultiply(seconds, NANOS_PER_SECOND));
+    }
+
+    /**
+     * 添加分钟。
+     *
+     * @param minutes 分钟数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan minutes(long minutes) {
+        return plusNanos(saturatedMultiply(minutes, NANOS_PER_MINUTE));
+    }
+
+    /**
+     * 添加小时。
+     *
+     * @param hours 小时数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan hours(long hours) {
+        return plusNanos(saturatedMultiply(hours, NANOS_PER_HOUR));
+    }
+
+    /**
+     * 添加天数。
+     *
+     * @param days 天数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan days(long days) {
+        return plusNanos(saturatedMultiply(days, NANOS_PER_DAY));
+    }
+
+    /**
+     * 添加周数。
+     *
+     * @param weeks 周数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan weeks(long weeks) {
+        return plusNanos(saturatedMultiply(weeks, 7 * NANOS_PER_DAY));
+    }
+
+    /**
+     * 添加月数，与 {@link TimeDelta#months(long)} 一样按每月 30 天计算。
+     *
+     * @param months 月数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan months(long months) {
+        return plusNanos(saturatedMultiply(months, 30 * NANOS_PER_DAY));
+    }
+
+    /**
+     * 添加年数，与 {@link TimeDelta#years(long)} 一样按每年 365 天计算。
+     *
+     * @param years 年数
+     * @return 新的 TimeSpan
+     */
+    public TimeSpan years(long years) {
+        return plusNanos(saturatedMultiply(years, 365 * NANOS_PER_DAY));
+    }
+
+    /**
+     * @param other 另一个时间间隔
+     * @return 两者之和，溢出时饱和
+     */
+    public TimeSpan plus(TimeSpan other) {
+        return plusNanos(other.nanos);
+    }
+
+    /**
+     * @param other 另一个时间间隔
+     * @return 两者之差，溢出时饱和
+     */
+    public TimeSpan minus(TimeSpan other) {
+        if (other.nanos == Long.MIN_VALUE) {
+            // -MIN 无法表示，拆成加 MAX 再加 1
+            return ofNanos(saturatedAdd(saturatedAdd(nanos, Long.MAX_VALUE), 1));
+        }
+        return plusNanos(-other.nanos);
+    }
+
+    /**
+     * @param factor 乘数
+     * @return 乘法结果，溢出时饱和
+     */
+    public TimeSpan multiply(long factor) {
+        if (factor == 1) return this;
+        return ofNanos(saturatedMultiply(nanos, factor));
+    }
+
+    /**
+     * 除法，结果向零取整。
+     *
+     * @param divisor 除数
+     * @return 除法结果
+     * @throws ArithmeticException 如果除数为零
+     */
+    public TimeSpan divide(long divisor) throws ArithmeticException {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (divisor == 1) return this;
+        if (divisor == -1) return negated();
+        return ofNanos(nanos / divisor);
+    }
+
+    /**
+     * @return 取反后的值，MIN 取反饱和到 MAX
+     */
+    public TimeSpan negated() {
+        return nanos == Long.MIN_VALUE ? MAX : ofNanos(-nanos);
+    }
+
+    /**
+     * @return 绝对值，MIN 的绝对值饱和到 MAX
+     */
+    public TimeSpan abs() {
+        return nanos < 0 ? negated() : this;
+    }
+
+    private TimeSpan plusNanos(long amount) {
+        if (amount == 0) return this;
+        return ofNanos(saturatedAdd(nanos, amount));
+    }
+
+    /**
+     * @return 是否为零
+     */
+    public boolean isZero() {
+        return nanos == 0;
+    }
+
+    /**
+     * @return 是否小于零
+     */
+    public boolean isNegative() {
+        return nanos < 0;
+    }
+
+    /**
+     * @return 纳秒数
+     */
+    public long toNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return 毫秒数，向零取整
+     */
+    public long toMillis() {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * 将时间间隔转换为指定的时间单位，向零取整。
+     *
+     * @param unit 目标时间单位
+     * @return 转换后的时间间隔值
+     */
+    public long toTimeUnit(TimeUnit unit) {
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 等值的 Duration
+     */
+    public Duration toDuration() {
+        return Duration.ofNanos(nanos);
+    }
+
+    /**
+     * @return 等值的新 TimeDelta 对象
+     */
+    public TimeDelta toTimeDelta() {
+        return new TimeDelta().nanos(nanos);
+    }
+
+    @Override
+    public int compareTo(TimeSpan other) {
+        return Long.compare(nanos, other.nanos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeSpan)) return false;
+        return nanos == ((TimeSpan) o).nanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nanos);
+    }
+
+    /**
+     * @return 与 Duration 相同的 ISO-8601 表示，例如 PT1H30M
+     */
+    @Override
+    public String toString() {
+        return toDuration().toString();
+    }
+
+    @java.io.Serial
+    private Object readResolve() {
+        return ofNanos(nanos);
+    }
+
+    static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return r;
+    }
+
+    static long saturatedMultiply(long a, long b) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        if ((hi == 0 && lo >= 0) || (hi == -1 && lo < 0)) {
+            return lo;
+        }
+        return (a ^ b) < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    /**
+     * Duration 转纳秒，超出 long 范围时饱和
+     */
+    static long saturatedNanos(Duration duration) {
+        long seconds = duration.getSeconds();
+        if (seconds >= 0) {
+            return saturatedAdd(saturatedMultiply(seconds, NANOS_PER_SECOND), duration.getNano());
+        }
+        // 负数时先加 1 秒避免中间结果越界，再减回来
+        return saturatedAdd(saturatedMultiply(seconds + 1, NANOS_PER_SECOND), duration.getNano() - NANOS_PER_SECOND);
+    }
+}
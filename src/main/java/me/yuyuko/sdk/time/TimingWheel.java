@@ -0,0 +1,403 @@
+package me.yuyuko.sdk.time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层哈希时间轮，用于同时管理大量超时（连接超时、接收等待、缓存过期、重试退避等）。
+ * <p>
+ * 调度和取消都是 O(1)：调用线程只把任务放进无锁队列，由唯一的驱动线程按 tick 推进时间轮。
+ * 第 0 层的每个槽对应一个 tick，第 k 层的每个槽对应 wheelSize^k 个 tick，
+ * 高层的槽到期时把其中的任务降级到低层。同一个 tick 内到期的任务打包成一批交给 executor 执行，
+ * 所以任务应当很短，需要做重活时请自行转交给别的线程池。
+ * <p>
+ * 触发时间不会早于请求的延迟，最多晚一个 tick 加上调度延迟。
+ * <p>
+ * 示例：
+ * <pre>
+ * TimingWheel.Timeout t = TimingWheel.shared().schedule(() -&gt; future.complete(null), new TimeDelta().seconds(5));
+ * ...
+ * t.cancel();
+ * </pre>
+ *
+ * @author castorice (遐蝶)
+ */
+public final class TimingWheel implements AutoCloseable {
+
+    /**
+     * 一个已调度的任务，可以在到期前取消
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        // 相对于 startTime 的到期 tick，向上取整
+        private final long expiryTick;
+        private volatile int state;
+
+        // 以下字段只由驱动线程访问
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(TimingWheel wheel, Runnable task, long expiryTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.expiryTick = expiryTick;
+        }
+
+        /**
+         * 取消任务。已经到期或已经取消时没有效果。
+         *
+         * @return 本次调用是否取消成功
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * @return 是否已被取消
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * @return 是否已经到期（任务已交给 executor）
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * @return 调度的任务
+         */
+        public Runnable task() {
+            return task;
+        }
+    }
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private final long tickNanos;
+    private final int bits;
+    private final int mask;
+    private final Timeout[][] wheels;
+    private final Executor executor;
+    private final boolean shared;
+    private final long startTime;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread driver;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    // 以下字段只由驱动线程访问
+    private long currentTick;
+    private int live;
+    private List<Runnable> batch = new ArrayList<>();
+
+    /**
+     * 10 毫秒一个 tick，每层 512 个槽，到期任务在 {@link ForkJoinPool#commonPool()} 上执行
+     */
+    public TimingWheel() {
+        this(new TimeDelta().milliseconds(10), 512, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param tick 时间精度，不小于 1 毫秒
+     * @param wheelSize 每层的槽数，向上取整到 2 的幂
+     * @param executor 执行到期任务的线程池
+     */
+    public TimingWheel(TimeDelta tick, int wheelSize, Executor executor) {
+        this(tick, wheelSize, executor, false);
+    }
+
+    private TimingWheel(TimeDelta tick, int wheelSize, Executor executor, boolean shared) {
+        long nanos = tick.toTimeUnit(TimeUnit.NANOSECONDS);
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("tick must be at least 1ms: " + tick);
+        }
+        if (wheelSize < 2 || wheelSize > 1 << 16) {
+            throw new IllegalArgumentException("wheelSize must be in [2, 65536]: " + wheelSize);
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.tickNanos = nanos;
+        this.bits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        this.mask = (1 << bits) - 1;
+        // 层数足够覆盖 63 位的 tick 数
+        this.wheels = new Timeout[(63 + bits - 1) / bits][1 << bits];
+        this.executor = executor;
+        this.shared = shared;
+        this.startTime = System.nanoTime();
+        this.driver = new Thread(this::run, "yuyuko-timing-wheel-" + THREAD_ID.incrementAndGet());
+        this.driver.setDaemon(true);
+        this.driver.start();
+    }
+
+    private static final class SharedHolder {
+        static final TimingWheel INSTANCE =
+            new TimingWheel(new TimeDelta().milliseconds(10), 512, ForkJoinPool.commonPool(), true);
+    }
+
+    /**
+     * 进程内共享的默认时间轮，驱动线程是守护线程，不能被关闭
+     *
+     * @return 共享的时间轮
+     */
+    public static TimingWheel shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * 在 delay 之后执行 task
+     *
+     * @param task 要执行的任务
+     * @param delay 延迟，小于等于零时尽快执行
+     * @return 可以取消的句柄
+     * @throws IllegalStateException 时间轮已关闭
+     */
+    public Timeout schedule(Runnable task, TimeDelta delay) {
+        return schedule(task, delay.toTimeUnit(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @see #schedule(Runnable, TimeDelta)
+     */
+    public Timeout schedule(Runnable task, TimeSpan delay) {
+        return schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @see #schedule(Runnable, TimeDelta)
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (closed) {
+            throw new IllegalStateException("timing wheel is closed");
+        }
+        long deadline = TimeSpan.saturatedAdd(System.nanoTime() - startTime, Math.max(0, unit.toNanos(delay)));
+        // 向上取整，保证不会提前触发
+        long expiryTick = deadline / tickNanos + (deadline % tickNanos == 0 ? 0 : 1);
+        Timeout timeout = new Timeout(this, task, expiryTick);
+        scheduled.add(timeout);
+        if (idle) {
+            LockSupport.unpark(driver);
+        }
+        return timeout;
+    }
+
+    /**
+     * @return tick 的长度
+     */
+    public TimeSpan tick() {
+        return TimeSpan.ofNanos(tickNanos);
+    }
+
+    /**
+     * 停止驱动线程，未到期的任务全部取消且不会执行。
+     *
+     * @throws IllegalStateException 对 {@link #shared()} 调用时
+     */
+    @Override
+    public void close() {
+        if (shared) {
+            throw new IllegalStateException("the shared timing wheel cannot be closed");
+        }
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(driver);
+        boolean interrupted = false;
+        while (driver.isAlive()) {
+            try {
+                driver.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            drainCancelled();
+            drainScheduled();
+            long nowTick = (System.nanoTime() - startTime) / tickNanos;
+            if (live == 0 && scheduled.isEmpty()) {
+                // 轮子是空的，直接跳到当前 tick，然后等待新任务
+                currentTick = Math.max(currentTick, nowTick);
+                flushBatch();
+                idle = true;
+                if (scheduled.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            while (currentTick < nowTick && !closed) {
+                advance();
+            }
+            flushBatch();
+            long sleep = (currentTick + 1) * tickNanos - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+        // 关闭：剩余的任务全部取消
+        Timeout t;
+        while ((t = scheduled.poll()) != null) {
+            t.cancel();
+        }
+        for (Timeout[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                for (t = wheel[i]; t != null; t = t.next) {
+                    t.cancel();
+                }
+                wheel[i] = null;
+            }
+        }
+        cancelled.clear();
+    }
+
+    private void drainScheduled() {
+        Timeout t;
+        while ((t = scheduled.poll()) != null) {
+            if (t.state == Timeout.PENDING) {
+                place(t);
+            }
+        }
+    }
+
+    private void drainCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.level >= 0) {
+                unlink(t);
+            }
+        }
+    }
+
+    /**
+     * 推进一个 tick：先把到了边界的高层槽降级，再让第 0 层当前槽的任务到期
+     */
+    private void advance() {
+        long tick = ++currentTick;
+        for (int level = 1; level < wheels.length; level++) {
+            int shift = bits * level;
+            if ((tick & ((1L << shift) - 1)) != 0) break;
+            cascade(level, (int) ((tick >>> shift) & mask));
+        }
+        int slot = (int) (tick & mask);
+        Timeout t = wheels[0][slot];
+        wheels[0][slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            detach(t);
+            expire(t);
+            t = next;
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout t = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            detach(t);
+            if (t.state == Timeout.PENDING) {
+                place(t);
+            }
+            t = next;
+        }
+    }
+
+    private void place(Timeout t) {
+        long delta = t.expiryTick - currentTick;
+        if (delta <= 0) {
+            expire(t);
+            return;
+        }
+        int level = 0;
+        while (level < wheels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((t.expiryTick >>> (bits * level)) & mask);
+        Timeout head = wheels[level][slot];
+        t.level = level;
+        t.slot = slot;
+        t.prev = null;
+        t.next = head;
+        if (head != null) head.prev = t;
+        wheels[level][slot] = t;
+        live++;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            wheels[t.level][t.slot] = t.next;
+        }
+        if (t.next != null) t.next.prev = t.prev;
+        detach(t);
+    }
+
+    private void detach(Timeout t) {
+        t.prev = null;
+        t.next = null;
+        t.level = -1;
+        live--;
+    }
+
+    private void expire(Timeout t) {
+        if (Timeout.STATE.compareAndSet(t, Timeout.PENDING, Timeout.EXPIRED)) {
+            batch.add(t.task);
+        }
+    }
+
+    private void flushBatch() {
+        if (batch.isEmpty()) return;
+        List<Runnable> tasks = batch;
+        batch = new ArrayList<>();
+        Runnable runAll = () -> {
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        };
+        try {
+            executor.execute(runAll);
+        } catch (RejectedExecutionException e) {
+            runAll.run();
+        }
+    }
+}
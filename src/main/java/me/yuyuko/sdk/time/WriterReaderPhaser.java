@@ -0,0 +1,54 @@
+package me.yuyuko.sdk.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 写者无等待、读者负责切换阶段的同步器，用于双缓冲地采集数据。
+ * <p>
+ * 写者在进入和退出临界区时各做一次原子自增；读者在交换缓冲区之后调用 {@link #flipPhase()}，
+ * 它返回时所有在交换前进入临界区的写者都已经退出，旧缓冲区可以安全读取。
+ * @author castorice (遐蝶)
+ */
+final class WriterReaderPhaser {
+    private final AtomicLong startEpoch = new AtomicLong();
+    private final AtomicLong evenEndEpoch = new AtomicLong();
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    /**
+     * @return 需要原样传给 {@link #writerExit(long)} 的值
+     */
+    long writerEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    void writerExit(long enterValue) {
+        (enterValue < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+
+    void readerLock() {
+        readerLock.lock();
+    }
+
+    void readerUnlock() {
+        readerLock.unlock();
+    }
+
+    /**
+     * 切换阶段并等待上一阶段的写者全部退出，调用前必须持有读者锁
+     */
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("flipPhase() requires the reader lock");
+        }
+        boolean nextPhaseIsEven = startEpoch.get() < 0;
+        long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+        long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        AtomicLong previousEnd = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEnd.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package me.yuyuko.sdk.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 把 {@code obj.name}、{@code obj.getAge()} 这样的属性访问解析成 {@link MethodHandle}，
+ * 每个类一张有上限的访问器表。
+ * @author castorice (遐蝶)
+ */
+final class Accessors {
+
+    /**
+     * 某个类上的一个已解析访问器，handle 的类型统一为 (Object)Object
+     */
+    static final class Accessor {
+        final Class<?> receiverClass;
+        final MethodHandle handle;
+
+        Accessor(Class<?> receiverClass, MethodHandle handle) {
+            this.receiverClass = receiverClass;
+            this.handle = handle;
+        }
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    static final BoundedCache.Limit limit =
+        new BoundedCache.Limit(Integer.getInteger("yuyuko.sdk.fstring.accessorCacheCapacity", 64));
+    static final BoundedCache.Stats stats = new BoundedCache.Stats();
+
+    // 每个类一张访问器表，ClassValue 不会阻止类和它的类加载器被卸载
+    private static final ClassValue<BoundedCache<String, Accessor>> tables =
+        new ClassValue<BoundedCache<String, Accessor>>() {
+            @Override
+            protected BoundedCache<String, Accessor> computeValue(Class<?> type) {
+                return new BoundedCache<>(limit, stats);
+            }
+        };
+
+    private Accessors() {}
+
+    /**
+     * 在 clazz 上解析属性链中的一段
+     * @param part 属性名或者带 {@code ()} 的方法名
+     * @return 访问器，找不到时返回 null
+     */
+    static Accessor resolve(Class<?> clazz, String part) {
+        return tables.get(clazz).computeIfAbsent(part, k -> {
+            MethodHandle handle = part.endsWith("()")
+                ? methodHandle(clazz, part.substring(0, part.length() - 2))
+                : propertyHandle(clazz, part);
+            return handle != null ? new Accessor(clazz, handle) : null;
+        });
+    }
+
+    /**
+     * 在已知类型上静态解析一个属性，返回类型保持原样（基本类型不装箱），
+     * 依次查找 record 组件、公共字段、getXxx()/isXxx() 和同名无参方法。
+     * @return 类型为 (Object)R 的 MethodHandle，找不到时返回 null
+     */
+    static MethodHandle beanProperty(Class<?> clazz, String name) {
+        try {
+            if (clazz.isRecord()) {
+                for (java.lang.reflect.RecordComponent component : clazz.getRecordComponents()) {
+                    if (component.getName().equals(name)) {
+                        return erasedReceiver(accessible(component.getAccessor()));
+                    }
+                }
+            }
+            try {
+                Field field = accessible(clazz.getField(name));
+                if (field != null && !Modifier.isStatic(field.getModifiers())) {
+                    MethodHandle mh = LOOKUP.unreflectGetter(field);
+                    return mh.asType(mh.type().changeParameterType(0, Object.class));
+                }
+            } catch (NoSuchFieldException ignored) {
+                // 继续找 getter
+            }
+            String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (String candidate : new String[] { "get" + capitalized, "is" + capitalized, name }) {
+                Method method = findMethod(clazz, candidate);
+                if (method != null && !Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class
+                        && (!candidate.startsWith("is") || candidate.equals(name)
+                            || method.getReturnType() == boolean.class)) {
+                    return erasedReceiver(accessible(method));
+                }
+            }
+        } catch (IllegalAccessException ignored) {
+            // 视为找不到
+        }
+        return null;
+    }
+
+    private static MethodHandle erasedReceiver(Method method) throws IllegalAccessException {
+        if (method == null) return null;
+        MethodHandle mh = LOOKUP.unreflect(method);
+        return mh.asType(mh.type().changeParameterType(0, Object.class));
+    }
+
+    /**
+     * 先找公共字段，再找 getXxx() 方法
+     */
+    private static MethodHandle propertyHandle(Class<?> clazz, String name) {
+        try {
+            Field field = accessible(clazz.getField(name));
+            if (field != null) {
+                MethodHandle mh = LOOKUP.unreflectGetter(field);
+                if (Modifier.isStatic(field.getModifiers())) {
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                }
+                return mh.asType(GETTER_TYPE);
+            }
+        } catch (NoSuchFieldException | IllegalAccessException ignored) {
+            // 退回到 getter
+        }
+        return methodHandle(clazz, "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+    }
+
+    private static MethodHandle methodHandle(Class<?> clazz, String name) {
+        try {
+            Method method = accessible(clazz.getMethod(name));
+            if (method == null) return null;
+            MethodHandle mh = LOOKUP.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            return mh.asType(GETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 非公开类（例如 List.of 返回的实现类）上的公共方法不能直接调用，
+     * 这时改用公开的父类或接口中声明的同名方法。
+     */
+    private static <T extends Member> T accessible(T member) {
+        Class<?> declaring = member.getDeclaringClass();
+        if (isPublicType(declaring)) {
+            return member;
+        }
+        if (member instanceof Method) {
+            Method found = findPublicDeclaration(declaring, member.getName());
+            if (found != null) {
+                @SuppressWarnings("unchecked")
+                T result = (T) found;
+                return result;
+            }
+        }
+        return ((java.lang.reflect.AccessibleObject) member).trySetAccessible() ? member : null;
+    }
+
+    private static Method findPublicDeclaration(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            if (c != clazz && isPublicType(c)) {
+                try {
+                    return c.getMethod(name);
+                } catch (NoSuchMethodException ignored) {
+                    // 继续向上找
+                }
+            }
+            for (Class<?> itf : c.getInterfaces()) {
+                Method found = isPublicType(itf) ? findMethod(itf, name) : findPublicDeclaration(itf, name);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPublicType(Class<?> clazz) {
+        return Modifier.isPublic(clazz.getModifiers()) && clazz.getModule().isExported(clazz.getPackageName());
+    }
+}
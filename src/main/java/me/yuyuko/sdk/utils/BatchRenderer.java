@@ -0,0 +1,117 @@
+package me.yuyuko.sdk.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 用同一个编译好的模板渲染大量行，可选地把行切成块交给 ForkJoinPool 并行渲染。
+ * <p>
+ * 并行时调用线程负责读取输入、提交块并按提交顺序把结果写入 sink，
+ * 同时在途的块不超过并行度的两倍，所以内存占用只与块大小有关，与总行数无关。
+ * @author castorice (遐蝶)
+ */
+final class BatchRenderer {
+
+    /**
+     * 一块连续的行以及它们的渲染结果，渲染完成后被复用
+     */
+    private static final class Chunk {
+        final List<Map<String, Object>> rows;
+        final StringBuilder out = new StringBuilder();
+        int[] ends;
+        // 渲染成功的行数，出错时之前的行仍然要写入 sink
+        int rendered;
+        FormatException error;
+
+        Chunk(int chunkSize) {
+            this.rows = new ArrayList<>(chunkSize);
+            this.ends = new int[chunkSize];
+        }
+
+        void render(CompiledTemplate template) {
+            out.setLength(0);
+            rendered = 0;
+            error = null;
+            try {
+                for (int i = 0; i < rows.size(); i++) {
+                    template.renderTo(rows.get(i), out);
+                    ends[i] = out.length();
+                    rendered = i + 1;
+                }
+            } catch (FormatException e) {
+                error = e;
+            }
+        }
+
+        void reset() {
+            rows.clear();
+            // 不保留异常大的缓冲区
+            if (out.capacity() > 1 << 20) {
+                out.setLength(0);
+                out.trimToSize();
+            }
+        }
+    }
+
+    private BatchRenderer() {}
+
+    static void renderAll(CompiledTemplate template, Iterator<? extends Map<String, Object>> rows, RenderSink sink)
+            throws FormatException, IOException {
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            while (rows.hasNext()) {
+                sb.setLength(0);
+                template.renderTo(rows.next(), sb);
+                sink.write(sb);
+            }
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    static void renderAllParallel(CompiledTemplate template, Iterator<? extends Map<String, Object>> rows,
+                                  RenderSink sink, ForkJoinPool pool, int chunkSize)
+            throws FormatException, IOException {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>(window);
+        ArrayDeque<Chunk> free = new ArrayDeque<>(window);
+        CharSlice slice = new CharSlice();
+        try {
+            while (rows.hasNext() || !inFlight.isEmpty()) {
+                while (inFlight.size() < window && rows.hasNext()) {
+                    Chunk chunk = free.isEmpty() ? new Chunk(chunkSize) : free.poll();
+                    while (chunk.rows.size() < chunkSize && rows.hasNext()) {
+                        chunk.rows.add(rows.next());
+                    }
+                    inFlight.add(pool.submit(() -> {
+                        chunk.render(template);
+                        return chunk;
+                    }));
+                }
+                Chunk done = inFlight.poll().join();
+                int from = 0;
+                for (int i = 0; i < done.rendered; i++) {
+                    sink.write(slice.set(done.out, from, done.ends[i]));
+                    from = done.ends[i];
+                }
+                if (done.error != null) {
+                    throw done.error;
+                }
+                done.reset();
+                free.add(done);
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+    }
+}
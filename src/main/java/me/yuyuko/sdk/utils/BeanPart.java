@@ -0,0 +1,178 @@
+package me.yuyuko.sdk.utils;
+
+import java.lang.invoke.MethodHandle;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 绑定到某个类型上的占位符。根属性在编译期解析成 MethodHandle，
+ * 基本类型的属性按原始类型读取并直接追加，不经过装箱。
+ * @author castorice (遐蝶)
+ */
+abstract class BeanPart {
+    final Placeholder placeholder;
+    final MethodHandle handle;
+
+    private BeanPart(Placeholder placeholder, MethodHandle handle) {
+        this.placeholder = placeholder;
+        this.handle = handle;
+    }
+
+    abstract void appendTo(Object bean, StringBuilder sb) throws FormatException;
+
+    static BeanPart bind(Class<?> type, Placeholder placeholder) throws FormatException {
+        MethodHandle handle = Accessors.beanProperty(type, placeholder.key());
+        if (handle == null) {
+            throw new FormatException("在类 " + type.getName() + " 中找不到可访问的属性 '" + placeholder.key() + "'");
+        }
+        Class<?> rt = handle.type().returnType();
+        if (placeholder.path() == null) {
+            if (rt == int.class || rt == short.class || rt == byte.class) {
+                return new IntPart(placeholder, handle.asType(handle.type().changeReturnType(int.class)));
+            } else if (rt == long.class) {
+                return new LongPart(placeholder, handle);
+            } else if (rt == double.class) {
+                return new DoublePart(placeholder, handle);
+            } else if (rt == boolean.class) {
+                return new BooleanPart(placeholder, handle);
+            } else if (rt == char.class) {
+                return new CharPart(placeholder, handle);
+            }
+        }
+        // float 按 Float 输出以保留它自己的最短表示；其余引用类型和属性链走通用路径
+        return new ObjectPart(placeholder, handle.asType(handle.type().changeReturnType(Object.class)));
+    }
+
+    FormatException failure(Throwable e) {
+        return new FormatException("读取属性 '" + placeholder.key() + "' 失败: " + e.getMessage(), e);
+    }
+
+    private static final class IntPart extends BeanPart {
+        IntPart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            int v;
+            try {
+                v = (int) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            FormatSpec format = placeholder.format();
+            if (format == null) sb.append(v);
+            else format.formatTo((long) v, sb);
+        }
+    }
+
+    private static final class LongPart extends BeanPart {
+        LongPart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            long v;
+            try {
+                v = (long) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            FormatSpec format = placeholder.format();
+            if (format == null) sb.append(v);
+            else format.formatTo(v, sb);
+        }
+    }
+
+    private static final class DoublePart extends BeanPart {
+        DoublePart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            double v;
+            try {
+                v = (double) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            FormatSpec format = placeholder.format();
+            if (format == null) sb.append(v);
+            else format.formatTo(v, sb);
+        }
+    }
+
+    private static final class BooleanPart extends BeanPart {
+        BooleanPart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            boolean v;
+            try {
+                v = (boolean) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            if (placeholder.format() == null) sb.append(v);
+            else placeholder.appendResolved(sb, v);
+        }
+    }
+
+    private static final class CharPart extends BeanPart {
+        CharPart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            char v;
+            try {
+                v = (char) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            if (placeholder.format() == null) sb.append(v);
+            else placeholder.appendResolved(sb, v);
+        }
+    }
+
+    private static final class ObjectPart extends BeanPart {
+        ObjectPart(Placeholder placeholder, MethodHandle handle) {
+            super(placeholder, handle);
+        }
+
+        @Override
+        void appendTo(Object bean, StringBuilder sb) throws FormatException {
+            Object v;
+            try {
+                v = (Object) handle.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+            PropertyPath path = placeholder.path();
+            if (path != null) {
+                if (v == null) {
+                    throw new FormatException("表达式 '" + placeholder.expression() + "' 中 '"
+                        + placeholder.key() + "' 为 null");
+                }
+                v = path.eval(v);
+            }
+            placeholder.appendResolved(sb, v);
+        }
+    }
+}
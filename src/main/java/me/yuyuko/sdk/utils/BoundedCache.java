@@ -0,0 +1,222 @@
+package me.yuyuko.sdk.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 有容量上限的并发缓存，超出容量时按 CLOCK（近似 LRU）淘汰。
+ * <p>
+ * 读操作只是一次 {@link ConcurrentHashMap#get(Object)} 加上设置访问标记，不需要加锁；
+ * 只有插入导致超出容量时才会在淘汰锁下扫描时钟队列。
+ * @author castorice (遐蝶)
+ * @param <K> 键的类型
+ * @param <V> 值的类型
+ */
+public final class BoundedCache<K, V> {
+
+    /**
+     * 命中、未命中和淘汰次数，可以被多个缓存共享以便汇总统计
+     */
+    public static final class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long hitCount() {
+            return hits.sum();
+        }
+
+        public long missCount() {
+            return misses.sum();
+        }
+
+        public long evictionCount() {
+            return evictions.sum();
+        }
+
+        /**
+         * @return 命中率，没有任何请求时返回 1.0
+         */
+        public double hitRate() {
+            long h = hitCount();
+            long total = h + missCount();
+            return total == 0 ? 1.0 : (double) h / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + "}";
+        }
+    }
+
+    /**
+     * 可被多个缓存共享的容量设置
+     */
+    static final class Limit {
+        private volatile int value;
+
+        Limit(int value) {
+            set(value);
+        }
+
+        int get() {
+            return value;
+        }
+
+        void set(int value) {
+            if (value <= 0) throw new IllegalArgumentException("capacity must be positive: " + value);
+            this.value = value;
+        }
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        volatile boolean referenced;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Limit limit;
+    private final Stats stats;
+
+    /**
+     * @param capacity 最多保留的条目数
+     */
+    public BoundedCache(int capacity) {
+        this(new Limit(capacity), new Stats());
+    }
+
+    BoundedCache(Limit limit, Stats stats) {
+        this.limit = limit;
+        this.stats = stats;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            stats.misses.increment();
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        stats.hits.increment();
+        return node.value;
+    }
+
+    /**
+     * 如果键不存在则放入值
+     * @return 已经存在的值，没有则返回 null
+     */
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        Node<K, V> existing = map.putIfAbsent(key, node);
+        if (existing != null) {
+            return existing.value;
+        }
+        enqueue(node);
+        return null;
+    }
+
+    public void put(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        map.put(key, node);
+        enqueue(node);
+    }
+
+    /**
+     * 获取值，不存在时用 mappingFunction 计算并放入缓存。函数返回 null 时不缓存。
+     * 并发时同一个键可能被计算多次，但只有一个结果会被保留。
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        V existing = putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int capacity() {
+        return limit.get();
+    }
+
+    /**
+     * 修改容量，缩小时多余的条目会在下一次插入时被淘汰
+     */
+    public void setCapacity(int capacity) {
+        limit.set(capacity);
+    }
+
+    public Stats stats() {
+        return stats;
+    }
+
+    private void enqueue(Node<K, V> node) {
+        clock.offer(node);
+        if (queued.incrementAndGet() > limit.get()) {
+            evict();
+        }
+    }
+
+    /**
+     * 扫描时钟队列：丢弃已被替换或删除的节点，给被访问过的节点第二次机会，
+     * 其余的节点在超出容量时淘汰。
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // 已经有线程在淘汰，由它负责收敛
+            return;
+        }
+        try {
+            int budget = 2 * queued.get() + 1;
+            while (queued.get() > limit.get() && budget-- > 0) {
+                Node<K, V> node = clock.poll();
+                if (node == null) {
+                    break;
+                }
+                if (map.get(node.key) != node) {
+                    queued.decrementAndGet();
+                } else if (node.referenced || map.size() <= limit.get()) {
+                    node.referenced = false;
+                    clock.offer(node);
+                } else if (map.remove(node.key, node)) {
+                    queued.decrementAndGet();
+                    stats.evictions.increment();
+                } else {
+                    queued.decrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
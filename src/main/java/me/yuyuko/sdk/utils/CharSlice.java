@@ -0,0 +1,46 @@
+package me.yuyuko.sdk.utils;
+
+/**
+ * StringBuilder 中一段区间的只读视图，可以反复指向不同区间，避免为每一行 substring。
+ * @author castorice (遐蝶)
+ */
+final class CharSlice implements CharSequence {
+    private StringBuilder sb;
+    private int from;
+    private int to;
+
+    CharSlice set(StringBuilder sb, int from, int to) {
+        this.sb = sb;
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    void getChars(char[] dst, int dstBegin) {
+        sb.getChars(from, to, dst, dstBegin);
+    }
+
+    @Override
+    public int length() {
+        return to - from;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException("index " + index);
+        return sb.charAt(from + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > to - from || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        return sb.substring(from + start, from + end);
+    }
+
+    @Override
+    public String toString() {
+        return sb.substring(from, to);
+    }
+}
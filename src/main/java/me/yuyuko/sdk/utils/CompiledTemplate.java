@@ -0,0 +1,152 @@
+package me.yuyuko.sdk.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 预编译好的 fString 模板，不可变且线程安全。
+ * <p>
+ * 字面量片段、占位符和格式说明在 {@link StringUtil#compile(String)} 时一次性拆好，
+ * {@link #render(Map)} 只负责按顺序拼接，不会再解析模板。
+ * {@code renderTo} 系列方法可以直接写入 StringBuilder、Writer 或 ByteBuffer，不产生中间字符串。
+ * <pre>
+ * CompiledTemplate tpl = StringUtil.compile("用户 {name} 的余额: {balance:.2f}");
+ * String s = tpl.render(Map.of("name", "幽幽子", "balance", 12.5));
+ * </pre>
+ * @author castorice (遐蝶)
+ */
+public final class CompiledTemplate {
+    private final String template;
+    // literals[i] 在 placeholders[i] 之前，literals 比 placeholders 多一个尾部片段
+    private final String[] literals;
+    private final Placeholder[] placeholders;
+    private final int sizeHint;
+
+    CompiledTemplate(String template, String[] literals, Placeholder[] placeholders) {
+        this.template = template;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.sizeHint = template.length() + 16 * placeholders.length;
+    }
+
+    /**
+     * 用给定的值渲染模板
+     * @param values 占位符的值，可以为 null（此时模板中不能有占位符）
+     * @return 渲染后的字符串
+     * @throws FormatException 找不到键、表达式求值失败或格式无效时抛出
+     */
+    public String render(Map<String, Object> values) throws FormatException {
+        if (placeholders.length == 0) return literals[0];
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(values, sb);
+            return sb.toString();
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * 把渲染结果追加到 sb，值为字符串或基本类型时不产生任何中间对象
+     * @param values 占位符的值
+     * @param sb 输出目标
+     * @throws FormatException 找不到键、表达式求值失败或格式无效时抛出
+     */
+    public void renderTo(Map<String, Object> values, StringBuilder sb) throws FormatException {
+        if (values == null) values = Map.of();
+        sb.ensureCapacity(sb.length() + sizeHint);
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(literals[i]);
+            placeholders[i].appendTo(sb, values);
+        }
+        sb.append(literals[placeholders.length]);
+    }
+
+    /**
+     * 把渲染结果写入 out。先渲染到当前线程复用的缓冲区，再一次性写出，
+     * 渲染失败时 out 不会收到半截内容。
+     * @param values 占位符的值
+     * @param out 输出目标，例如 Writer
+     * @throws FormatException 找不到键、表达式求值失败或格式无效时抛出
+     * @throws IOException 写入 out 失败时抛出
+     */
+    public void renderTo(Map<String, Object> values, Appendable out) throws FormatException, IOException {
+        if (out instanceof StringBuilder) {
+            renderTo(values, (StringBuilder) out);
+            return;
+        }
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(values, sb);
+            RenderBuffers.writeTo(sb, out);
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * 把渲染结果按 UTF-8 编码写入 dst，从 dst 当前的 position 开始
+     * @param values 占位符的值
+     * @param dst 输出目标
+     * @throws FormatException 找不到键、表达式求值失败或格式无效时抛出
+     * @throws java.nio.BufferOverflowException dst 剩余空间不足时抛出，此时不会写入任何字节
+     */
+    public void renderTo(Map<String, Object> values, ByteBuffer dst) throws FormatException {
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(values, sb);
+            RenderBuffers.encodeUtf8(sb, dst);
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * 逐行渲染并写入 sink
+     * @param rows 每一行的值
+     * @param sink 输出目标，每行调用一次
+     * @throws FormatException 某一行渲染失败时抛出，之前的行已经写入 sink
+     * @throws IOException 写入 sink 失败时抛出
+     */
+    public void renderAll(Iterable<? extends Map<String, Object>> rows, RenderSink sink) throws FormatException, IOException {
+        BatchRenderer.renderAll(this, rows.iterator(), sink);
+    }
+
+    /**
+     * 把行切成 chunkSize 大小的块交给 pool 并行渲染，结果按输入顺序写入 sink。
+     * sink 只会在调用线程中被调用。
+     * @param rows 每一行的值
+     * @param sink 输出目标，每行调用一次
+     * @param pool 执行渲染的线程池
+     * @param chunkSize 每块的行数
+     * @throws FormatException 某一行渲染失败时抛出，它之前的行已经写入 sink
+     * @throws IOException 写入 sink 失败时抛出
+     */
+    public void renderAllParallel(Iterable<? extends Map<String, Object>> rows, RenderSink sink,
+                                  ForkJoinPool pool, int chunkSize) throws FormatException, IOException {
+        BatchRenderer.renderAllParallel(this, rows.iterator(), sink, pool, chunkSize);
+    }
+
+    String[] literals() {
+        return literals;
+    }
+
+    Placeholder[] placeholders() {
+        return placeholders;
+    }
+
+    /**
+     * @return 编译前的原始模板
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,590 @@
+package me.yuyuko.sdk.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 解析好的 Python 风格格式说明：{@code [[fill]align][sign][#][0][width][,][.precision][type]}
+ * <ul>
+ *     <li>align：{@code <} 左对齐、{@code >} 右对齐（默认）、{@code ^} 居中、{@code =} 在符号之后填充</li>
+ *     <li>sign：{@code +} 总是显示符号、{@code -} 只显示负号（默认）、空格 正数前加空格</li>
+ *     <li>{@code #}：十六进制加上 0x 前缀；{@code 0}：用 0 在符号之后填充</li>
+ *     <li>{@code ,}：千位分隔符</li>
+ *     <li>type：{@code s d f F e E x X %}，省略时按字符串输出</li>
+ * </ul>
+ * 数字直接按十进制位生成，不经过 {@link java.util.Formatter}，舍入方式与 {@code String.format} 相同（HALF_UP）。
+ * @author castorice (遐蝶)
+ */
+final class FormatSpec {
+    private static final int DEFAULT_PRECISION = 6;
+    // formatNumber 等返回的数字主体位置，表示 NaN 或 Infinity，填充时不补零
+    private static final int NON_FINITE = -1;
+
+    private final String spec;
+    private final char fill;
+    private final char align;
+    private final char sign;
+    private final boolean alternate;
+    private final int width;
+    private final boolean grouping;
+    private final int precision;
+    private final char type;
+
+    /**
+     * 数字格式化用到的线程内临时空间
+     */
+    private static final class Scratch {
+        final StringBuilder repr = new StringBuilder(32);
+        char[] digits = new char[32];
+        int count;
+        int exponent;
+        boolean negative;
+
+        void ensure(int size) {
+            if (digits.length < size) {
+                char[] grown = new char[Math.max(size, digits.length * 2)];
+                System.arraycopy(digits, 0, grown, 0, count);
+                digits = grown;
+            }
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private FormatSpec(String spec, char fill, char align, char sign, boolean alternate,
+                       int width, boolean grouping, int precision, char type) {
+        this.spec = spec;
+        this.fill = fill;
+        this.align = align;
+        this.sign = sign;
+        this.alternate = alternate;
+        this.width = width;
+        this.grouping = grouping;
+        this.precision = precision;
+        this.type = type;
+    }
+
+    static FormatSpec parse(String spec) throws FormatException {
+        int i = 0, len = spec.length();
+        char fill = ' ', align = 0, sign = '-', type = 0;
+        boolean alternate = false, grouping = false;
+        int width = -1, precision = -1;
+
+        if (len >= 2 && isAlign(spec.charAt(1))) {
+            fill = spec.charAt(0);
+            align = spec.charAt(1);
+            i = 2;
+        } else if (len >= 1 && isAlign(spec.charAt(0))) {
+            align = spec.charAt(0);
+            i = 1;
+        }
+        if (i < len && (spec.charAt(i) == '+' || spec.charAt(i) == '-' || spec.charAt(i) == ' ')) {
+            sign = spec.charAt(i++);
+        }
+        if (i < len && spec.charAt(i) == '#') {
+            alternate = true;
+            i++;
+        }
+        if (i < len && spec.charAt(i) == '0') {
+            if (align == 0) {
+                fill = '0';
+                align = '=';
+            }
+            i++;
+        }
+        int start = i;
+        while (i < len && isDigit(spec.charAt(i))) i++;
+        if (i > start) width = parseInt(spec, start, i);
+        if (i < len && spec.charAt(i) == ',') {
+            grouping = true;
+            i++;
+        }
+        if (i < len && spec.charAt(i) == '.') {
+            start = ++i;
+            while (i < len && isDigit(spec.charAt(i))) i++;
+            if (i == start) throw new FormatException("格式说明中 '.' 后缺少精度: " + spec);
+            precision = parseInt(spec, start, i);
+        }
+        if (i < len) {
+            type = spec.charAt(i++);
+            if ("sdfFeExX%".indexOf(type) < 0) {
+                throw new FormatException("不支持的格式类型 '" + type + "': " + spec);
+            }
+        }
+        if (i != len) {
+            throw new FormatException("无效的格式说明: " + spec);
+        }
+        if (precision >= 0 && (type == 'd' || type == 'x' || type == 'X')) {
+            throw new FormatException("整数格式不支持精度: " + spec);
+        }
+        if (grouping && (type == 's' || type == 'x' || type == 'X')) {
+            throw new FormatException("'" + type + "' 格式不支持千位分隔符: " + spec);
+        }
+        if (align == 0) align = '>';
+        return new FormatSpec(spec, fill, align, sign, alternate, width, grouping, precision, type);
+    }
+
+    /**
+     * 按格式说明把 value 追加到 sb
+     * @throws FormatException value 的类型与格式类型不匹配时抛出
+     */
+    void formatTo(Object value, StringBuilder sb) throws FormatException {
+        int start = sb.length();
+        int bodyStart;
+        switch (type) {
+            case 0:
+            case 's':
+                if (type == 0 && value instanceof Number && needsNumericOptions()) {
+                    bodyStart = formatNumber((Number) value, sb, start);
+                    break;
+                }
+                Placeholder.appendValue(sb, value);
+                if (precision >= 0 && sb.length() - start > precision) {
+                    sb.setLength(start + precision);
+                }
+                bodyStart = start;
+                break;
+            default:
+                if (!(value instanceof Number)) {
+                    throw invalid(value);
+                }
+                bodyStart = formatNumber((Number) value, sb, start);
+        }
+        pad(sb, start, bodyStart);
+    }
+
+    void formatTo(long value, StringBuilder sb) throws FormatException {
+        int start = sb.length();
+        int bodyStart;
+        if (type == 0 || type == 's') {
+            if (type == 0 && needsNumericOptions()) {
+                bodyStart = formatLong(value, sb, start, 'd');
+            } else {
+                sb.append(value);
+                if (precision >= 0 && sb.length() - start > precision) sb.setLength(start + precision);
+                bodyStart = start;
+            }
+        } else {
+            bodyStart = formatLong(value, sb, start, type);
+        }
+        pad(sb, start, bodyStart);
+    }
+
+    void formatTo(double value, StringBuilder sb) throws FormatException {
+        int start = sb.length();
+        int bodyStart;
+        if (type == 0 || type == 's') {
+            if (type == 0 && needsNumericOptions()) {
+                bodyStart = formatShortestDouble(value, sb, start);
+            } else {
+                sb.append(value);
+                if (precision >= 0 && sb.length() - start > precision) sb.setLength(start + precision);
+                bodyStart = start;
+            }
+        } else if (type == 'd' || type == 'x' || type == 'X') {
+            throw invalid(value);
+        } else {
+            bodyStart = formatDouble(value, sb, start);
+        }
+        pad(sb, start, bodyStart);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private boolean needsNumericOptions() {
+        return grouping || sign != '-' || align == '=';
+    }
+
+    private FormatException invalid(Object value) {
+        return new FormatException("无效的格式: " + spec + "，值为: " + value);
+    }
+
+    /**
+     * @return 数字主体（符号和前缀之后）在 sb 中的起始位置，用于 '=' 对齐
+     */
+    private int formatNumber(Number value, StringBuilder sb, int start) throws FormatException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            return formatLong(value.longValue(), sb, start, type == 0 ? 'd' : type);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            if (type == 'd' || type == 'x' || type == 'X') {
+                throw invalid(value);
+            }
+            double d = value instanceof Float ? Double.parseDouble(value.toString()) : value.doubleValue();
+            return type == 0 ? formatShortestDouble(d, sb, start) : formatDouble(d, sb, start);
+        }
+        Scratch s = SCRATCH.get();
+        if (value instanceof BigInteger) {
+            if (type == 'x' || type == 'X') {
+                BigInteger bi = (BigInteger) value;
+                int bodyStart = appendSignAndPrefix(sb, bi.signum() < 0);
+                String hex = bi.abs().toString(16);
+                sb.append(type == 'X' ? hex.toUpperCase() : hex);
+                return bodyStart;
+            }
+            loadDigits(s, value.toString());
+        } else if (value instanceof BigDecimal) {
+            if (type == 'd' || type == 'x' || type == 'X') {
+                throw invalid(value);
+            }
+            BigDecimal bd = (BigDecimal) value;
+            loadDigits(s, bd.unscaledValue().toString());
+            // loadDigits 已经去掉了末尾零，指数要按未规范化的位数计算
+            s.exponent = s.count == 0 ? 0 : bd.precision() - bd.scale();
+            if (type == 0) {
+                // 没有类型时按 BigDecimal 自己的小数位数定点输出，不丢弃小数部分
+                int bodyStart = appendSignAndPrefix(sb, s.negative);
+                appendFixed(s, sb, Math.max(0, bd.scale()));
+                return bodyStart;
+            }
+        } else {
+            if (type == 'x' || type == 'X') {
+                return formatLong(value.longValue(), sb, start, type);
+            }
+            double d = value.doubleValue();
+            if (type == 'd') {
+                if (d != Math.rint(d)) throw invalid(value);
+                return formatLong(value.longValue(), sb, start, 'd');
+            }
+            return type == 0 ? formatShortestDouble(d, sb, start) : formatDouble(d, sb, start);
+        }
+        return emit(s, sb, type == 0 ? 'd' : type);
+    }
+
+    private int formatLong(long value, StringBuilder sb, int start, char t) throws FormatException {
+        if (t == 'x' || t == 'X') {
+            int bodyStart = appendSignAndPrefix(sb, value < 0);
+            appendHex(sb, value, t == 'X');
+            return bodyStart;
+        }
+        Scratch s = SCRATCH.get();
+        s.negative = value < 0;
+        s.count = 0;
+        s.ensure(20);
+        // 用负数累加，避免 Long.MIN_VALUE 取反溢出
+        long v = value < 0 ? value : -value;
+        char[] tmp = s.digits;
+        int pos = 20;
+        do {
+            tmp[--pos] = (char) ('0' - (v % 10));
+            v /= 10;
+        } while (v != 0);
+        s.count = 20 - pos;
+        System.arraycopy(tmp, pos, tmp, 0, s.count);
+        s.exponent = s.count;
+        if (t != 'd') normalize(s);
+        return emit(s, sb, t);
+    }
+
+    private int formatDouble(double value, StringBuilder sb, int start) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            appendSignAndPrefix(sb, value < 0);
+            sb.append(Double.isNaN(value) ? "NaN" : "Infinity");
+            return NON_FINITE;
+        }
+        Scratch s = SCRATCH.get();
+        loadDouble(s, value);
+        return emit(s, sb, type);
+    }
+
+    /**
+     * 没有类型但需要符号或千位分隔符的浮点数：使用最短表示
+     */
+    private int formatShortestDouble(double value, StringBuilder sb, int start) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            appendSignAndPrefix(sb, value < 0);
+            sb.append(Double.isNaN(value) ? "NaN" : "Infinity");
+            return NON_FINITE;
+        }
+        int bodyStart = appendSignAndPrefix(sb, value < 0 || (value == 0 && 1 / value < 0));
+        if (grouping) {
+            // Double.toString 对很大和很小的数使用科学计数法，没法分组；改用相同的有效数字定点输出
+            Scratch s = SCRATCH.get();
+            loadDouble(s, Math.abs(value));
+            appendFixed(s, sb, Math.max(1, s.count - s.exponent));
+            return bodyStart;
+        }
+        sb.append(Math.abs(value));
+        return bodyStart;
+    }
+
+    /**
+     * 把 s 中的十进制位按类型输出
+     */
+    private int emit(Scratch s, StringBuilder sb, char t) {
+        int bodyStart = appendSignAndPrefix(sb, s.negative);
+        int p = precision >= 0 ? precision : DEFAULT_PRECISION;
+        switch (t) {
+            case 'd':
+                appendFixed(s, sb, 0);
+                break;
+            case 'f':
+            case 'F':
+                round(s, s.exponent + p);
+                appendFixed(s, sb, p);
+                break;
+            case '%':
+                s.exponent += 2;
+                round(s, s.exponent + p);
+                appendFixed(s, sb, p);
+                sb.append('%');
+                break;
+            case 'e':
+            case 'E':
+                appendScientific(s, sb, p, t);
+                break;
+            default:
+                throw new IllegalStateException("unexpected type " + t);
+        }
+        return bodyStart;
+    }
+
+    private void appendFixed(Scratch s, StringBuilder sb, int p) {
+        int intStart = sb.length();
+        if (s.exponent <= 0) {
+            sb.append('0');
+        } else {
+            for (int i = 0; i < s.exponent; i++) {
+                sb.append(i < s.count ? s.digits[i] : '0');
+            }
+        }
+        if (grouping) {
+            insertGrouping(sb, intStart, sb.length());
+        }
+        if (p > 0) {
+            sb.append('.');
+            for (int i = 0; i < p; i++) {
+                int idx = s.exponent + i;
+                sb.append(idx >= 0 && idx < s.count ? s.digits[idx] : '0');
+            }
+        }
+    }
+
+    private void appendScientific(Scratch s, StringBuilder sb, int p, char t) {
+        int exp;
+        if (s.count == 0) {
+            exp = 0;
+        } else {
+            round(s, p + 1);
+            exp = s.exponent - 1;
+        }
+        sb.append(s.count > 0 ? s.digits[0] : '0');
+        if (p > 0) {
+            sb.append('.');
+            for (int i = 1; i <= p; i++) {
+                sb.append(i < s.count ? s.digits[i] : '0');
+            }
+        }
+        sb.append(t == 'E' ? 'E' : 'e').append(exp < 0 ? '-' : '+');
+        int abs = Math.abs(exp);
+        if (abs < 10) sb.append('0');
+        sb.append(abs);
+    }
+
+    /**
+     * 只保留前 keep 位有效数字，HALF_UP 舍入
+     */
+    private static void round(Scratch s, int keep) {
+        if (keep >= s.count) {
+            return;
+        }
+        if (keep < 0) {
+            s.count = 0;
+            return;
+        }
+        boolean up = s.digits[keep] >= '5';
+        s.count = keep;
+        if (!up) {
+            trimZeros(s);
+            return;
+        }
+        int i = keep - 1;
+        while (i >= 0 && s.digits[i] == '9') {
+            i--;
+        }
+        if (i < 0) {
+            // 全是 9，进位到新的一位
+            s.digits[0] = '1';
+            s.count = 1;
+            s.exponent++;
+        } else {
+            s.digits[i]++;
+            s.count = i + 1;
+        }
+    }
+
+    private void appendHex(StringBuilder sb, long value, boolean upper) {
+        if (value == 0) {
+            sb.append('0');
+            return;
+        }
+        // Python 风格：负数输出 -ff 而不是补码；Long.MIN_VALUE 的绝对值按无符号处理
+        long abs = value < 0 ? -value : value;
+        int shift = (63 - Long.numberOfLeadingZeros(abs)) / 4 * 4;
+        for (; shift >= 0; shift -= 4) {
+            int nibble = (int) ((abs >>> shift) & 0xF);
+            sb.append((char) (nibble < 10 ? '0' + nibble : (upper ? 'A' : 'a') + nibble - 10));
+        }
+    }
+
+    private int appendSignAndPrefix(StringBuilder sb, boolean negative) {
+        if (negative) {
+            sb.append('-');
+        } else if (sign == '+') {
+            sb.append('+');
+        } else if (sign == ' ') {
+            sb.append(' ');
+        }
+        if (alternate && (type == 'x' || type == 'X')) {
+            sb.append('0').append(type);
+        }
+        return sb.length();
+    }
+
+    private static void insertGrouping(StringBuilder sb, int from, int to) {
+        for (int i = to - 3; i > from; i -= 3) {
+            sb.insert(i, ',');
+        }
+    }
+
+    /**
+     * 按宽度和对齐方式在 [start, sb.length()) 两侧补齐填充字符，bodyStart 用于 '=' 对齐
+     */
+    private void pad(StringBuilder sb, int start, int bodyStart) {
+        int padding = width - (sb.length() - start);
+        if (padding <= 0) {
+            return;
+        }
+        char a = align;
+        char f = fill;
+        if (bodyStart == NON_FINITE && a == '=') {
+            // 补零对 NaN 和 Infinity 没有意义，改为用空格右对齐
+            a = '>';
+            if (f == '0') f = ' ';
+        }
+        switch (a) {
+            case '<':
+                appendFill(sb, padding, f);
+                break;
+            case '^':
+                int left = padding / 2;
+                insertFill(sb, start, left, f);
+                appendFill(sb, padding - left, f);
+                break;
+            case '=':
+                insertFill(sb, bodyStart, padding, f);
+                break;
+            default:
+                insertFill(sb, start, padding, f);
+        }
+    }
+
+    private static void appendFill(StringBuilder sb, int n, char fill) {
+        for (int i = 0; i < n; i++) sb.append(fill);
+    }
+
+    private static void insertFill(StringBuilder sb, int at, int n, char fill) {
+        if (n <= 0) return;
+        int oldLen = sb.length();
+        sb.setLength(oldLen + n);
+        for (int i = oldLen - 1; i >= at; i--) {
+            sb.setCharAt(i + n, sb.charAt(i));
+        }
+        for (int i = at; i < at + n; i++) {
+            sb.setCharAt(i, fill);
+        }
+    }
+
+    /**
+     * 取 double 的最短十进制表示（与 Double.toString 相同）作为十进制位，再按精度舍入
+     */
+    private static void loadDouble(Scratch s, double value) {
+        StringBuilder repr = s.repr;
+        repr.setLength(0);
+        repr.append(value);
+        s.negative = repr.charAt(0) == '-';
+        s.count = 0;
+        s.ensure(repr.length());
+        int pointPos = -1;
+        int exp10 = 0;
+        int i = s.negative ? 1 : 0;
+        int len = repr.length();
+        for (; i < len; i++) {
+            char c = repr.charAt(i);
+            if (c == '.') {
+                pointPos = s.count;
+            } else if (c == 'E') {
+                exp10 = parseExponent(repr, i + 1, len);
+                break;
+            } else {
+                s.digits[s.count++] = c;
+            }
+        }
+        s.exponent = (pointPos < 0 ? s.count : pointPos) + exp10;
+        normalize(s);
+    }
+
+    private static void loadDigits(Scratch s, String text) {
+        s.negative = text.charAt(0) == '-';
+        int from = s.negative ? 1 : 0;
+        s.count = 0;
+        s.ensure(text.length());
+        for (int i = from; i < text.length(); i++) {
+            s.digits[s.count++] = text.charAt(i);
+        }
+        s.exponent = s.count;
+        normalize(s);
+    }
+
+    /**
+     * 去掉前导零和末尾零，值为零时 count 为 0
+     */
+    private static void normalize(Scratch s) {
+        int lead = 0;
+        while (lead < s.count && s.digits[lead] == '0') lead++;
+        if (lead > 0) {
+            System.arraycopy(s.digits, lead, s.digits, 0, s.count - lead);
+            s.count -= lead;
+            s.exponent -= lead;
+        }
+        trimZeros(s);
+        if (s.count == 0) s.exponent = 0;
+    }
+
+    private static void trimZeros(Scratch s) {
+        while (s.count > 0 && s.digits[s.count - 1] == '0') s.count--;
+    }
+
+    private static int parseExponent(CharSequence cs, int from, int to) {
+        boolean neg = cs.charAt(from) == '-';
+        int v = 0;
+        for (int i = neg ? from + 1 : from; i < to; i++) {
+            v = v * 10 + (cs.charAt(i) - '0');
+        }
+        return neg ? -v : v;
+    }
+
+    private static boolean isAlign(char c) {
+        return c == '<' || c == '>' || c == '^' || c == '=';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int parseInt(String s, int from, int to) throws FormatException {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            v = v * 10 + (s.charAt(i) - '0');
+            if (v > 1_000_000) throw new FormatException("格式说明中的数字过大: " + s);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,172 @@
+package me.yuyuko.sdk.utils;
+
+import java.util.Map;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 模板中的一个占位符，编译期就把键、属性链和格式说明拆好，渲染时不再解析。
+ * @author castorice (遐蝶)
+ */
+final class Placeholder {
+    private final String expression;
+    private final String key;
+    private final PropertyPath path;
+    private final FormatSpec format;
+
+    private Placeholder(String expression, String key, PropertyPath path, FormatSpec format) {
+        this.expression = expression;
+        this.key = key;
+        this.path = path;
+        this.format = format;
+    }
+
+    /**
+     * 解析花括号里的内容，例如 {@code name}、{@code user.getAge()}、{@code price:>10.2f}
+     */
+    static Placeholder parse(String expr) throws FormatException {
+        String keyOrExpr = expr, format = null;
+        int colon = expr.indexOf(':');
+        if (colon != -1) {
+            keyOrExpr = expr.substring(0, colon).trim();
+            format = expr.substring(colon + 1).trim();
+            if (format.isEmpty()) format = null;
+        }
+        PropertyPath path = null;
+        String key = keyOrExpr;
+        if (!isSimpleIdentifier(keyOrExpr)) {
+            path = new PropertyPath(keyOrExpr, parsePath(keyOrExpr));
+            key = path.rootKey();
+        }
+        return new Placeholder(keyOrExpr, key, path, format != null ? FormatSpec.parse(format) : null);
+    }
+
+    String expression() {
+        return expression;
+    }
+
+    String key() {
+        return key;
+    }
+
+    /**
+     * @return 属性链，简单的键返回 null
+     */
+    PropertyPath path() {
+        return path;
+    }
+
+    /**
+     * @return 格式说明，没有时返回 null
+     */
+    FormatSpec format() {
+        return format;
+    }
+
+    /**
+     * 按值映射求出占位符的值并追加到 sb
+     */
+    void appendTo(StringBuilder sb, Map<String, Object> values) throws FormatException {
+        Object value;
+        if (path == null) {
+            value = values.get(key);
+            if (value == null && !values.containsKey(key)) {
+                throw new FormatException("在值映射中找不到键 '" + key + "'");
+            }
+        } else {
+            Object root = values.get(key);
+            if (root == null) {
+                throw new FormatException("表达式 '" + expression + "' 中 '" + key + "' 为 null 或不存在");
+            }
+            value = path.eval(root);
+        }
+        appendResolved(sb, value);
+    }
+
+    /**
+     * 按格式说明追加已经求出的值
+     */
+    void appendResolved(StringBuilder sb, Object value) throws FormatException {
+        if (value == null) {
+            sb.append("null");
+        } else if (format != null) {
+            format.formatTo(value, sb);
+        } else {
+            appendValue(sb, value);
+        }
+    }
+
+    /**
+     * 字符串和装箱的基本类型直接追加，不经过 String.valueOf 产生临时字符串
+     */
+    static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String) {
+            sb.append((String) value);
+        } else if (value instanceof Integer) {
+            sb.append(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            sb.append(((Long) value).longValue());
+        } else if (value instanceof Double) {
+            sb.append(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            sb.append(((Character) value).charValue());
+        } else if (value instanceof Float) {
+            sb.append(((Float) value).floatValue());
+        } else if (value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).intValue());
+        } else if (value instanceof CharSequence) {
+            sb.append((CharSequence) value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static boolean isSimpleIdentifier(String s) {
+        if (s == null || s.isEmpty()) return false;
+        if (!Character.isJavaIdentifierStart(s.charAt(0))) return false;
+        for (int i = 1; i < s.length(); i++) {
+            if (!Character.isJavaIdentifierPart(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 把 {@code user.profile.getName()} 拆成 ["user", "profile", "getName()"]，
+     * 只接受 [a-zA-Z_][a-zA-Z0-9_]* 组成的属性/无参方法链。
+     */
+    private static String[] parsePath(String expr) throws FormatException {
+        int parts = 1;
+        for (int i = 0; i < expr.length(); i++) {
+            if (expr.charAt(i) == '.') parts++;
+        }
+        String[] path = new String[parts];
+        int start = 0;
+        for (int p = 0; p < parts; p++) {
+            int end = expr.indexOf('.', start);
+            if (end == -1) end = expr.length();
+            String part = expr.substring(start, end);
+            boolean call = p > 0 && part.endsWith("()");
+            String name = call ? part.substring(0, part.length() - 2) : part;
+            if (!isAsciiIdentifier(name)) {
+                throw new FormatException("不支持的表达式: " + expr + "。仅支持简单的属性/方法访问，如 user.name 或 user.getAge()");
+            }
+            path[p] = part;
+            start = end + 1;
+        }
+        return path;
+    }
+
+    private static boolean isAsciiIdentifier(String s) {
+        if (s.isEmpty()) return false;
+        char c = s.charAt(0);
+        if (!(c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) return false;
+        for (int i = 1; i < s.length(); i++) {
+            c = s.charAt(i);
+            if (!(c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package me.yuyuko.sdk.utils;
+
+import me.yuyuko.sdk.exceptions.FormatException;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 编译好的属性链，例如 {@code user.profile.getName()}。
+ * <p>
+ * 每一段都带一个单态内联缓存：接收者的类型与上次相同时直接调用缓存的
+ * {@link java.lang.invoke.MethodHandle}，类型变化时才回到 {@link Accessors} 重新查找。
+ * 缓存只弱引用访问器，编译好的模板不会阻止接收者的类和它的类加载器被卸载。
+ * @author castorice (遐蝶)
+ */
+final class PropertyPath {
+
+    private static final class Step {
+        final String part;
+        // 不需要 volatile：Accessor 的字段都是 final，竞争时最多多查一次表。
+        // 访问器由类自己的 ClassValue 表强引用，类存活时弱引用不会被清除，除非访问器被那张表淘汰
+        WeakReference<Accessors.Accessor> cached;
+
+        Step(String part) {
+            this.part = part;
+        }
+    }
+
+    private final String expression;
+    private final String rootKey;
+    private final Step[] steps;
+
+    /**
+     * @param expression 完整的表达式，用于错误信息
+     * @param parts 拆好的各段，parts[0] 是根对象在值映射中的键
+     */
+    PropertyPath(String expression, String[] parts) {
+        this.expression = expression;
+        this.rootKey = parts[0];
+        this.steps = new Step[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            steps[i - 1] = new Step(parts[i]);
+        }
+    }
+
+    String rootKey() {
+        return rootKey;
+    }
+
+    /**
+     * 从根对象开始沿属性链求值，中途遇到 null 时返回 null
+     */
+    Object eval(Object root) throws FormatException {
+        Object current = root;
+        for (Step step : steps) {
+            Class<?> clazz = current.getClass();
+            WeakReference<Accessors.Accessor> ref = step.cached;
+            Accessors.Accessor accessor = ref == null ? null : ref.get();
+            if (accessor == null || accessor.receiverClass != clazz) {
+                accessor = Accessors.resolve(clazz, step.part);
+                if (accessor == null) {
+                    throw new FormatException("表达式 '" + expression + "' 访问 '" + step.part + "' 失败: 在 "
+                        + clazz.getName() + " 中找不到可访问的属性或方法");
+                }
+                step.cached = new WeakReference<>(accessor);
+            }
+            try {
+                current = (Object) accessor.handle.invokeExact(current);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new FormatException("表达式 '" + expression + "' 访问 '" + step.part + "' 失败: " + e.getMessage(), e);
+            }
+            if (current == null) {
+                break;
+            }
+        }
+        return current;
+    }
+}
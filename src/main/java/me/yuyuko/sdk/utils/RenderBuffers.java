@@ -0,0 +1,224 @@
+package me.yuyuko.sdk.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * 每个线程复用的渲染缓冲区，以及把渲染结果写到各种目标时不产生中间字符串的工具方法。
+ * @author castorice (遐蝶)
+ */
+final class RenderBuffers {
+    // 超过这个大小的缓冲区用完就丢掉，避免某次超大渲染让线程一直占着内存
+    private static final int MAX_RETAINED = 64 * 1024;
+    private static final int INITIAL = 256;
+
+    private static final class Local {
+        StringBuilder sb = new StringBuilder(INITIAL);
+        char[] chars = new char[INITIAL];
+        byte[] bytes = new byte[INITIAL];
+        boolean busy;
+    }
+
+    private static final ThreadLocal<Local> LOCAL = ThreadLocal.withInitial(Local::new);
+
+    private RenderBuffers() {}
+
+    /**
+     * 取出当前线程的缓冲区。值的 toString() 里再次调用 fString 时缓冲区正被占用，
+     * 这时返回一个新的 StringBuilder。
+     */
+    static StringBuilder acquire() {
+        Local local = LOCAL.get();
+        if (local.busy) {
+            return new StringBuilder(INITIAL);
+        }
+        local.busy = true;
+        return local.sb;
+    }
+
+    static void release(StringBuilder sb) {
+        Local local = LOCAL.get();
+        if (local.sb != sb) {
+            return;
+        }
+        if (sb.capacity() > MAX_RETAINED) {
+            local.sb = new StringBuilder(INITIAL);
+        } else {
+            sb.setLength(0);
+        }
+        local.busy = false;
+    }
+
+    /**
+     * 把 cs 写入 out，Writer 和 CharBuffer 通过线程内的 char[] 批量写入，避免 append(CharSequence) 里的 toString()
+     */
+    static void writeTo(CharSequence cs, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(cs);
+        } else if (out instanceof Writer || out instanceof CharBuffer) {
+            int len = cs.length();
+            char[] chars = chars(len);
+            getChars(cs, chars);
+            if (out instanceof Writer) {
+                ((Writer) out).write(chars, 0, len);
+            } else {
+                ((CharBuffer) out).put(chars, 0, len);
+            }
+        } else {
+            out.append(cs);
+        }
+    }
+
+    /**
+     * 把 cs 按 UTF-8 编码后写入 out
+     */
+    static void writeUtf8(CharSequence cs, OutputStream out) throws IOException {
+        int max = cs.length() * 3;
+        Local local = LOCAL.get();
+        byte[] bytes = local.bytes;
+        if (bytes.length < max) {
+            bytes = new byte[Math.max(max, bytes.length * 2)];
+            if (bytes.length <= MAX_RETAINED) local.bytes = bytes;
+        }
+        int len = encode(cs, bytes, 0);
+        out.write(bytes, 0, len);
+    }
+
+    private static void getChars(CharSequence cs, char[] dst) {
+        if (cs instanceof StringBuilder) {
+            ((StringBuilder) cs).getChars(0, cs.length(), dst, 0);
+        } else if (cs instanceof String) {
+            ((String) cs).getChars(0, cs.length(), dst, 0);
+        } else if (cs instanceof CharSlice) {
+            ((CharSlice) cs).getChars(dst, 0);
+        } else {
+            for (int i = 0; i < cs.length(); i++) {
+                dst[i] = cs.charAt(i);
+            }
+        }
+    }
+
+    private static char[] chars(int len) {
+        Local local = LOCAL.get();
+        char[] chars = local.chars;
+        if (chars.length < len) {
+            chars = new char[Math.max(len, chars.length * 2)];
+            if (chars.length <= MAX_RETAINED) local.chars = chars;
+        }
+        return chars;
+    }
+
+    /**
+     * 把 cs 按 UTF-8 编码写入 dst。空间不足时抛出 {@link BufferOverflowException}，并且不会写入任何字节。
+     * 不成对的代理字符被编码为 '?'，与 {@link String#getBytes(java.nio.charset.Charset)} 一致。
+     */
+    static void encodeUtf8(CharSequence cs, ByteBuffer dst) {
+        int len = cs.length();
+        if (dst.remaining() < len * 3 && dst.remaining() < utf8Length(cs)) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            byte[] array = dst.array();
+            int start = dst.arrayOffset() + dst.position();
+            int pos = encode(cs, array, start);
+            dst.position(dst.position() + (pos - start));
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                dst.put((byte) c);
+            } else if (c < 0x800) {
+                dst.put((byte) (0xC0 | (c >> 6)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                int cp = codePoint(cs, i, c);
+                if (cp < 0) {
+                    dst.put((byte) '?');
+                } else {
+                    dst.put((byte) (0xF0 | (cp >> 18)));
+                    dst.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    dst.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    dst.put((byte) (0x80 | (cp & 0x3F)));
+                    i++;
+                }
+            } else {
+                dst.put((byte) (0xE0 | (c >> 12)));
+                dst.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static int encode(CharSequence cs, byte[] out, int pos) {
+        int len = cs.length();
+        for (int i = 0; i < len; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                out[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                int cp = codePoint(cs, i, c);
+                if (cp < 0) {
+                    out[pos++] = (byte) '?';
+                } else {
+                    out[pos++] = (byte) (0xF0 | (cp >> 18));
+                    out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (cp & 0x3F));
+                    i++;
+                }
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return UTF-8 编码后的字节数
+     */
+    static int utf8Length(CharSequence cs) {
+        int len = cs.length();
+        int bytes = 0;
+        for (int i = 0; i < len; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (codePoint(cs, i, c) < 0) {
+                    bytes++;
+                } else {
+                    bytes += 4;
+                    i++;
+                }
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 以 high 开头的代理对表示的码点，不成对时返回 -1
+     */
+    private static int codePoint(CharSequence cs, int i, char high) {
+        if (Character.isHighSurrogate(high) && i + 1 < cs.length()) {
+            char low = cs.charAt(i + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,36 @@
+package me.yuyuko.sdk.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 批量渲染的输出目标，每渲染完一行调用一次 {@link #write(CharSequence)}，顺序与输入一致。
+ * <p>
+ * 传入的 text 指向内部复用的缓冲区，只在本次调用期间有效；需要保留时请调用 {@code text.toString()}。
+ * <pre>
+ * try (Writer out = new FileIO("report.txt").appender()) {
+ *     StringUtil.renderAll("{id},{name}\n", rows, RenderSink.of(out));
+ * }
+ * </pre>
+ * @author castorice (遐蝶)
+ * @see StringUtil#renderAll(String, Iterable, RenderSink)
+ */
+@FunctionalInterface
+public interface RenderSink {
+
+    void write(CharSequence text) throws IOException;
+
+    /**
+     * 写入 Appendable，Writer 会通过 char[] 批量写入
+     */
+    static RenderSink of(Appendable out) {
+        return text -> RenderBuffers.writeTo(text, out);
+    }
+
+    /**
+     * 按 UTF-8 编码写入 out，编码使用线程内复用的 byte[]，不会为每一行分配字节数组
+     */
+    static RenderSink utf8(OutputStream out) {
+        return text -> RenderBuffers.writeUtf8(text, out);
+    }
+}
@@ -1,58 +1,55 @@
 package me.yuyuko.sdk.utils;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 import me.yuyuko.sdk.exceptions.FormatException;
 
-final class TemplateCacheKey {
-    private final String template;
-    private final Map<String, Object> values;
-
-    public TemplateCacheKey(String template, Map<String, Object> values) {
-        this.template = template;
-        this.values = values;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        TemplateCacheKey that = (TemplateCacheKey) o;
-        return template.equals(that.template) && values.keySet().equals(that.values.keySet());
-    }
-
-    @Override
-    public int hashCode() {
-        return 31 * template.hashCode() + values.keySet().hashCode();
-    }
-}
-
 /**
  * 让字符串处理更简单！
 */
 public final class StringUtil {
 
-    private static final ConcurrentMap<TemplateCacheKey, String> cache = new ConcurrentHashMap<>();
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
 
-    public static String fString(String template, Map<String, Object> values) throws FormatException {
-        if (template == null) return null;
-        if (values == null) values = Map.of();
+    private static final BoundedCache.Limit templateLimit =
+        new BoundedCache.Limit(Integer.getInteger("yuyuko.sdk.fstring.templateCacheCapacity", 1024));
+    private static final BoundedCache.Stats templateStats = new BoundedCache.Stats();
+    private static final BoundedCache<String, CompiledTemplate> cache = new BoundedCache<>(templateLimit, templateStats);
 
-        TemplateCacheKey cacheKey = new TemplateCacheKey(template, values);
-        String cached = cache.get(cacheKey);
-        if (cached != null) {
-            return cached;
-        }
+    // fString(template, bean) 使用的绑定模板，按对象的类型分表
+    private static final ClassValue<BoundedCache<String, TypedTemplate<?>>> typedCache =
+        new ClassValue<BoundedCache<String, TypedTemplate<?>>>() {
+            @Override
+            protected BoundedCache<String, TypedTemplate<?>> computeValue(Class<?> type) {
+                return new BoundedCache<>(templateLimit, templateStats);
+            }
+        };
 
-        StringBuilder result = new StringBuilder(template.length() + 16);
+    /**
+     * 把模板编译成可重复使用的 {@link CompiledTemplate}
+     * @param template 模板字符串，使用 {key}、{obj.prop}、{key:格式} 作为占位符，{{ 和 }} 转义花括号
+     * @return 编译好的模板
+     * @throws FormatException 模板语法错误时抛出
+     */
+    public static CompiledTemplate compile(String template) throws FormatException {
+        if (template == null) throw new FormatException("模板不能为 null");
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
         int len = template.length();
         int i = 0;
         while (i < len) {
             char c = template.charAt(i);
             if (c == '{') {
                 if (i + 1 < len && template.charAt(i + 1) == '{') {
-                    result.append('{');
+                    literal.append('{');
                     i += 2;
                 } else {
                     int end = i + 1;
@@ -71,171 +68,201 @@ public final class StringUtil {
                     if (expr.isEmpty()) {
                         throw new FormatException("模板中有空的占位符");
                     }
-                    String keyOrExpr = expr, format = null;
-                    int colon = expr.indexOf(':');
-                    if (colon != -1) {
-                        keyOrExpr = expr.substring(0, colon).trim();
-                        format = expr.substring(colon + 1).trim();
-                    }
-                    Object value;
-                    if (isSimpleIdentifier(keyOrExpr)) {
-                        value = values.get(keyOrExpr);
-                        if (value == null && !values.containsKey(keyOrExpr)) {
-                            throw new FormatException("在值映射中找不到键 '" + keyOrExpr + "'");
-                        }
-                    } else {
-                        value = evalJavaExpression(keyOrExpr, values);
-                    }
-                    String replacement;
-                    if (value == null) {
-                        replacement = "null";
-                    } else if (format != null && !format.isEmpty()) {
-                        replacement = applyFormat(value, format);
-                    } else {
-                        replacement = String.valueOf(value);
-                    }
-                    result.append(replacement);
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    placeholders.add(Placeholder.parse(expr));
                     i = end + 1;
                 }
             } else if (c == '}') {
                 if (i + 1 < len && template.charAt(i + 1) == '}') {
-                    result.append('}');
+                    literal.append('}');
                     i += 2;
                 } else {
                     throw new FormatException("模板中出现单独的 '}'");
                 }
             } else {
-                result.append(c);
+                literal.append(c);
                 i++;
             }
         }
-        String finalResult = result.toString();
-        cache.putIfAbsent(cacheKey, finalResult);
-        return finalResult;
+        literals.add(literal.toString());
+        return new CompiledTemplate(template,
+            literals.toArray(new String[0]),
+            placeholders.toArray(new Placeholder[0]));
     }
 
-    private static boolean isSimpleIdentifier(String s) {
-        if (s == null || s.isEmpty()) return false;
-        char[] chars = s.toCharArray();
-        if (!Character.isJavaIdentifierStart(chars[0])) return false;
-        for (int i = 1; i < chars.length; i++) {
-            if (!Character.isJavaIdentifierPart(chars[i])) return false;
-        }
-        return true;
+    /**
+     * 把模板编译成绑定到 type 的 {@link TypedTemplate}。简单占位符 {@code {name}} 在编译期
+     * 解析为 record 组件、公共字段、getName()/isName() 或 name() 方法，基本类型按原始类型读取。
+     * @param template 模板字符串
+     * @param type 渲染时传入的对象类型
+     * @return 编译好的模板
+     * @throws FormatException 模板语法错误或在 type 上找不到某个属性时抛出
+     */
+    public static <T> TypedTemplate<T> compile(String template, Class<T> type) throws FormatException {
+        Objects.requireNonNull(type, "type");
+        return new TypedTemplate<>(type, cached(Objects.requireNonNull(template, "template")));
     }
 
-    private static String applyFormat(Object value, String format) throws FormatException {
-        try {
-            if (value == null) return "null";
-            String fmt = "%" + pythonToJavaFormat(format, value);
-            return String.format(fmt, value);
-        } catch (Exception e) {
-            throw new FormatException("无效的格式: " + format + "，值为: " + value);
+    /**
+     * 直接用对象的属性格式化，不需要构造 Map；bean 是 Map 时等同于 {@link #fString(String, Map)}
+     * @param template 模板字符串
+     * @param bean record、带公共字段或 getter 的对象
+     * @return 渲染后的字符串，template 为 null 时返回 null
+     * @throws FormatException 模板语法错误、找不到属性或渲染失败时抛出
+     * @see #compile(String, Class)
+     */
+    @SuppressWarnings("unchecked")
+    public static String fString(String template, Object bean) throws FormatException {
+        if (template == null) return null;
+        if (bean instanceof Map) {
+            return fString(template, (Map<String, Object>) bean);
+        }
+        Objects.requireNonNull(bean, "bean");
+        BoundedCache<String, TypedTemplate<?>> tables = typedCache.get(bean.getClass());
+        TypedTemplate<Object> typed = (TypedTemplate<Object>) tables.get(template);
+        if (typed == null) {
+            typed = (TypedTemplate<Object>) compile(template, bean.getClass());
+            TypedTemplate<?> existing = tables.putIfAbsent(template, typed);
+            if (existing != null) typed = (TypedTemplate<Object>) existing;
         }
+        return typed.render(bean);
     }
 
-    private static String pythonToJavaFormat(String format, Object value) {
-        StringBuilder sb = new StringBuilder();
-        char align = 0;
-        int width = -1;
-        int precision = -1;
-        char type = 0;
+    /**
+     * 类似 Python 的 f-string 格式化，模板的解析结果会被缓存
+     * @param template 模板字符串
+     * @param values 占位符的值
+     * @return 渲染后的字符串，template 为 null 时返回 null
+     * @throws FormatException 模板语法错误或渲染失败时抛出
+     * @see #compile(String)
+     */
+    public static String fString(String template, Map<String, Object> values) throws FormatException {
+        if (template == null) return null;
+        return cached(template).render(values);
+    }
 
-        int i = 0, len = format.length();
-        if (i < len && (format.charAt(i) == '<' || format.charAt(i) == '>')) {
-            align = format.charAt(i++);
-        }
-        StringBuilder num = new StringBuilder();
-        while (i < len && Character.isDigit(format.charAt(i))) {
-            num.append(format.charAt(i++));
-        }
-        if (num.length() > 0) width = Integer.parseInt(num.toString());
-        if (i < len && format.charAt(i) == '.') {
-            i++;
-            num.setLength(0);
-            while (i < len && Character.isDigit(format.charAt(i))) {
-                num.append(format.charAt(i++));
-            }
-            if (num.length() > 0) precision = Integer.parseInt(num.toString());
-        }
-        if (i < len) type = format.charAt(i);
+    /**
+     * 把格式化结果追加到 sb，值为字符串或基本类型时不产生中间对象
+     * @see CompiledTemplate#renderTo(Map, StringBuilder)
+     */
+    public static void fString(String template, Map<String, Object> values, StringBuilder sb) throws FormatException {
+        Objects.requireNonNull(template, "template");
+        cached(template).renderTo(values, sb);
+    }
 
-        if (align == '<') sb.append('-');
-        if (width > 0) sb.append(width);
-        if (precision >= 0) sb.append('.').append(precision);
-        if (type == 'f' || type == 'd') sb.append('f');
-        else sb.append('s');
-        return sb.toString();
+    /**
+     * 把格式化结果写入 out，例如文件的 Writer
+     * @see CompiledTemplate#renderTo(Map, Appendable)
+     */
+    public static void fString(String template, Map<String, Object> values, Appendable out) throws FormatException, IOException {
+        Objects.requireNonNull(template, "template");
+        cached(template).renderTo(values, out);
     }
 
-    // Cache reflection for property/method access to improve performance
-    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, java.lang.reflect.AccessibleObject>> reflectionCache = new ConcurrentHashMap<>();
+    /**
+     * 把格式化结果按 UTF-8 编码写入 dst，例如 websocket 的发送缓冲区
+     * @see CompiledTemplate#renderTo(Map, ByteBuffer)
+     */
+    public static void fString(String template, Map<String, Object> values, ByteBuffer dst) throws FormatException {
+        Objects.requireNonNull(template, "template");
+        cached(template).renderTo(values, dst);
+    }
 
-    private static Object evalJavaExpression(String expr, Map<String, Object> values) throws FormatException {
-        if (!expr.matches("[a-zA-Z_][a-zA-Z0-9_]*(\\.[a-zA-Z_][a-zA-Z0-9_]*(\\(\\))?)*")) {
-            throw new FormatException("不支持的表达式: " + expr + "。仅支持简单的属性/方法访问，如 user.name 或 user.getAge()");
-        }
-        String[] parts = expr.split("\\.");
-        Object current = values.get(parts[0]);
-        if (current == null) {
-            throw new FormatException("表达式 '" + expr + "' 中 '" + parts[0] + "' 为 null 或不存在");
-        }
-        for (int i = 1; i < parts.length; i++) {
-            String part = parts[i];
-            Class<?> clazz = current.getClass();
-            ConcurrentMap<String, java.lang.reflect.AccessibleObject> classCache =
-                reflectionCache.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>());
-            try {
-                if (part.endsWith("()")) {
-                    String methodName = part.substring(0, part.length() - 2);
-                    java.lang.reflect.Method method = (java.lang.reflect.Method) classCache.computeIfAbsent(
-                        methodName + "()", k -> {
-                            try {
-                                java.lang.reflect.Method m = clazz.getMethod(methodName);
-                                m.setAccessible(true);
-                                return m;
-                            } catch (Exception e) {
-                                return null;
-                            }
-                        });
-                    if (method == null) throw new NoSuchMethodException(methodName);
-                    current = method.invoke(current);
-                } else {
-                    java.lang.reflect.Field field = (java.lang.reflect.Field) classCache.computeIfAbsent(
-                        part, k -> {
-                            try {
-                                java.lang.reflect.Field f = clazz.getField(part);
-                                f.setAccessible(true);
-                                return f;
-                            } catch (Exception e) {
-                                return null;
-                            }
-                        });
-                    if (field != null) {
-                        current = field.get(current);
-                    } else {
-                        String getter = "get" + Character.toUpperCase(part.charAt(0)) + part.substring(1);
-                        java.lang.reflect.Method getterMethod = (java.lang.reflect.Method) classCache.computeIfAbsent(
-                            getter + "()", k -> {
-                                try {
-                                    java.lang.reflect.Method m = clazz.getMethod(getter);
-                                    m.setAccessible(true);
-                                    return m;
-                                } catch (Exception e) {
-                                    return null;
-                                }
-                            });
-                        if (getterMethod == null) throw new NoSuchMethodException(getter);
-                        current = getterMethod.invoke(current);
-                    }
-                }
-            } catch (Exception e) {
-                throw new FormatException("表达式 '" + expr + "' 访问 '" + part + "' 失败: " + e.getMessage(), e);
-            }
-            if (current == null) {
-                break;
-            }
+    /**
+     * 用同一个模板逐行渲染大量数据，模板只解析一次
+     * <pre>
+     * try (Writer out = new FileIO("report.csv").appender()) {
+     *     StringUtil.renderAll("{id},{name},{score:.1f}\n", rows, RenderSink.of(out));
+     * }
+     * </pre>
+     * @param template 模板字符串
+     * @param rows 每一行的值
+     * @param sink 输出目标，每行调用一次
+     * @throws FormatException 模板语法错误或某一行渲染失败时抛出
+     * @throws IOException 写入 sink 失败时抛出
+     */
+    public static void renderAll(String template, Iterable<? extends Map<String, Object>> rows, RenderSink sink)
+            throws FormatException, IOException {
+        BatchRenderer.renderAll(cached(Objects.requireNonNull(template, "template")), rows.iterator(), sink);
+    }
+
+    /**
+     * @see #renderAll(String, Iterable, RenderSink)
+     */
+    public static void renderAll(String template, Stream<? extends Map<String, Object>> rows, RenderSink sink)
+            throws FormatException, IOException {
+        BatchRenderer.renderAll(cached(Objects.requireNonNull(template, "template")), rows.iterator(), sink);
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上并行渲染，每块 {@value #DEFAULT_CHUNK_SIZE} 行，输出顺序与输入一致
+     * @see CompiledTemplate#renderAllParallel(Iterable, RenderSink, ForkJoinPool, int)
+     */
+    public static void renderAllParallel(String template, Iterable<? extends Map<String, Object>> rows, RenderSink sink)
+            throws FormatException, IOException {
+        renderAllParallel(template, rows.iterator(), sink, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @see CompiledTemplate#renderAllParallel(Iterable, RenderSink, ForkJoinPool, int)
+     */
+    public static void renderAllParallel(String template, Iterable<? extends Map<String, Object>> rows, RenderSink sink,
+                                         ForkJoinPool pool, int chunkSize) throws FormatException, IOException {
+        renderAllParallel(template, rows.iterator(), sink, pool, chunkSize);
+    }
+
+    /**
+     * @see CompiledTemplate#renderAllParallel(Iterable, RenderSink, ForkJoinPool, int)
+     */
+    public static void renderAllParallel(String template, Stream<? extends Map<String, Object>> rows, RenderSink sink,
+                                         ForkJoinPool pool, int chunkSize) throws FormatException, IOException {
+        renderAllParallel(template, rows.iterator(), sink, pool, chunkSize);
+    }
+
+    private static void renderAllParallel(String template, Iterator<? extends Map<String, Object>> rows, RenderSink sink,
+                                          ForkJoinPool pool, int chunkSize) throws FormatException, IOException {
+        CompiledTemplate compiled = cached(Objects.requireNonNull(template, "template"));
+        BatchRenderer.renderAllParallel(compiled, rows, sink, pool, chunkSize);
+    }
+
+    private static CompiledTemplate cached(String template) throws FormatException {
+        CompiledTemplate compiled = cache.get(template);
+        if (compiled == null) {
+            compiled = compile(template);
+            CompiledTemplate existing = cache.putIfAbsent(template, compiled);
+            if (existing != null) compiled = existing;
         }
-        return current;
+        return compiled;
     }
-}
\ No newline at end of file
+
+    /**
+     * 设置模板解析缓存的容量（绑定类型的模板按类型分别计算），默认 1024，也可以用系统属性
+     * {@code yuyuko.sdk.fstring.templateCacheCapacity} 指定
+     */
+    public static void setTemplateCacheCapacity(int capacity) {
+        templateLimit.set(capacity);
+    }
+
+    /**
+     * 设置每个类最多缓存多少个属性/方法访问器，默认 64，也可以用系统属性
+     * {@code yuyuko.sdk.fstring.accessorCacheCapacity} 指定
+     */
+    public static void setAccessorCacheCapacity(int capacity) {
+        Accessors.limit.set(capacity);
+    }
+
+    /**
+     * @return 模板解析缓存（包括绑定类型的模板）的命中、未命中和淘汰次数
+     */
+    public static BoundedCache.Stats templateCacheStats() {
+        return templateStats;
+    }
+
+    /**
+     * @return 所有类的访问器缓存汇总的命中、未命中和淘汰次数
+     */
+    public static BoundedCache.Stats accessorCacheStats() {
+        return Accessors.stats;
+    }
+}
@@ -0,0 +1,116 @@
+package me.yuyuko.sdk.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import me.yuyuko.sdk.exceptions.FormatException;
+
+/**
+ * 绑定到某个类型的编译好的模板，直接从 record 组件、公共字段或 getter 读取值，
+ * 不需要为每次渲染构造 Map。不可变且线程安全。
+ * <pre>
+ * record Order(long id, String user, double amount) {}
+ *
+ * TypedTemplate&lt;Order&gt; tpl = StringUtil.compile("#{id} {user}: {amount:,.2f}", Order.class);
+ * String s = tpl.render(new Order(1, "幽幽子", 12345.6));  // #1 幽幽子: 12,345.60
+ * </pre>
+ * @author castorice (遐蝶)
+ * @param <T> 绑定的类型
+ */
+public final class TypedTemplate<T> {
+    private final Class<T> type;
+    private final String template;
+    private final String[] literals;
+    private final BeanPart[] parts;
+    private final int sizeHint;
+
+    TypedTemplate(Class<T> type, CompiledTemplate compiled) throws FormatException {
+        this.type = type;
+        this.template = compiled.getTemplate();
+        this.literals = compiled.literals();
+        Placeholder[] placeholders = compiled.placeholders();
+        this.parts = new BeanPart[placeholders.length];
+        for (int i = 0; i < placeholders.length; i++) {
+            parts[i] = BeanPart.bind(type, placeholders[i]);
+        }
+        this.sizeHint = template.length() + 16 * parts.length;
+    }
+
+    /**
+     * @param bean 要渲染的对象
+     * @return 渲染后的字符串
+     * @throws FormatException 读取属性失败或格式无效时抛出
+     */
+    public String render(T bean) throws FormatException {
+        if (parts.length == 0) return literals[0];
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(bean, sb);
+            return sb.toString();
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * 把渲染结果追加到 sb，基本类型的属性不会被装箱
+     */
+    public void renderTo(T bean, StringBuilder sb) throws FormatException {
+        Objects.requireNonNull(bean, "bean");
+        sb.ensureCapacity(sb.length() + sizeHint);
+        for (int i = 0; i < parts.length; i++) {
+            sb.append(literals[i]);
+            parts[i].appendTo(bean, sb);
+        }
+        sb.append(literals[parts.length]);
+    }
+
+    /**
+     * @see CompiledTemplate#renderTo(java.util.Map, Appendable)
+     */
+    public void renderTo(T bean, Appendable out) throws FormatException, IOException {
+        if (out instanceof StringBuilder) {
+            renderTo(bean, (StringBuilder) out);
+            return;
+        }
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(bean, sb);
+            RenderBuffers.writeTo(sb, out);
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * @see CompiledTemplate#renderTo(java.util.Map, ByteBuffer)
+     */
+    public void renderTo(T bean, ByteBuffer dst) throws FormatException {
+        StringBuilder sb = RenderBuffers.acquire();
+        try {
+            renderTo(bean, sb);
+            RenderBuffers.encodeUtf8(sb, dst);
+        } finally {
+            RenderBuffers.release(sb);
+        }
+    }
+
+    /**
+     * @return 绑定的类型
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return 编译前的原始模板
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
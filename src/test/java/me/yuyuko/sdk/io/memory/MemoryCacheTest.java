@@ -0,0 +1,633 @@
+package me.yuyuko.sdk.io.memory;
+
+import me.yuyuko.sdk.exceptions.memory.CacheLoadException;
+import me.yuyuko.sdk.time.ManualClock;
+import me.yuyuko.sdk.time.TimeDelta;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryCacheTest {
+
+    @Test
+    void testUnboundedKeepsEverything() {
+        MemoryCache<Integer, Integer> cache = new MemoryCache<>();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(10_000, cache.size());
+        cache.put(1, 100);
+        assertEquals(100, cache.get(1));
+        cache.remove(1);
+        assertNull(cache.get(1));
+        cache.clear();
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    void testMaximumSize() {
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder().maximumSize(100).build();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size(), "项数不应超过上限");
+        assertEquals(100, cache.weightedSize());
+    }
+
+    @Test
+    void testMaximumWeight() {
+        MemoryCache<Integer, byte[]> cache = MemoryCache.<Integer, byte[]>builder()
+            .maximumWeight(10_000)
+            .weigher((key, value) -> value.length)
+            .build();
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, new byte[1 + i % 100]);
+        }
+        cache.cleanUp();
+        assertTrue(cache.weightedSize() <= 10_000, "总权重不应超过上限: " + cache.weightedSize());
+        assertTrue(cache.weightedSize() > 9_000, "不应淘汰过多: " + cache.weightedSize());
+
+        // 更新权重后重新计算
+        cache.clear();
+        cache.cleanUp();
+        cache.put(1, new byte[10]);
+        cache.put(1, new byte[500]);
+        cache.cleanUp();
+        assertEquals(500, cache.weightedSize());
+        cache.put(2, new byte[20_000]);
+        cache.cleanUp();
+        assertNull(cache.get(2), "超过上限的单项应被立即淘汰");
+        assertEquals(500, cache.weightedSize());
+    }
+
+    @Test
+    void testFrequentKeysSurviveScan() {
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder().maximumSize(100).build();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.put(i, i);
+                cache.get(i);
+            }
+        }
+        cache.cleanUp();
+        // 一次性扫描大量只访问一次的键
+        for (int i = 1000; i < 11_000; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(i) != null) retained++;
+        }
+        assertTrue(retained >= 45, "热点键应在扫描后保留，实际保留 " + retained);
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder().maximumSize(500).build();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    int key = random.nextInt(2_000);
+                    if (random.nextInt(4) == 0) {
+                        cache.put(key, key);
+                    } else if (random.nextInt(50) == 0) {
+                        cache.remove(key);
+                    } else {
+                        Integer value = cache.get(key);
+                        if (value != null && value != key) {
+                            throw new AssertionError("值与键不匹配: " + key + " -> " + value);
+                        }
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), "并发访问出错: " + errors);
+        cache.cleanUp();
+        assertTrue(cache.size() <= 500, "并发写入后项数不应超过上限: " + cache.size());
+        assertEquals(cache.size(), cache.weightedSize(), "策略记录的大小应与 map 一致");
+    }
+
+    @Test
+    void testExpireAfterWrite() {
+        ManualClock clock = new ManualClock();
+        ConcurrentMap<Integer, RemovalCause> removed = new ConcurrentHashMap<>();
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder()
+            .expireAfterWrite(new TimeDelta().seconds(1))
+            .removalListener((key, value, cause) -> removed.put(key, cause))
+            .clock(clock)
+            .build();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        clock.advance(new TimeDelta().milliseconds(999));
+        assertEquals(0, cache.get(0), "未到期的项应能读到");
+        cache.put(1, 1);
+        clock.advance(new TimeDelta().milliseconds(1));
+        assertNull(cache.get(0), "过期的项不应被读到");
+        assertFalse(cache.containsKey(2), "过期的项不应被读到");
+        assertEquals(RemovalCause.EXPIRED, removed.get(0));
+
+        cache.cleanUp();
+        assertEquals(1, cache.size(), "清理后只剩下被覆盖过的项");
+        assertEquals(99, removed.size(), "每个过期的项都应收到通知");
+        assertEquals(1, cache.get(1));
+    }
+
+    @Test
+    void testExpireAfterAccess() {
+        ManualClock clock = new ManualClock();
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder()
+            .expireAfterAccess(new TimeDelta().seconds(1))
+            .clock(clock)
+            .build();
+        cache.put(1, 1);
+        cache.put(2, 2);
+        for (int i = 0; i < 5; i++) {
+            clock.advance(new TimeDelta().milliseconds(600));
+            assertEquals(1, cache.get(1), "持续访问的项不应过期");
+        }
+        assertNull(cache.get(2), "不再访问的项应过期");
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testVariableExpiry() {
+        ManualClock clock = new ManualClock();
+        List<String> removed = Collections.synchronizedList(new ArrayList<>());
+        MemoryCache<String, Integer> cache = MemoryCache.<String, Integer>builder()
+            .expireAfter((String key, Integer ttl) -> new TimeDelta().seconds(ttl))
+            .removalListener((key, value, cause) -> removed.add(key + ":" + cause))
+            .clock(clock)
+            .build();
+        cache.put("short", 1);
+        cache.put("long", 10);
+        clock.advance(new TimeDelta().seconds(2));
+        assertNull(cache.get("short"));
+        assertEquals(10, cache.get("long"));
+        cache.put("long", 1);
+        assertEquals(Arrays.asList("short:EXPIRED", "long:REPLACED"), removed);
+        clock.advance(new TimeDelta().seconds(1));
+        assertNull(cache.get("long"), "覆盖后应按新的存活时间过期");
+    }
+
+    @Test
+    void testExpiredEntriesAreSweptWithoutAccess() throws InterruptedException {
+        MemoryCache<Integer, Integer> fixed = MemoryCache.<Integer, Integer>builder()
+            .expireAfterWrite(new TimeDelta().milliseconds(50))
+            .build();
+        MemoryCache<Integer, Integer> variable = MemoryCache.<Integer, Integer>builder()
+            .expireAfter((Integer key, Integer value) -> new TimeDelta().milliseconds(50))
+            .build();
+        for (int i = 0; i < 1000; i++) {
+            fixed.put(i, i);
+            variable.put(i, i);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((fixed.size() > 0 || variable.size() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, fixed.size(), "写入后过期的项应由时间轮安排的清理移除");
+        assertEquals(0, variable.size(), "单独设置存活时间的项应由时间轮移除");
+    }
+
+    @Test
+    void testRemovalCauses() {
+        List<RemovalCause> causes = Collections.synchronizedList(new ArrayList<>());
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder()
+            .maximumSize(10)
+            .removalListener((key, value, cause) -> causes.add(cause))
+            .build();
+        cache.put(1, 1);
+        cache.put(1, 2);
+        cache.remove(1);
+        assertEquals(2, causes.size());
+        assertEquals(RemovalCause.REPLACED, causes.get(0));
+        assertEquals(RemovalCause.EXPLICIT, causes.get(1));
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(12, causes.size(), "超出上限的 10 项应被淘汰");
+        assertEquals(RemovalCause.SIZE, causes.get(11));
+    }
+
+    @Test
+    void testSingleFlightLoad() throws Exception {
+        MemoryCache<String, Integer> cache = MemoryCache.<String, Integer>builder()
+            .expireAfterWrite(new TimeDelta().minutes(1))
+            .build();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 32; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    results.add(cache.get("hot", key -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return 42;
+                    }));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, loads.get(), "同一个键同时只应加载一次");
+        assertEquals(32, results.size());
+        assertTrue(results.stream().allMatch(v -> v == 42));
+
+        CacheLoadException e = assertThrows(CacheLoadException.class,
+            () -> cache.get("bad", key -> { throw new IllegalStateException("backend down"); }));
+        assertTrue(e.getCause() instanceof IllegalStateException, "原因应是加载函数抛出的异常");
+        assertNull(cache.get("bad"), "加载失败不应被缓存");
+    }
+
+    @Test
+    void testLoadDoesNotOverwriteConcurrentPut() throws Exception {
+        MemoryCache<String, Integer> cache = new MemoryCache<>();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        CompletableFuture<Integer> single = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get("k", key -> {
+                    loading.countDown();
+                    written.await();
+                    return 1;
+                });
+            } catch (CacheLoadException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        loading.await();
+        cache.put("k", 2);
+        written.countDown();
+        assertEquals(2, single.get(5, TimeUnit.SECONDS), "加载期间写入的值应胜出");
+        assertEquals(2, cache.get("k"), "加载的旧值不应覆盖并发的 put");
+
+        CountDownLatch bulkLoading = new CountDownLatch(1);
+        CountDownLatch bulkWritten = new CountDownLatch(1);
+        CompletableFuture<Map<String, Integer>> bulk = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.getAll(Arrays.asList("a", "b"), keys -> {
+                    bulkLoading.countDown();
+                    bulkWritten.await();
+                    Map<String, Integer> result = new HashMap<>();
+                    for (String key : keys) {
+                        result.put(key, 1);
+                    }
+                    return result;
+                });
+            } catch (CacheLoadException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        bulkLoading.await();
+        cache.put("a", 2);
+        bulkWritten.countDown();
+        Map<String, Integer> values = bulk.get(5, TimeUnit.SECONDS);
+        assertEquals(2, values.get("a"), "批量加载期间写入的值应胜出");
+        assertEquals(1, values.get("b"));
+        assertEquals(2, cache.get("a"));
+        assertEquals(1, cache.get("b"));
+    }
+
+    @Test
+    void testRefreshAfterWriteServesStaleValue() throws Exception {
+        ManualClock clock = new ManualClock();
+        List<Runnable> pending = new ArrayList<>();
+        MemoryCache<String, Integer> cache = MemoryCache.<String, Integer>builder()
+            .refreshAfterWrite(new TimeDelta().seconds(1))
+            .executor(pending::add)
+            .clock(clock)
+            .build();
+        AtomicInteger version = new AtomicInteger();
+        CacheLoader<String, Integer> loader = key -> version.incrementAndGet();
+        assertEquals(1, cache.get("k", loader), "首次读取应在调用线程上加载");
+        clock.advance(new TimeDelta().seconds(2));
+        assertEquals(1, cache.get("k", loader), "刷新期间应返回旧值");
+        assertEquals(1, cache.get("k", loader));
+        assertEquals(1, pending.size(), "同一个键同时只应有一次刷新");
+        pending.remove(0).run();
+        assertEquals(2, cache.get("k", loader), "刷新完成后应返回新值");
+    }
+
+    @Test
+    void testGetAllBatchesMisses() throws Exception {
+        MemoryCache<Integer, String> cache = new MemoryCache<>();
+        cache.put(1, "one");
+        List<Set<Integer>> calls = new ArrayList<>();
+        BulkLoader<Integer, String> loader = keys -> {
+            calls.add(keys);
+            Map<Integer, String> result = new HashMap<>();
+            for (Integer key : keys) {
+                if (key != 4) result.put(key, "v" + key);
+            }
+            return result;
+        };
+        Map<Integer, String> values = cache.getAll(Arrays.asList(3, 1, 2, 4, 3), loader);
+        assertEquals(Arrays.asList(3, 1, 2), new ArrayList<>(values.keySet()), "结果应保持请求的顺序并跳过不存在的键");
+        assertEquals("one", values.get(1));
+        assertEquals(1, calls.size(), "所有未命中的键应合并成一次调用");
+        assertEquals(3, calls.get(0).size());
+        assertEquals("v2", cache.get(2), "批量加载的值应被缓存");
+    }
+
+    @Test
+    void testStats() throws Exception {
+        ManualClock clock = new ManualClock();
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder()
+            .maximumSize(10)
+            .expireAfterWrite(new TimeDelta().minutes(1))
+            .clock(clock)
+            .recordStats()
+            .build();
+        cache.put(1, 1);
+        assertEquals(1, cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(2, cache.get(2, key -> {
+            clock.advance(new TimeDelta().milliseconds(5));
+            return 2;
+        }));
+        assertThrows(CacheLoadException.class, () -> cache.get(3, key -> { throw new IllegalStateException(); }));
+        assertNull(cache.get(4, key -> null));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(4, stats.missCount(), "加载前的未命中应计入，加载内部的重复检查不应计入");
+        assertEquals(0.2, stats.hitRate(), 1e-9);
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(2, stats.loadFailureCount(), "抛出异常和返回 null 都算失败");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), stats.totalLoadTime());
+        assertEquals(2, stats.weightedSize());
+
+        cache.put(1, 10);
+        cache.remove(2);
+        for (int i = 100; i < 120; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        clock.advance(new TimeDelta().minutes(2));
+        cache.cleanUp();
+        CacheStats delta = cache.stats().minus(stats);
+        assertEquals(1, delta.removalCount(RemovalCause.REPLACED));
+        assertEquals(1, delta.removalCount(RemovalCause.EXPLICIT));
+        assertEquals(11, delta.removalCount(RemovalCause.SIZE), "21 项中超出上限的 11 项应被淘汰");
+        assertEquals(10, delta.removalCount(RemovalCause.EXPIRED));
+        assertEquals(21, delta.evictionCount());
+        assertEquals(21, delta.evictionWeight());
+        assertEquals(0, delta.hitCount());
+        assertEquals(TimeUnit.MINUTES.toNanos(2), delta.intervalNanos());
+        assertEquals(21 / 120.0, delta.evictionsPerSecond(), 1e-9);
+        assertEquals(0, cache.stats().weightedSize());
+    }
+
+    @Test
+    void testStatsDisabledByDefault() {
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder().maximumSize(10).build();
+        cache.put(1, 1);
+        cache.get(1);
+        cache.get(2);
+        CacheStats stats = cache.stats();
+        assertEquals(0, stats.requestCount(), "没有开启统计时不应计数");
+        assertEquals(1.0, stats.hitRate());
+        assertEquals(CacheStats.empty(), new MemoryCache<Integer, Integer>().stats());
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws Exception {
+        ManualClock clock = new ManualClock();
+        CacheCodec<String> codec = CacheCodec.jackson(String.class);
+        MemoryCache<String, String> cache = MemoryCache.<String, String>builder()
+            .maximumSize(100)
+            .expireAfterWrite(new TimeDelta().minutes(10))
+            .clock(clock)
+            .build();
+        cache.put("old", "v0");
+        clock.advance(new TimeDelta().minutes(8));
+        for (int i = 0; i < 50; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        Path file = Files.createTempFile("cache", ".snapshot");
+        try {
+            assertEquals(51, cache.saveSnapshot(file, codec, codec));
+
+            clock.advance(new TimeDelta().minutes(1));
+            MemoryCache<String, String> restored = MemoryCache.<String, String>builder()
+                .maximumSize(100)
+                .expireAfterWrite(new TimeDelta().minutes(10))
+                .clock(clock)
+                .build();
+            restored.put("k0", "fresh");
+            assertEquals(50, restored.loadSnapshot(file, codec, codec), "已经存在的键不应被覆盖");
+            assertEquals("fresh", restored.get("k0"));
+            assertEquals("v49", restored.get("k49"));
+            assertEquals("v0", restored.get("old"));
+
+            clock.advance(new TimeDelta().minutes(1).seconds(1));
+            assertNull(restored.get("old"), "剩余存活时间应扣除保存之后经过的时间");
+            assertEquals("v49", restored.get("k49"));
+
+            clock.advance(new TimeDelta().minutes(20));
+            MemoryCache<String, String> late = MemoryCache.<String, String>builder().clock(clock).build();
+            assertEquals(0, late.loadSnapshot(file, codec, codec), "全部过期的快照不应恢复任何项");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testSnapshotRejectsCorruptedFile() throws Exception {
+        CacheCodec<Integer> codec = CacheCodec.jackson(Integer.class);
+        MemoryCache<Integer, Integer> cache = new MemoryCache<>();
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+        }
+        Path file = Files.createTempFile("cache", ".snapshot");
+        try {
+            cache.saveSnapshot(file, codec, codec);
+            byte[] data = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(data, data.length - 20));
+            assertThrows(IOException.class, () -> new MemoryCache<Integer, Integer>().loadSnapshot(file, codec, codec),
+                "被截断的快照应报错");
+            Files.write(file, new byte[] {1, 2, 3});
+            assertThrows(IOException.class, () -> new MemoryCache<Integer, Integer>().loadSnapshot(file, codec, codec));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testBatchOperations() {
+        List<RemovalCause> causes = Collections.synchronizedList(new ArrayList<>());
+        MemoryCache<Integer, Integer> cache = MemoryCache.<Integer, Integer>builder()
+            .maximumSize(100)
+            .removalListener((key, value, cause) -> causes.add(cause))
+            .recordStats()
+            .build();
+        Map<Integer, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            entries.put(i, i);
+        }
+        cache.putAll(entries);
+        cache.cleanUp();
+        assertEquals(100, cache.size(), "批量写入之后也应按上限淘汰");
+        assertEquals(100, causes.size());
+
+        List<Integer> keys = new ArrayList<>(entries.keySet());
+        Map<Integer, Integer> present = cache.getAll(keys);
+        assertEquals(100, present.size());
+        present.forEach((key, value) -> assertEquals(key, value));
+        CacheStats stats = cache.stats();
+        assertEquals(100, stats.hitCount());
+        assertEquals(100, stats.missCount());
+
+        cache.removeAll(keys);
+        cache.cleanUp();
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.weightedSize(), "批量移除应同步到淘汰策略");
+        assertEquals(100, Collections.frequency(causes, RemovalCause.EXPLICIT));
+    }
+
+    @Test
+    void testComputeAndMerge() throws InterruptedException {
+        ManualClock clock = new ManualClock();
+        List<String> removals = Collections.synchronizedList(new ArrayList<>());
+        MemoryCache<String, Integer> cache = MemoryCache.<String, Integer>builder()
+            .expireAfterWrite(new TimeDelta().seconds(10))
+            .removalListener((key, value, cause) -> removals.add(key + "=" + value + ":" + cause))
+            .clock(clock)
+            .build();
+        assertEquals(1, cache.compute("a", (key, value) -> value == null ? 1 : value + 1));
+        assertEquals(2, cache.compute("a", (key, value) -> value == null ? 1 : value + 1));
+        assertNull(cache.compute("b", (key, value) -> null), "返回 null 时不应写入");
+        assertFalse(cache.containsKey("b"));
+        assertEquals(5, cache.merge("a", 3, Integer::sum));
+        assertNull(cache.compute("a", (key, value) -> null));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(Arrays.asList("a=1:REPLACED", "a=2:REPLACED", "a=5:EXPLICIT"), removals);
+
+        cache.put("c", 7);
+        clock.advance(new TimeDelta().seconds(11));
+        assertEquals(1, cache.merge("c", 1, Integer::sum), "过期的项应视为不存在");
+
+        cache.put("n", 0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cache.merge("n", 1, Integer::sum);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, cache.get("n"), "并发的 merge 不应丢失更新");
+    }
+
+    @Test
+    void testAsMapView() {
+        MemoryCache<String, String> cache = MemoryCache.<String, String>builder().maximumSize(10).build();
+        ConcurrentMap<String, String> map = cache.asMap();
+        assertNull(map.put("a", "1"));
+        assertEquals("1", map.put("a", "2"));
+        assertEquals("2", map.putIfAbsent("a", "3"));
+        assertNull(map.putIfAbsent("b", "4"));
+        assertEquals("4", cache.get("b"), "视图的写入应作用于缓存");
+        assertFalse(map.replace("a", "1", "5"));
+        assertTrue(map.replace("a", "2", "5"));
+        assertEquals("5", map.replace("a", "6"));
+        assertNull(map.replace("missing", "x"));
+        assertFalse(map.remove("a", "5"));
+        assertTrue(map.remove("a", "6"));
+        assertEquals("4", map.remove("b"));
+        assertTrue(map.isEmpty());
+
+        cache.put("x", "1");
+        cache.put("y", "2");
+        Map<String, String> copy = new HashMap<>(map);
+        assertEquals(2, copy.size());
+        assertEquals("2", copy.get("y"));
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() + "!");
+        }
+        assertEquals("1!", cache.get("x"), "Entry.setValue 应写回缓存");
+        map.keySet().removeIf("x"::equals);
+        assertFalse(cache.containsKey("x"));
+        assertEquals(Collections.singletonMap("y", "2!"), map);
+    }
+
+    @Test
+    void testAsyncLoadingCache() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<Integer, String> cache = MemoryCache.<Integer, String>builder()
+            .maximumSize(100)
+            .buildAsync(key -> {
+                loads.incrementAndGet();
+                Thread.sleep(50);
+                return "v" + key;
+            });
+        CompletableFuture<String> a = cache.get(1);
+        CompletableFuture<String> b = cache.get(1);
+        assertEquals("v1", a.get(1, TimeUnit.SECONDS));
+        assertEquals("v1", b.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get(), "并发的未命中应共享一次加载");
+        assertTrue(cache.get(1).isDone(), "命中时应返回已完成的 future");
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(cache.getAll(Arrays.asList(1, 2, 3)).get(1, TimeUnit.SECONDS).keySet()));
+    }
+
+    @Test
+    void testBuilderValidation() {
+        assertThrows(IllegalStateException.class, () -> MemoryCache.<Integer, Integer>builder().maximumWeight(10).build());
+        assertThrows(IllegalStateException.class, () -> MemoryCache.<Integer, Integer>builder().maximumSize(10).maximumWeight(10));
+        assertThrows(IllegalArgumentException.class, () -> MemoryCache.<Integer, Integer>builder().maximumSize(-1));
+        assertThrows(IllegalStateException.class, () -> MemoryCache.<Integer, Integer>builder()
+            .expireAfterWrite(new TimeDelta().seconds(1))
+            .expireAfter((key, value) -> new TimeDelta().seconds(1))
+            .build());
+    }
+}
@@ -0,0 +1,246 @@
+package me.yuyuko.sdk.io.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import me.yuyuko.sdk.time.TimeDelta;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MemoryMappedFileTest {
+    private static final int SEGMENT = 4096;
+
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("yuyuko-mmap", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void testLongOffsetsAcrossSegments() throws IOException {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(10 * SEGMENT + 100).segmentSize(SEGMENT).build()) {
+            assertEquals(10 * SEGMENT + 100, Files.size(path), "文件应被扩大到映射的大小");
+            long last = file.size() - 1;
+            file.write(last, (byte) 7);
+            assertEquals(7, file.read(last));
+
+            byte[] data = new byte[3 * SEGMENT];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            long offset = SEGMENT - 10;
+            file.write(offset, data);
+            byte[] back = new byte[data.length];
+            file.read(offset, back);
+            assertArrayEquals(data, back, "跨越段边界的读写应透明地拆开");
+            assertEquals(data[10], file.read(SEGMENT));
+
+            assertThrows(IndexOutOfBoundsException.class, () -> file.read(file.size()));
+            assertThrows(IndexOutOfBoundsException.class, () -> file.write(last, new byte[2]));
+        }
+    }
+
+    @Test
+    void testGrowKeepsDataAndRemapsTail() throws IOException {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(SEGMENT + 10).segmentSize(SEGMENT).build()) {
+            file.write(5, (byte) 1);
+            file.write(SEGMENT + 9, (byte) 2);
+            file.grow(5L * SEGMENT);
+            assertEquals(5L * SEGMENT, file.size());
+            assertEquals(5L * SEGMENT, Files.size(path));
+            assertEquals(1, file.read(5));
+            assertEquals(2, file.read(SEGMENT + 9), "尾段重新映射后数据应保留");
+            file.write(SEGMENT + 100, (byte) 3);
+            assertEquals(3, file.read(SEGMENT + 100), "扩大之后尾段应能访问新的区域");
+            file.write(5L * SEGMENT - 1, (byte) 4);
+            assertEquals(4, file.read(5L * SEGMENT - 1));
+        }
+    }
+
+    @Test
+    void testReadOnly() throws IOException {
+        try (MemoryMappedFile file = new MemoryMappedFile(path.toString(), 3 * SEGMENT)) {
+            file.write(2 * SEGMENT + 1, (byte) 9);
+        }
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).segmentSize(SEGMENT).readOnly().build()) {
+            assertTrue(file.isReadOnly());
+            assertEquals(3 * SEGMENT, file.size(), "默认映射整个文件");
+            assertEquals(9, file.read(2 * SEGMENT + 1));
+            assertThrows(ReadOnlyBufferException.class, () -> file.write(0, (byte) 1));
+            assertThrows(ReadOnlyBufferException.class, () -> file.grow(4 * SEGMENT));
+        }
+        assertThrows(IOException.class, () -> MemoryMappedFile.builder(path).size(4 * SEGMENT).readOnly().build(),
+            "只读时不能映射超出文件的部分");
+    }
+
+    @Test
+    void testTypedAccessors() throws IOException {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(2 * SEGMENT).segmentSize(SEGMENT).order(order).build()) {
+                file.putInt(0, 0x01020304);
+                file.putLong(16, -2L);
+                file.putDouble(32, Math.PI);
+                file.putShort(48, (short) -3);
+                file.putFloat(52, 1.5f);
+                assertEquals(0x01020304, file.getInt(0));
+                assertEquals(-2L, file.getLong(16));
+                assertEquals(Math.PI, file.getDouble(32));
+                assertEquals(-3, file.getShort(48));
+                assertEquals(1.5f, file.getFloat(52));
+                assertEquals(order == ByteOrder.BIG_ENDIAN ? 1 : 4, file.read(0), "应使用配置的字节序");
+
+                for (int shift = 1; shift < 8; shift++) {
+                    long offset = SEGMENT - shift;
+                    file.putLong(offset, 0x8877665544332211L);
+                    assertEquals(0x8877665544332211L, file.getLong(offset), "跨越段边界的 long 应拼接正确");
+                    assertEquals(order == ByteOrder.BIG_ENDIAN ? (byte) 0x88 : (byte) 0x11, file.read(offset));
+                }
+                file.putInt(SEGMENT - 2, -5);
+                assertEquals(-5, file.getInt(SEGMENT - 2), "跨越段边界时也应做符号扩展");
+            }
+        }
+    }
+
+    @Test
+    void testBulkBuffersAndSlice() throws IOException {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(4 * SEGMENT).segmentSize(SEGMENT)
+            .order(ByteOrder.LITTLE_ENDIAN).build()) {
+            ByteBuffer src = ByteBuffer.allocate(2 * SEGMENT);
+            for (int i = 0; i < src.capacity(); i++) {
+                src.put(i, (byte) (i * 31));
+            }
+            file.write(SEGMENT / 2, src);
+            assertEquals(0, src.remaining(), "写入后 src 的 position 应前进");
+            ByteBuffer dst = ByteBuffer.allocateDirect(2 * SEGMENT);
+            file.read(SEGMENT / 2, dst);
+            dst.flip();
+            src.flip();
+            assertEquals(src, dst);
+
+            ByteBuffer slice = file.slice(SEGMENT + 8, 16);
+            assertEquals(16, slice.capacity());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, slice.order());
+            slice.putLong(0, 42L);
+            assertEquals(42L, file.getLong(SEGMENT + 8), "slice 应是零拷贝的视图");
+            assertThrows(IllegalArgumentException.class, () -> file.slice(SEGMENT - 4, 8));
+        }
+    }
+
+    @Test
+    void testTransferTo() throws IOException {
+        Path copy = Files.createTempFile("yuyuko-mmap", ".copy");
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(3 * SEGMENT).segmentSize(SEGMENT).build()) {
+            for (int i = 0; i < 3 * SEGMENT; i += 8) {
+                file.putLong(i, i);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(SEGMENT, file.transferTo(SEGMENT, SEGMENT, Channels.newChannel(out)));
+            ByteBuffer part = ByteBuffer.wrap(out.toByteArray());
+            assertEquals(SEGMENT, part.getLong(0));
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                assertEquals(3 * SEGMENT, file.transferTo(channel));
+            }
+            assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(copy));
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    void testClosed() throws IOException {
+        MemoryMappedFile file = MemoryMappedFile.builder(path).size(SEGMENT).segmentSize(SEGMENT).build();
+        file.close();
+        assertThrows(IllegalStateException.class, () -> file.read(0));
+        file.close();
+    }
+
+    @Test
+    void testFlushOnlyDirtyPages() throws IOException {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(4 * SEGMENT).segmentSize(2 * SEGMENT)
+            .flushPolicy(FlushPolicy.onClose()).build()) {
+            assertEquals(0, file.dirtyBytes());
+            file.write(1, (byte) 1);
+            file.write(10, (byte) 2);
+            file.putLong(3 * SEGMENT + 5, 7L);
+            assertEquals(2 * SEGMENT, file.dirtyBytes(), "同一页的多次写入只记一次");
+            file.putLong(2 * SEGMENT - 4, -1L);
+            assertEquals(4 * SEGMENT, file.dirtyBytes(), "跨越段边界的写入应记下两边的页");
+            file.flush();
+            assertEquals(0, file.dirtyBytes(), "写回之后应清除修改记录");
+            file.write(0, new byte[SEGMENT + 1]);
+            assertEquals(2 * SEGMENT, file.dirtyBytes());
+            file.grow(6 * SEGMENT);
+            file.write(5 * SEGMENT, (byte) 3);
+            assertEquals(3 * SEGMENT, file.dirtyBytes());
+            file.flush();
+            assertEquals(0, file.dirtyBytes(), "扩大之后尾段的修改也应写回");
+        }
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).segmentSize(SEGMENT).readOnly().build()) {
+            assertEquals(6 * SEGMENT, file.size());
+            assertEquals(3, file.read(5 * SEGMENT));
+            file.flush();
+            assertEquals(0, file.dirtyBytes(), "只读打开时不记录修改");
+        }
+    }
+
+    @Test
+    void testFlushAfterDirtyBytes() throws IOException {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(4 * SEGMENT).segmentSize(SEGMENT)
+            .flushPolicy(FlushPolicy.afterDirtyBytes(2 * SEGMENT)).executor(Runnable::run).build()) {
+            file.write(0, (byte) 1);
+            assertEquals(SEGMENT, file.dirtyBytes());
+            file.write(SEGMENT, (byte) 1);
+            assertEquals(0, file.dirtyBytes(), "达到阈值时应写回");
+            file.write(2 * SEGMENT, (byte) 1);
+            assertEquals(SEGMENT, file.dirtyBytes());
+        }
+        assertThrows(IllegalArgumentException.class, () -> FlushPolicy.afterDirtyBytes(0));
+    }
+
+    @Test
+    void testPeriodicFlush() throws Exception {
+        try (MemoryMappedFile file = MemoryMappedFile.builder(path).size(2 * SEGMENT).segmentSize(SEGMENT)
+            .flushPolicy(FlushPolicy.periodic(new TimeDelta().milliseconds(20))).build()) {
+            for (int round = 0; round < 2; round++) {
+                file.putInt(SEGMENT + 4, round);
+                long deadline = System.nanoTime() + 5_000_000_000L;
+                while (file.dirtyBytes() != 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                assertEquals(0, file.dirtyBytes(), "后台应定期写回");
+            }
+        }
+    }
+
+    @Test
+    void testCloseUnmaps() throws IOException {
+        assumeTrue(SegmentMapper.arenaSupported(), "需要 Foreign Memory API");
+        MemoryMappedFile file = MemoryMappedFile.builder(path).size(SEGMENT).segmentSize(SEGMENT)
+            .flushPolicy(FlushPolicy.onClose()).build();
+        ByteBuffer slice = file.slice(0, 8);
+        slice.putLong(0, 99L);
+        file.markDirty(0, 8);
+        file.close();
+        assertThrows(IllegalStateException.class, () -> slice.getLong(0), "关闭之后映射应已解除");
+        assertEquals(99L, ByteBuffer.wrap(Files.readAllBytes(path)).getLong(0));
+    }
+}
@@ -0,0 +1,131 @@
+package me.yuyuko.sdk.io.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapMemoryCacheTest {
+
+    public static class Order {
+        public long id;
+        public String user;
+        public double amount;
+    }
+
+    private static final CacheCodec<String> UTF8 = new CacheCodec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    };
+
+    @Test
+    void testJacksonRoundTrip() {
+        OffHeapMemoryCache<Long, Order> cache = OffHeapMemoryCache.<Long, Order>builder(CacheCodec.jackson(Order.class)).build();
+        Order order = new Order();
+        order.id = 1;
+        order.user = "幽幽子";
+        order.amount = 12345.6;
+        cache.put(1L, order);
+        Order read = cache.get(1L);
+        assertNotSame(order, read, "没有热点层时每次读取都应反序列化");
+        assertEquals("幽幽子", read.user);
+        assertEquals(12345.6, read.amount);
+        cache.remove(1L);
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void testCapacityAndDefragmentation() {
+        OffHeapMemoryCache<Integer, String> cache = OffHeapMemoryCache.<Integer, String>builder(UTF8)
+            .capacity(64 * 1024)
+            .segmentSize(8 * 1024)
+            .build();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) sb.append('x');
+        String filler = sb.toString();
+        // 反复覆盖同一批键，产生大量碎片
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 200; i++) {
+                cache.put(i, i + ":" + round + ":" + filler);
+            }
+        }
+        cache.cleanUp();
+        assertEquals(64 * 1024, cache.allocatedBytes(), "直接内存不应超过容量");
+        assertTrue(cache.weightedSize() <= 48 * 1024, "有效字节数不应超过可用容量: " + cache.weightedSize());
+        int present = 0;
+        for (int i = 0; i < 200; i++) {
+            String value = cache.get(i);
+            if (value != null) {
+                present++;
+                assertTrue(value.startsWith(i + ":49:"), "整理后应读到最新的值: " + value);
+            }
+        }
+        assertTrue(present > 100, "容量足够时大部分键应保留，实际 " + present);
+        assertThrows(IllegalArgumentException.class, () -> cache.put(-1, new String(new char[9000])));
+    }
+
+    @Test
+    void testHotTier() {
+        OffHeapMemoryCache<Integer, Order> cache = OffHeapMemoryCache.<Integer, Order>builder(CacheCodec.jackson(Order.class))
+            .hotTierSize(10)
+            .build();
+        Order order = new Order();
+        order.user = "a";
+        cache.put(1, order);
+        Order first = cache.get(1);
+        assertSame(first, cache.get(1), "热点层应返回同一个反序列化后的对象");
+        order.user = "b";
+        cache.put(1, order);
+        assertEquals("b", cache.get(1).user, "覆盖后热点层中的旧对象应失效");
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        OffHeapMemoryCache<Integer, String> cache = OffHeapMemoryCache.<Integer, String>builder(UTF8)
+            .capacity(256 * 1024)
+            .segmentSize(16 * 1024)
+            .hotTierSize(64)
+            .build();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    int key = random.nextInt(5_000);
+                    if (random.nextInt(3) == 0) {
+                        cache.put(key, "value-" + key + "-" + random.nextInt(1000));
+                    } else {
+                        String value = cache.get(key);
+                        if (value != null && !value.startsWith("value-" + key + "-")) {
+                            throw new AssertionError("值与键不匹配: " + key + " -> " + value);
+                        }
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), "并发访问出错: " + errors);
+    }
+}
@@ -0,0 +1,102 @@
+package me.yuyuko.sdk.io.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveMemoryCacheTest {
+
+    @Test
+    void testLongBasicOperations() {
+        LongMemoryCache<String> cache = new LongMemoryCache<>();
+        cache.put(0, "zero");
+        cache.put(-1, "minus one");
+        cache.put(Long.MIN_VALUE, "min");
+        assertEquals("zero", cache.get(0));
+        assertEquals("minus one", cache.get(-1));
+        assertEquals("min", cache.get(Long.MIN_VALUE));
+        assertNull(cache.get(1));
+        assertEquals(3, cache.size());
+
+        cache.remove(0);
+        assertFalse(cache.containsKey(0), "删除后不应再存在");
+        assertNull(cache.get(0));
+        cache.put(0, "again");
+        assertEquals("again", cache.get(0));
+        assertEquals(3, cache.size());
+
+        for (long i = 0; i < 100_000; i++) {
+            cache.put(i * 31, "v" + i);
+        }
+        for (long i = 0; i < 100_000; i += 997) {
+            assertEquals("v" + i, cache.get(i * 31), "扩容后应能读到所有的键");
+        }
+        for (long i = 0; i < 100_000; i++) {
+            cache.remove(i * 31);
+        }
+        assertEquals(2, cache.size(), "删除标记不应计入大小");
+        cache.clear();
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    void testIntMaximumSize() {
+        IntMemoryCache<Integer> cache = IntMemoryCache.<Integer>builder().maximumSize(1000).build();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 100; i < 100_000; i++) {
+            cache.put(i, i);
+            // 持续读取的前 100 个键在 CLOCK 淘汰中会被跳过
+            cache.get(i % 100);
+        }
+        assertTrue(cache.size() <= 1000, "项数不应超过上限: " + cache.size());
+        int retained = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get(i) != null) retained++;
+        }
+        assertTrue(retained >= 90, "经常读取的键应被保留，实际保留 " + retained);
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        LongMemoryCache<Long> cache = LongMemoryCache.<Long>builder().maximumSize(5_000).build();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100_000; i++) {
+                    long key = random.nextLong(20_000);
+                    int op = random.nextInt(10);
+                    if (op < 3) {
+                        cache.put(key, key);
+                    } else if (op == 3) {
+                        cache.remove(key);
+                    } else {
+                        Long value = cache.get(key);
+                        if (value != null && value != key) {
+                            throw new AssertionError("值与键不匹配: " + key + " -> " + value);
+                        }
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), "并发访问出错: " + errors);
+        assertTrue(cache.size() <= 5_000, "项数不应超过上限: " + cache.size());
+    }
+}
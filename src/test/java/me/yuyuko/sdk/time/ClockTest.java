@@ -0,0 +1,59 @@
+package me.yuyuko.sdk.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockTest {
+
+    @Test
+    void testManualClockDrivesRateLimiters() {
+        ManualClock clock = new ManualClock();
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(2, new TimeDelta().seconds(1), 2,
+            TimingWheel.shared(), clock);
+        assertTrue(bucket.tryAcquire(2));
+        assertFalse(bucket.tryAcquire(), "桶空之后不应放行");
+        clock.advance(new TimeDelta().milliseconds(499));
+        assertFalse(bucket.tryAcquire(), "补充一个许可需要 500ms");
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertTrue(bucket.tryAcquire(), "500ms 后应补充一个许可");
+
+        SlidingWindowRateLimiter window = new SlidingWindowRateLimiter(10, new TimeDelta().seconds(1),
+            TimingWheel.shared(), clock);
+        assertTrue(window.tryAcquire(10));
+        assertFalse(window.tryAcquire());
+        clock.advance(new TimeDelta().milliseconds(1500));
+        // 前一个窗口还剩一半的权重：10 * 0.5 = 5
+        assertTrue(window.tryAcquire(5));
+        assertFalse(window.tryAcquire());
+    }
+
+    @Test
+    void testManualClockStopwatch() {
+        ManualClock clock = new ManualClock(1_000);
+        Stopwatch sw = Stopwatch.createStarted(clock);
+        clock.advance(new TimeDelta().seconds(3));
+        assertEquals(3, sw.elapsed(TimeUnit.SECONDS));
+        assertEquals(4_000, clock.currentTimeMillis(), "墙上时间应同步推进");
+        assertEquals(new TimeDelta().seconds(3), clock.elapsedSince(0));
+        for (int i = 0; i < 10; i++) {
+            clock.advance(100, TimeUnit.MICROSECONDS);
+        }
+        assertEquals(4_001, clock.currentTimeMillis(), "不足 1 毫秒的推进应累计");
+        assertThrows(IllegalArgumentException.class, () -> clock.advance(-1, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void testCoarseClockAdvances() throws InterruptedException {
+        try (CoarseClock clock = new CoarseClock(new TimeDelta().milliseconds(1))) {
+            long start = clock.nanoTime();
+            Thread.sleep(50);
+            long elapsed = clock.elapsedNanos(start);
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(40), "粗粒度时钟应跟随真实时间推进");
+            assertTrue(Math.abs(clock.currentTimeMillis() - System.currentTimeMillis()) < 1_000);
+        }
+        assertThrows(IllegalStateException.class, () -> CoarseClock.shared().close());
+    }
+}
@@ -0,0 +1,89 @@
+package me.yuyuko.sdk.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(new TimeDelta().seconds(10), 2);
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(100_000, s.count());
+        assertEquals(1000, s.min(), "最小值应精确");
+        assertEquals(100_000_000, s.max(), "最大值应精确");
+        for (double p : new double[] { 50, 90, 99, 99.9 }) {
+            double expected = p * 1000 * 1000;
+            long actual = s.valueAtPercentile(p);
+            assertTrue(Math.abs(actual - expected) / expected <= 0.01,
+                "p" + p + " 的相对误差应不超过 1%，实际为 " + actual);
+        }
+        assertEquals(50_000_500, s.mean(), 50_000_500 * 0.01, "平均值的相对误差应不超过 1%");
+        assertEquals(100_000_000, s.valueAtPercentile(100));
+    }
+
+    @Test
+    void testClampAndMerge() {
+        LatencyHistogram a = new LatencyHistogram(new TimeDelta().milliseconds(1), 3);
+        LatencyHistogram b = new LatencyHistogram(new TimeDelta().milliseconds(1), 3);
+        a.record(-5);
+        a.record(new TimeDelta().seconds(1));
+        b.record(500);
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(3, merged.count());
+        assertEquals(0, merged.min(), "负值应按 0 记录");
+        assertEquals(1_000_000, merged.max(), "超过上限的值应按上限记录");
+        assertEquals(500, merged.valueAtPercentile(50));
+        LatencyHistogram other = new LatencyHistogram(new TimeDelta().milliseconds(1), 2);
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(other.snapshot()));
+        assertEquals(0, new LatencyHistogram().snapshot().valueAtPercentile(99), "空直方图应返回 0");
+    }
+
+    @Test
+    void testIntervalSnapshotsLoseNoSamples() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int writers = 4;
+        int perWriter = 200_000;
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    histogram.record(i);
+                }
+                done.countDown();
+            });
+            t.start();
+        }
+        long total = 0;
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            total += histogram.intervalSnapshot().count();
+        }
+        total += histogram.intervalSnapshot().count();
+        assertEquals((long) writers * perWriter, total, "并发取快照时不应丢失或重复样本");
+        assertEquals(0, histogram.intervalSnapshot().count(), "取完之后应为空");
+    }
+
+    @Test
+    void testStopwatch() throws InterruptedException {
+        Stopwatch sw = Stopwatch.createStarted();
+        Thread.sleep(20);
+        sw.stop();
+        long elapsed = sw.elapsedNanos();
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(20), "耗时不应少于睡眠时间");
+        Thread.sleep(10);
+        assertEquals(elapsed, sw.elapsedNanos(), "停止后耗时不应变化");
+        assertEquals(elapsed, sw.elapsed().toTimeUnit(TimeUnit.NANOSECONDS));
+        assertThrows(IllegalStateException.class, sw::stop);
+        sw.start();
+        assertTrue(sw.lap() >= elapsed, "lap 应包含之前累计的耗时");
+        assertTrue(sw.isRunning());
+        assertEquals(0, sw.reset().elapsedNanos());
+    }
+}
@@ -0,0 +1,74 @@
+package me.yuyuko.sdk.time;
+
+import me.yuyuko.sdk.interfaces.time.IRateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private static int hammer(IRateLimiter limiter, int threads, int attemptsPerThread) throws InterruptedException {
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (limiter.tryAcquire()) granted.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return granted.get();
+    }
+
+    @Test
+    void testTokenBucketBurstAndContention() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, new TimeDelta().hours(1));
+        assertEquals(1000, limiter.availablePermits(), "初始时桶应该是满的");
+        assertEquals(1000, hammer(limiter, 8, 10_000), "并发获取时放行数应恰好等于容量");
+        assertFalse(limiter.tryAcquire());
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(1001), "超过容量的请求永远无法满足");
+    }
+
+    @Test
+    void testTokenBucketAcquireAsync() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, new TimeDelta().milliseconds(100), 1,
+            TimingWheel.shared());
+        assertTrue(limiter.acquireAsync().isDone(), "有许可时应立即完成");
+        long start = System.nanoTime();
+        CompletableFuture<Void> second = limiter.acquireAsync();
+        CompletableFuture<Void> third = limiter.acquireAsync();
+        assertFalse(second.isDone(), "没有许可时不应立即完成");
+        second.join();
+        third.join();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190), "预留应按速率依次完成");
+        assertFalse(limiter.tryAcquire(), "预留的许可不应再被 tryAcquire 获取");
+    }
+
+    @Test
+    void testSlidingWindowContention() throws InterruptedException {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(500, new TimeDelta().hours(1));
+        assertEquals(500, hammer(limiter, 8, 10_000), "并发获取时放行数应恰好等于上限");
+        assertFalse(limiter.tryAcquire(3));
+        assertThrows(IllegalArgumentException.class,
+            () -> new SlidingWindowRateLimiter(SlidingWindowRateLimiter.MAX_LIMIT + 1, new TimeDelta().seconds(1)));
+    }
+
+    @Test
+    void testSlidingWindowAcquireAsync() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(2, new TimeDelta().milliseconds(100));
+        long start = System.nanoTime();
+        assertTrue(limiter.tryAcquire(2));
+        CompletableFuture<Void> future = limiter.acquireAsync();
+        assertFalse(future.isDone(), "窗口已满时不应立即完成");
+        future.join();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100), "应等到窗口滑过之后");
+    }
+}
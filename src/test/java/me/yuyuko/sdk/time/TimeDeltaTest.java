@@ -0,0 +1,77 @@
+package me.yuyuko.sdk.time;
+
+import me.yuyuko.sdk.exceptions.time.TimeDeltaParseException;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeDeltaTest {
+
+    private static Duration parse(String text) throws TimeDeltaParseException {
+        return TimeDelta.parse(text).getDuration();
+    }
+
+    @Test
+    void testParseCompact() throws TimeDeltaParseException {
+        assertEquals(Duration.ofMinutes(90), parse("1h30m"));
+        assertEquals(Duration.ofMillis(250), parse("250ms"));
+        assertEquals(Duration.ofMillis(-1500), parse("-1.5s"), "应支持符号和小数");
+        assertEquals(Duration.ofHours(60), parse(" 2d 12h "), "应允许空白");
+        assertEquals(Duration.ofNanos(1_002_003), parse("1ms2us3ns"));
+        assertEquals(Duration.ofNanos(5_000), parse("5µs"));
+        assertEquals(Duration.ofDays(14), parse("2w"));
+        assertEquals(Duration.ZERO, parse("0"), "单独的 0 不需要单位");
+    }
+
+    @Test
+    void testParseIso() throws TimeDeltaParseException {
+        assertEquals(Duration.ofSeconds(5), parse("PT5S"));
+        assertEquals(Duration.parse("P1DT2H3M4.5S"), parse("P1DT2H3M4.5S"));
+        assertEquals(Duration.parse("-PT-6H+3M"), parse("-PT-6H+3M"), "应与 Duration.parse 的符号规则一致");
+        assertEquals(Duration.ofDays(14), parse("p2w"), "字母不区分大小写");
+    }
+
+    @Test
+    void testParseErrors() {
+        for (String bad : new String[] { "", "  ", "5", "1x", "1h30", "h", "PT", "P1H", "PT1S2M", "P1Y", "99999999999999999999ns", "300y" }) {
+            assertThrows(TimeDeltaParseException.class, () -> TimeDelta.parse(bad), "'" + bad + "' 应解析失败");
+        }
+        TimeDeltaParseException e = assertThrows(TimeDeltaParseException.class, () -> TimeDelta.parse("1h30x"));
+        assertEquals(4, e.getErrorIndex(), "应指出出错的位置");
+    }
+
+    @Test
+    void testParseByteBufferAndCache() throws TimeDeltaParseException {
+        ByteBuffer buffer = ByteBuffer.wrap("timeout=1h30m;".getBytes(StandardCharsets.US_ASCII));
+        buffer.position(8).limit(13);
+        assertEquals(Duration.ofMinutes(90), TimeDelta.parse(buffer).getDuration());
+        assertEquals(8, buffer.position(), "不应改变 position");
+        TimeDelta first = TimeDelta.parse("30s");
+        TimeDelta second = TimeDelta.parse("30s");
+        assertNotSame(first, second, "TimeDelta 是可变的，缓存命中时也应返回新对象");
+        first.seconds(1);
+        assertEquals(Duration.ofSeconds(30), TimeDelta.parse("30s").getDuration(), "修改返回值不应影响缓存");
+    }
+
+    @Test
+    void testFormatRoundTrip() throws TimeDeltaParseException, IOException {
+        assertEquals("0s", new TimeDelta().format());
+        assertEquals("1d2h3m4s5ms6us7ns", new TimeDelta().days(1).hours(2).minutes(3).seconds(4)
+            .milliseconds(5).nanos(6_007).format());
+        assertEquals("-1s500ms", new TimeDelta().milliseconds(-1500).format());
+        StringWriter out = new StringWriter();
+        new TimeDelta().hours(1).minutes(30).format(out);
+        assertEquals("1h30m", out.toString());
+        for (String text : new String[] { "1h30m", "-2d3ns", "250ms", "7w" }) {
+            TimeDelta delta = TimeDelta.parse(text);
+            assertEquals(delta, TimeDelta.parse(delta.format()), "格式化结果应能解析回原值");
+        }
+    }
+}
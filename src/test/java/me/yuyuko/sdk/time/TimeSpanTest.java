@@ -0,0 +1,71 @@
+package me.yuyuko.sdk.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSpanTest {
+
+    @Test
+    void testFluentBuilderMatchesTimeDelta() {
+        TimeSpan span = TimeSpan.ZERO.days(10).hours(5).minutes(30).seconds(45).milliseconds(250).nanos(7);
+        TimeDelta delta = new TimeDelta().days(10).hours(5).minutes(30).seconds(45).milliseconds(250).nanos(7);
+        assertEquals(delta.getDuration(), span.toDuration(), "链式构造的结果应与 TimeDelta 一致");
+        assertEquals(delta.toString(), span.toString(), "字符串表示应与 Duration 相同");
+        assertEquals(span, delta.toTimeSpan(), "TimeDelta 转换后应相等");
+        assertEquals(delta, span.toTimeDelta(), "转换回 TimeDelta 后应相等");
+    }
+
+    @Test
+    void testImmutableAndCached() {
+        TimeSpan base = TimeSpan.ofSeconds(1);
+        TimeSpan longer = base.seconds(1);
+        assertEquals(1, base.toTimeUnit(TimeUnit.SECONDS), "原值不应被修改");
+        assertEquals(2, longer.toTimeUnit(TimeUnit.SECONDS));
+        assertSame(TimeSpan.ofMillis(500), TimeSpan.ofNanos(500_000_000L), "整毫秒应返回缓存实例");
+        assertSame(TimeSpan.ofSeconds(30), TimeSpan.of(30_000, TimeUnit.MILLISECONDS), "整秒应返回缓存实例");
+        assertSame(TimeSpan.ZERO, base.minus(base), "零应返回常量");
+        assertSame(base, base.multiply(1));
+        assertSame(base, base.divide(1));
+    }
+
+    @Test
+    void testSaturation() {
+        assertSame(TimeSpan.MAX, TimeSpan.ZERO.years(1000), "正向溢出应饱和到 MAX");
+        assertSame(TimeSpan.MIN, TimeSpan.ZERO.years(-1000), "负向溢出应饱和到 MIN");
+        assertSame(TimeSpan.MAX, TimeSpan.MAX.plus(TimeSpan.ofSeconds(1)));
+        assertSame(TimeSpan.MIN, TimeSpan.MIN.minus(TimeSpan.ofSeconds(1)));
+        assertSame(TimeSpan.MAX, TimeSpan.ofSeconds(1).minus(TimeSpan.MIN));
+        assertSame(TimeSpan.ZERO, TimeSpan.MIN.minus(TimeSpan.MIN));
+        assertSame(TimeSpan.MIN, TimeSpan.MAX.multiply(-2));
+        assertSame(TimeSpan.MAX, TimeSpan.MIN.divide(-1), "MIN / -1 应饱和到 MAX");
+        assertSame(TimeSpan.MAX, TimeSpan.MIN.abs());
+        assertSame(TimeSpan.MAX, TimeSpan.from(Duration.ofDays(1_000_000)));
+        assertSame(TimeSpan.MIN, TimeSpan.from(Duration.ofDays(-1_000_000)));
+        assertEquals(-1_500_000_000L, TimeSpan.from(Duration.ofMillis(-1500)).toNanos(), "负的 Duration 应精确转换");
+        assertThrows(ArithmeticException.class, () -> TimeSpan.ofSeconds(1).divide(0));
+    }
+
+    @Test
+    void testConversionAndComparison() {
+        TimeSpan span = TimeSpan.ofNanos(1_999_999);
+        assertEquals(1, span.toMillis(), "换算应向零取整");
+        assertEquals(1_999, span.toTimeUnit(TimeUnit.MICROSECONDS));
+        assertEquals(-1, TimeSpan.ofNanos(-1_999_999).toMillis());
+        assertTrue(TimeSpan.ofNanos(1).compareTo(TimeSpan.ofNanos(2)) < 0, "比较应精确到纳秒");
+        assertEquals(TimeSpan.ofNanos(5).hashCode(), TimeSpan.ofNanos(5).hashCode());
+    }
+
+    @Test
+    void testTimeDeltaExactComparisonAndSaturatingConversion() {
+        assertTrue(new TimeDelta().nanos(1).compareTo(new TimeDelta().nanos(2)) < 0,
+            "TimeDelta 的比较不应截断到毫秒");
+        TimeDelta huge = new TimeDelta().days(1_000_000);
+        assertEquals(Long.MAX_VALUE, huge.toTimeUnit(TimeUnit.NANOSECONDS), "超出范围时应饱和而不是抛出异常");
+        assertEquals(86_400_000_000_000_000L, huge.toTimeUnit(TimeUnit.MICROSECONDS), "微秒不应先经过纳秒而溢出");
+        assertEquals(86_400_000_000L, huge.toTimeUnit(TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,63 @@
+package me.yuyuko.sdk.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testFiresNotBeforeDelay() throws InterruptedException {
+        try (TimingWheel wheel = new TimingWheel(new TimeDelta().milliseconds(5), 8, Runnable::run)) {
+            CountDownLatch latch = new CountDownLatch(1);
+            long start = System.nanoTime();
+            long[] firedAt = new long[1];
+            TimingWheel.Timeout timeout = wheel.schedule(() -> {
+                firedAt[0] = System.nanoTime();
+                latch.countDown();
+            }, new TimeDelta().milliseconds(120));
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "任务应在超时内被执行");
+            assertTrue(firedAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(120), "任务不应提前触发");
+            assertTrue(timeout.isExpired());
+            assertFalse(timeout.cancel(), "已到期的任务不能再取消");
+        }
+    }
+
+    @Test
+    void testCancelAndCascade() throws InterruptedException {
+        // 每层只有 4 个槽，300ms 的任务需要经过多层降级
+        try (TimingWheel wheel = new TimingWheel(new TimeDelta().milliseconds(2), 4, Runnable::run)) {
+            int count = 2000;
+            AtomicInteger fired = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(count / 2);
+            TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[count];
+            for (int i = 0; i < count; i++) {
+                timeouts[i] = wheel.schedule(() -> {
+                    fired.incrementAndGet();
+                    latch.countDown();
+                }, 100 + (i % 300), TimeUnit.MILLISECONDS);
+            }
+            for (int i = 0; i < count; i += 2) {
+                assertTrue(timeouts[i].cancel(), "未到期的任务应能取消");
+                assertTrue(timeouts[i].isCancelled());
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "未取消的任务都应被执行");
+            Thread.sleep(50);
+            assertEquals(count / 2, fired.get(), "被取消的任务不应执行");
+        }
+    }
+
+    @Test
+    void testCloseCancelsPending() {
+        TimingWheel wheel = new TimingWheel(new TimeDelta().milliseconds(10), 16, Runnable::run);
+        TimingWheel.Timeout timeout = wheel.schedule(() -> fail("关闭后任务不应执行"), new TimeDelta().hours(1));
+        wheel.close();
+        assertTrue(timeout.isCancelled(), "关闭时未到期的任务应被取消");
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> {}, TimeSpan.ofMillis(1)));
+        assertThrows(IllegalStateException.class, () -> TimingWheel.shared().close());
+    }
+}
@@ -0,0 +1,332 @@
+package me.yuyuko.sdk.utils;
+
+import me.yuyuko.sdk.exceptions.FormatException;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringUtilTest {
+
+    public static class User {
+        public String name;
+        private final int age;
+
+        public User(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public int getAge() {
+            return age;
+        }
+    }
+
+    public static class Order {
+        public final long id;
+        private final double amount;
+        private final boolean paid;
+        private final User user;
+
+        public Order(long id, double amount, boolean paid, User user) {
+            this.id = id;
+            this.amount = amount;
+            this.paid = paid;
+            this.user = user;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public boolean isPaid() {
+            return paid;
+        }
+
+        public User getUser() {
+            return user;
+        }
+    }
+
+    private static Map<String, Object> values(Object... kv) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            map.put((String) kv[i], kv[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    void testSameKeysDifferentValues() throws FormatException {
+        // 同样的键、不同的值不能返回上一次的渲染结果
+        assertEquals("hello a", StringUtil.fString("hello {name}", values("name", "a")));
+        assertEquals("hello b", StringUtil.fString("hello {name}", values("name", "b")));
+    }
+
+    @Test
+    void testCompileAndRender() throws FormatException {
+        CompiledTemplate tpl = StringUtil.compile("{{{name}}} 今年 {user.getAge()} 岁，名字是 {user.name}");
+        User user = new User("幽幽子", 1000);
+        assertEquals("{x} 今年 1000 岁，名字是 幽幽子", tpl.render(values("name", "x", "user", user)));
+        assertEquals("{y} 今年 1000 岁，名字是 幽幽子", tpl.render(values("name", "y", "user", user)));
+        assertEquals("今年 1000 岁", StringUtil.fString("今年 {user.age} 岁", values("user", user)));
+    }
+
+    @Test
+    void testFormat() throws FormatException {
+        assertEquals("3.14", StringUtil.fString("{pi:.2f}", values("pi", 3.14159)));
+        assertEquals("   ab", StringUtil.fString("{s:>5}", values("s", "ab")));
+        assertEquals("ab   |", StringUtil.fString("{s:<5}|", values("s", "ab")));
+        assertEquals("null", StringUtil.fString("{v}", values("v", null)));
+    }
+
+    @Test
+    void testErrors() {
+        assertThrows(FormatException.class, () -> StringUtil.compile("{name"));
+        assertThrows(FormatException.class, () -> StringUtil.compile("name}"));
+        assertThrows(FormatException.class, () -> StringUtil.compile("{ }"));
+        assertThrows(FormatException.class, () -> StringUtil.compile("{a + b}"));
+        assertThrows(FormatException.class, () -> StringUtil.fString("{missing}", values()));
+        assertNull(assertDoesNotThrow(() -> StringUtil.fString(null, values())));
+    }
+
+    @Test
+    void testBoundedCache() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(4);
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, i);
+        }
+        assertTrue(cache.size() <= 4, "cache should not grow past its capacity");
+        assertEquals(96, cache.stats().evictionCount());
+        assertEquals(Integer.valueOf(99), cache.get("k99"));
+        assertNull(cache.get("k0"));
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void testPropertyAccessWithChangingTypes() throws FormatException {
+        CompiledTemplate tpl = StringUtil.compile("{items.size()}");
+        // List.of 返回非公开的实现类，需要通过 List 接口调用
+        assertEquals("2", tpl.render(values("items", java.util.List.of(1, 2))));
+        assertEquals("1", tpl.render(values("items", java.util.Collections.singleton(1))));
+        assertEquals("0", tpl.render(values("items", new java.util.ArrayList<>())));
+        assertEquals("3", StringUtil.fString("{s.length()}", values("s", "abc")));
+        assertThrows(FormatException.class, () -> tpl.render(values("items", "not a collection")));
+    }
+
+    @Test
+    void testRenderToSinks() throws Exception {
+        CompiledTemplate tpl = StringUtil.compile("{name}: {count} 次, 平均 {avg}, 😀");
+        Map<String, Object> v = values("name", "幽幽子", "count", 42, "avg", 1.5);
+        String expected = "幽幽子: 42 次, 平均 1.5, 😀";
+
+        StringBuilder sb = new StringBuilder("> ");
+        tpl.renderTo(v, sb);
+        assertEquals("> " + expected, sb.toString());
+
+        java.io.StringWriter writer = new java.io.StringWriter();
+        StringUtil.fString(tpl.getTemplate(), v, writer);
+        assertEquals(expected, writer.toString());
+
+        java.nio.ByteBuffer heap = java.nio.ByteBuffer.allocate(64);
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(64);
+        tpl.renderTo(v, heap);
+        tpl.renderTo(v, direct);
+        byte[] bytes = expected.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        assertEquals(bytes.length, heap.position());
+        assertEquals(java.nio.ByteBuffer.wrap(bytes), heap.flip());
+        assertEquals(java.nio.ByteBuffer.wrap(bytes), direct.flip());
+
+        java.nio.ByteBuffer small = java.nio.ByteBuffer.allocate(4);
+        assertThrows(java.nio.BufferOverflowException.class, () -> tpl.renderTo(v, small));
+        assertEquals(0, small.position(), "nothing should be written on overflow");
+    }
+
+    private static String format(String spec, Object value) throws FormatException {
+        return StringUtil.fString("{v:" + spec + "}", values("v", value));
+    }
+
+    @Test
+    void testFormatSpec() throws FormatException {
+        assertEquals("42", format("d", 42));
+        assertEquals("-9223372036854775808", format("d", Long.MIN_VALUE));
+        assertEquals("1,234,567", format(",d", 1234567));
+        assertEquals("1,234,567.89", format(",.2f", 1234567.891));
+        assertEquals("+42", format("+d", 42));
+        assertEquals("-0042", format("05d", -42));
+        assertEquals("**ab**", format("*^6", "ab"));
+        assertEquals("ab....", format(".<6s", "ab"));
+        assertEquals("    -3.142", format(">10.3f", -3.14159));
+        assertEquals("ff", format("x", 255));
+        assertEquals("0XFF", format("#X", 255));
+        assertEquals("-ff", format("x", -255));
+        assertEquals("1.234500e+03", format("e", 1234.5));
+        assertEquals("1.23E-05", format(".2E", 0.0000123));
+        assertEquals("12.50%", format(".2%", 0.125));
+        assertEquals("3.000", format(".3f", 3));
+        assertEquals("1.01", format(".2f", 1.005));
+        assertEquals("12.35", format(".2f", new java.math.BigDecimal("12.345")));
+        assertEquals("12.00", format(".2f", new java.math.BigDecimal("12.00")), "末尾零不应改变 BigDecimal 的大小");
+        assertEquals("-0.050", format(".3f", new java.math.BigDecimal("-0.0500")));
+        assertEquals("1200", format(".0f", new java.math.BigDecimal("1.2E+3")));
+        assertEquals("1.000e+02", format(".3e", new java.math.BigDecimal("100.0")));
+        assertEquals("0.00", format(".2f", new java.math.BigDecimal("0.000")));
+        assertEquals("1,234.56", format(",", new java.math.BigDecimal("1234.56")), "没有类型时不应丢弃 BigDecimal 的小数部分");
+        assertEquals("+1.5", format("+", new java.math.BigDecimal("1.5")));
+        assertEquals("-1,234.500", format(",", new java.math.BigDecimal("-1234.500")));
+        assertEquals("1,200", format(",", new java.math.BigDecimal("1.2E+3")));
+        assertEquals("    -Infinity", format("013.2f", Double.NEGATIVE_INFINITY), "NaN 和 Infinity 不应补零");
+        assertEquals("       NaN", format("010", Double.NaN));
+        assertEquals("+Infinity", format("+", Double.POSITIVE_INFINITY));
+        assertEquals("100,000,000,000,000,000,000.0", format(",", 1e20), "很大的数也应分组");
+        assertEquals("1,234.5", format(",", 1234.5));
+        assertEquals("0.00001", format(",", 1e-5));
+        assertEquals("abc", format(".3", "abcdef"));
+        assertThrows(FormatException.class, () -> format("d", 1.5));
+        assertThrows(FormatException.class, () -> format("f", "text"));
+        assertThrows(FormatException.class, () -> StringUtil.compile("{v:.2d}"));
+        assertThrows(FormatException.class, () -> StringUtil.compile("{v:q}"));
+    }
+
+    @Test
+    void testFixedAndScientificMatchStringFormat() throws FormatException {
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 20000; i++) {
+            double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 12);
+            int p = random.nextInt(8);
+            assertEquals(String.format("%." + p + "f", d), format("." + p + "f", d), "value " + d);
+            assertEquals(String.format("%." + p + "e", d), format("." + p + "e", d), "value " + d);
+        }
+        for (int i = 0; i < 20000; i++) {
+            // 随机补上末尾零，覆盖未规范化的 unscaledValue
+            java.math.BigDecimal bd = java.math.BigDecimal.valueOf(random.nextLong() % 1000000, random.nextInt(12) - 4);
+            bd = bd.setScale(bd.scale() + random.nextInt(4));
+            int p = random.nextInt(8);
+            assertEquals(String.format("%." + p + "f", bd), format("." + p + "f", bd), "value " + bd);
+            assertEquals(String.format("%." + p + "e", bd), format("." + p + "e", bd), "value " + bd);
+        }
+    }
+
+    @Test
+    void testRenderAll() throws Exception {
+        java.util.List<Map<String, Object>> rows = new java.util.ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(values("id", i, "name", "u" + i));
+            expected.append(i).append(",u").append(i).append('\n');
+        }
+        String template = "{id},{name}\n";
+
+        StringBuilder serial = new StringBuilder();
+        StringUtil.renderAll(template, rows, RenderSink.of(serial));
+        assertEquals(expected.toString(), serial.toString());
+
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            StringUtil.renderAllParallel(template, rows.stream(), RenderSink.utf8(bytes), pool, 64);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected.toString(), bytes.toString("UTF-8"));
+
+        rows.add(values("id", 1));
+        assertThrows(FormatException.class, () -> StringUtil.renderAllParallel(template, rows, text -> { }));
+    }
+
+    @Test
+    void testRenderAllParallelWritesRowsBeforeFailure() throws Exception {
+        java.util.List<Map<String, Object>> rows = new java.util.ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // 第 22 行在第 3 块（每块 8 行）的中间，不是整数，不能按 d 格式化
+            rows.add(values("id", i == 22 ? (Object) 1.5 : (Object) i));
+        }
+        java.util.List<String> written = new java.util.ArrayList<>();
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            assertThrows(FormatException.class,
+                () -> StringUtil.renderAllParallel("{id:d}", rows, text -> written.add(text.toString()), pool, 8));
+        } finally {
+            pool.shutdown();
+        }
+        java.util.List<String> expected = new java.util.ArrayList<>();
+        for (int i = 0; i < 22; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, written, "失败行之前的行应全部写入 sink，之后的行一行也不写");
+    }
+
+    @Test
+    void testTypedTemplate() throws FormatException {
+        Order order = new Order(7, 12345.678, true, new User("幽幽子", 1000));
+        TypedTemplate<Order> tpl = StringUtil.compile("#{id:03d} {user.name} ({user.getAge()}): {amount:,.2f} paid={paid}", Order.class);
+        assertEquals("#007 幽幽子 (1000): 12,345.68 paid=true", tpl.render(order));
+        assertEquals("#7 1000", StringUtil.fString("#{id} {user.age}", (Object) order));
+        assertEquals("幽幽子", StringUtil.fString("{name}", (Object) values("name", "幽幽子")));
+        assertThrows(FormatException.class, () -> StringUtil.compile("{missing}", Order.class));
+    }
+
+    @Test
+    void testTypedTemplateWithRecord() throws Exception {
+        // 测试代码按 Java 8 语法编译，借用 JDK 自带的 record 类型 UnixDomainPrincipal
+        java.nio.file.attribute.UserPrincipal user = () -> "alice";
+        java.nio.file.attribute.GroupPrincipal group = () -> "staff";
+        Object principal = Class.forName("jdk.net.UnixDomainPrincipal")
+            .getConstructor(java.nio.file.attribute.UserPrincipal.class, java.nio.file.attribute.GroupPrincipal.class)
+            .newInstance(user, group);
+        assertEquals("alice:staff", StringUtil.fString("{user.getName()}:{group.getName()}", principal));
+    }
+
+    public static class Pinned {
+        public String getName() {
+            return "pinned";
+        }
+    }
+
+    /**
+     * 在单独的类加载器里定义 {@link Pinned}，模拟插件或者热部署加载的类
+     */
+    private static final class IsolatedLoader extends ClassLoader {
+        IsolatedLoader() {
+            super(StringUtilTest.class.getClassLoader());
+        }
+
+        Class<?> define(Class<?> type) throws java.io.IOException {
+            String resource = type.getName().replace('.', '/') + ".class";
+            try (java.io.InputStream in = getParent().getResourceAsStream(resource)) {
+                java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    out.write(buffer, 0, n);
+                }
+                byte[] bytes = out.toByteArray();
+                return defineClass(type.getName(), bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    @Test
+    void testCompiledTemplateDoesNotPinClassLoader() throws Exception {
+        CompiledTemplate tpl = StringUtil.compile("{bean.name}");
+        java.lang.ref.WeakReference<ClassLoader> loaderRef = renderWithIsolatedClass(tpl);
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loaderRef.get(), "模板的内联缓存不应阻止类加载器被卸载");
+        assertEquals("pinned", tpl.render(values("bean", new Pinned())), "卸载之后应重新解析");
+    }
+
+    private static java.lang.ref.WeakReference<ClassLoader> renderWithIsolatedClass(CompiledTemplate tpl) throws Exception {
+        IsolatedLoader loader = new IsolatedLoader();
+        Class<?> type = loader.define(Pinned.class);
+        assertNotSame(Pinned.class, type);
+        Object bean = type.getConstructor().newInstance();
+        assertEquals("pinned", tpl.render(values("bean", bean)));
+        return new java.lang.ref.WeakReference<>(loader);
+    }
+}